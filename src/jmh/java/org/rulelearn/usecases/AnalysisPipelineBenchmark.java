@@ -0,0 +1,149 @@
+/**
+ * Copyright (C) Jerzy Błaszczyński, Marcin Szeląg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rulelearn.usecases;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.rulelearn.approximations.UnionsWithSingleLimitingDecision;
+import org.rulelearn.approximations.VCDominanceBasedRoughSetCalculator;
+import org.rulelearn.classification.SimpleClassificationResult;
+import org.rulelearn.classification.SimpleOptimizingRuleClassifier;
+import org.rulelearn.classification.SimpleRuleClassifier;
+import org.rulelearn.data.EvaluationAttribute;
+import org.rulelearn.data.InformationTable;
+import org.rulelearn.data.InformationTableBuilder;
+import org.rulelearn.data.InformationTableWithDecisionDistributions;
+import org.rulelearn.data.SimpleDecision;
+import org.rulelearn.measures.dominance.EpsilonConsistencyMeasure;
+import org.rulelearn.rules.RuleSetWithComputableCharacteristics;
+import org.rulelearn.rules.ruleml.RuleMLBuilder;
+import org.rulelearn.types.EnumerationFieldFactory;
+import org.rulelearn.wrappers.VCDomLEMWrapper;
+
+/**
+ * Benchmarks consecutive stages of the analysis pipeline performed by {@link BankCustomerSatisfactionAnalysis} and {@link MonumentProtectionAnalysis},
+ * for both bundled data sets. Run with {@code gradle jmh}; throughput of each stage is reported together with allocation rate (by GC profiler).
+ *
+ * @author Marcin Szeląg (<a href="mailto:marcin.szelag@cs.put.poznan.pl">marcin.szelag@cs.put.poznan.pl</a>)
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class AnalysisPipelineBenchmark {
+
+	/**
+	 * Data set used in benchmarks, along with parameters used for it in the analysis classes.
+	 */
+	@State(Scope.Benchmark)
+	public static class Dataset {
+		@Param({"bank-churn-4000", "zabytki"})
+		public String dataset;
+
+		String metadataPath;
+		String dataPath;
+		double consistencyThreshold;
+		int decisionAttributeIndex;
+		String defaultClassificationResultLabel;
+
+		InformationTable informationTable;
+		InformationTableWithDecisionDistributions informationTableWithDecisionDistributions;
+		RuleSetWithComputableCharacteristics ruleSetWithCharacteristics;
+		SimpleClassificationResult defaultClassificationResult;
+
+		@Setup
+		public void setUp() throws IOException {
+			switch (dataset) {
+			case "bank-churn-4000":
+				BankCustomerSatisfactionAnalysis bankAnalysis = new BankCustomerSatisfactionAnalysis();
+				metadataPath = bankAnalysis.metadataPath;
+				dataPath = bankAnalysis.dataPath;
+				consistencyThreshold = bankAnalysis.consistencyThreshold;
+				decisionAttributeIndex = bankAnalysis.decisionAttributeIndex;
+				defaultClassificationResultLabel = bankAnalysis.defaultClassificationResultLabel;
+				break;
+			case "zabytki":
+				MonumentProtectionAnalysis monumentAnalysis = new MonumentProtectionAnalysis();
+				metadataPath = monumentAnalysis.metadataPath;
+				dataPath = monumentAnalysis.dataPath;
+				consistencyThreshold = monumentAnalysis.consistencyThreshold;
+				decisionAttributeIndex = monumentAnalysis.decisionAttributeIndex;
+				defaultClassificationResultLabel = monumentAnalysis.defaultClassificationResultLabel;
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown data set: "+dataset);
+			}
+
+			informationTable = InformationTableBuilder.safelyBuildFromJSONFile(metadataPath, dataPath);
+			informationTableWithDecisionDistributions = new InformationTableWithDecisionDistributions(informationTable, true);
+			ruleSetWithCharacteristics = (new VCDomLEMWrapper()).induceRulesWithCharacteristics(informationTableWithDecisionDistributions, consistencyThreshold);
+			ruleSetWithCharacteristics.calculateAllCharacteristics(); //characteristics are serialized to RuleML
+			defaultClassificationResult = new SimpleClassificationResult(new SimpleDecision(EnumerationFieldFactory.getInstance().create(
+					defaultClassificationResultLabel, (EvaluationAttribute)informationTable.getAttribute(decisionAttributeIndex)), decisionAttributeIndex));
+		}
+	}
+
+	@Benchmark
+	public InformationTable loadJSON(Dataset dataset) throws IOException {
+		return InformationTableBuilder.safelyBuildFromJSONFile(dataset.metadataPath, dataset.dataPath);
+	}
+
+	@Benchmark
+	public InformationTableWithDecisionDistributions buildDecisionDistributions(Dataset dataset) {
+		return new InformationTableWithDecisionDistributions(dataset.informationTable, true);
+	}
+
+	@Benchmark
+	public double calculateQualityOfApproximation(Dataset dataset) {
+		return (new UnionsWithSingleLimitingDecision(dataset.informationTableWithDecisionDistributions,
+				new VCDominanceBasedRoughSetCalculator(EpsilonConsistencyMeasure.getInstance(), dataset.consistencyThreshold))).getQualityOfApproximation();
+	}
+
+	@Benchmark
+	public RuleSetWithComputableCharacteristics induceRules(Dataset dataset) {
+		return (new VCDomLEMWrapper()).induceRulesWithCharacteristics(dataset.informationTableWithDecisionDistributions, dataset.consistencyThreshold);
+	}
+
+	@Benchmark
+	public void classify(Dataset dataset, Blackhole blackhole) {
+		SimpleRuleClassifier simpleRuleClassifier = new SimpleOptimizingRuleClassifier(dataset.ruleSetWithCharacteristics, dataset.defaultClassificationResult);
+		int objectsCount = dataset.informationTableWithDecisionDistributions.getNumberOfObjects();
+
+		for (int objectIndex = 0; objectIndex < objectsCount; objectIndex++) {
+			blackhole.consume(simpleRuleClassifier.classify(objectIndex, dataset.informationTableWithDecisionDistributions).getSuggestedDecision());
+		}
+	}
+
+	@Benchmark
+	public String serializeRuleML(Dataset dataset) {
+		return (new RuleMLBuilder()).toRuleMLString(dataset.ruleSetWithCharacteristics, 1);
+	}
+
+}
@@ -0,0 +1,112 @@
+/**
+ * Copyright (C) Jerzy Błaszczyński, Marcin Szeląg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rulelearn.usecases;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.rulelearn.classification.SimpleOptimizingRuleClassifier;
+import org.rulelearn.classification.SimpleRuleClassifier;
+import org.rulelearn.data.InformationTable;
+import org.rulelearn.rules.RuleSetWithComputableCharacteristics;
+
+/**
+ * Compares evaluation of rules by generic {@link org.rulelearn.rules.Rule#covers(int, InformationTable)} calls with evaluation by {@link RuleSetIndex rule set index}
+ * over {@link ColumnarInformationTable columnar view} of the data, both for checking coverage of all objects by all rules, and for classification of all objects.
+ * Uses data and rules of {@link AnalysisPipelineBenchmark.Dataset}, so results for the bank churn rule set are reported for parameter {@code dataset=bank-churn-4000}.
+ *
+ * @author Marcin Szeląg (<a href="mailto:marcin.szelag@cs.put.poznan.pl">marcin.szelag@cs.put.poznan.pl</a>)
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class RuleEvaluationBenchmark {
+
+	/**
+	 * Rules of a data set, indexed, together with columnar view of the data.
+	 */
+	@State(Scope.Benchmark)
+	public static class Rules {
+		RuleSetIndex ruleSetIndex;
+		ColumnarInformationTable columnarInformationTable;
+
+		@Setup
+		public void setUp(AnalysisPipelineBenchmark.Dataset dataset) {
+			ruleSetIndex = RuleSetIndex.of(dataset.ruleSetWithCharacteristics);
+			columnarInformationTable = ColumnarInformationTable.of(dataset.informationTable); //columns are copied once, as in classification of a single test table
+		}
+	}
+
+	@Benchmark
+	public int coverGeneric(AnalysisPipelineBenchmark.Dataset dataset) {
+		RuleSetWithComputableCharacteristics ruleSet = dataset.ruleSetWithCharacteristics;
+		InformationTable informationTable = dataset.informationTable;
+		int objectsCount = informationTable.getNumberOfObjects();
+		int coveredCount = 0;
+
+		for (int ruleIndex = 0; ruleIndex < ruleSet.size(); ruleIndex++) {
+			for (int objectIndex = 0; objectIndex < objectsCount; objectIndex++) {
+				if (ruleSet.getRule(ruleIndex).covers(objectIndex, informationTable)) {
+					coveredCount++;
+				}
+			}
+		}
+		return coveredCount;
+	}
+
+	@Benchmark
+	public int coverIndexed(Rules rules) {
+		int objectsCount = rules.columnarInformationTable.getNumberOfObjects();
+		int coveredCount = 0;
+
+		for (int objectIndex = 0; objectIndex < objectsCount; objectIndex++) {
+			coveredCount += rules.ruleSetIndex.getCoveringRules(objectIndex, rules.columnarInformationTable).cardinality();
+		}
+		return coveredCount;
+	}
+
+	@Benchmark
+	public void classifyGeneric(AnalysisPipelineBenchmark.Dataset dataset, Blackhole blackhole) {
+		classify(new SimpleOptimizingRuleClassifier(dataset.ruleSetWithCharacteristics, dataset.defaultClassificationResult), dataset.informationTable, blackhole);
+	}
+
+	@Benchmark
+	public void classifyIndexed(AnalysisPipelineBenchmark.Dataset dataset, Rules rules, Blackhole blackhole) {
+		classify(new IndexedRuleClassifier(rules.ruleSetIndex, dataset.ruleSetWithCharacteristics, dataset.defaultClassificationResult, IndexedRuleClassifier.DEFAULT_CACHE_SIZE),
+				dataset.informationTable, blackhole);
+	}
+
+	void classify(SimpleRuleClassifier simpleRuleClassifier, InformationTable informationTable, Blackhole blackhole) {
+		int objectsCount = informationTable.getNumberOfObjects();
+
+		for (int objectIndex = 0; objectIndex < objectsCount; objectIndex++) {
+			blackhole.consume(simpleRuleClassifier.classify(objectIndex, informationTable).getSuggestedDecision());
+		}
+	}
+
+}
@@ -0,0 +1,379 @@
+/**
+ * Copyright (C) Jerzy Błaszczyński, Marcin Szeląg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rulelearn.usecases;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.rulelearn.approximations.UnionsWithSingleLimitingDecision;
+import org.rulelearn.approximations.VCDominanceBasedRoughSetCalculator;
+import org.rulelearn.data.Attribute;
+import org.rulelearn.data.AttributeType;
+import org.rulelearn.data.EvaluationAttribute;
+import org.rulelearn.data.InformationTableBuilder;
+import org.rulelearn.data.InformationTableWithDecisionDistributions;
+import org.rulelearn.measures.dominance.EpsilonConsistencyMeasure;
+import org.rulelearn.rules.RuleSetWithComputableCharacteristics;
+import org.rulelearn.wrappers.VCDomLEMWrapper;
+
+/**
+ * Measures how calculation of quality of approximation ({@link UnionsWithSingleLimitingDecision#getQualityOfApproximation()}) and rule induction
+ * ({@link VCDomLEMWrapper#induceRulesWithCharacteristics(InformationTableWithDecisionDistributions, double)}) scale with the number of objects,
+ * the number of condition attributes, the consistency threshold, and the number of threads.
+ * Data are generated by {@link SyntheticDataGenerator} from the bank churn data; the first {@code attributes} condition attributes are kept.
+ * Each stage runs inside a {@link ForkJoinPool} with parallelism {@code threads}, so parallel streams used by ruleLearn are limited to that many threads.
+ * <br>
+ * When run by {@link #main(String[])}, the whole grid is measured, and then:
+ * <ul>
+ * <li>for each stage, number of attributes, consistency threshold, and number of threads, empirical complexity exponent {@code b} of time {@code a * n^b}
+ *     (where {@code n} is the number of objects) is fitted by least squares in log-log scale,</li>
+ * <li>speedup and efficiency with respect to a single thread are reported for each number of objects,</li>
+ * <li>fitted curves are written to a baseline file; if a baseline file exists already, curves are compared with it first, and each exponent larger than the baseline one
+ *     by more than {@link #EXPONENT_TOLERANCE} is flagged as a regression.</li>
+ * </ul>
+ * Run, e.g., by {@code gradle jmhJar} followed by {@code java -cp build/libs/<project>-jmh.jar org.rulelearn.usecases.ScalingBenchmark [baseline file]}.
+ *
+ * @author Marcin Szeląg (<a href="mailto:marcin.szelag@cs.put.poznan.pl">marcin.szelag@cs.put.poznan.pl</a>)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class ScalingBenchmark {
+
+	/**
+	 * Default path to baseline file.
+	 */
+	public static final String DEFAULT_BASELINE_PATH = "build/results/jmh/scaling-baseline.json";
+
+	/**
+	 * Command-line flag forcing the baseline file to be overwritten with results of the current run.
+	 */
+	public static final String UPDATE_BASELINE_FLAG = "--update-baseline";
+
+	/**
+	 * Maximum increase of complexity exponent, with respect to the baseline, not reported as a regression.
+	 */
+	public static final double EXPONENT_TOLERANCE = 0.15;
+
+	/**
+	 * Synthetic data set, together with a pool of threads used to process it.
+	 */
+	@State(Scope.Benchmark)
+	public static class Data {
+		@Param({"1000", "2000", "4000", "8000", "16000"})
+		public int objects;
+
+		@Param({"5", "11"})
+		public int attributes;
+
+		@Param({"0.0", "0.1"})
+		public double consistencyThreshold;
+
+		@Param({"1", "2", "4"})
+		public int threads;
+
+		InformationTableWithDecisionDistributions informationTable;
+		ForkJoinPool forkJoinPool;
+
+		@Setup(Level.Trial)
+		public void setUp() throws IOException {
+			BankCustomerSatisfactionAnalysis bankAnalysis = new BankCustomerSatisfactionAnalysis();
+			Attribute[] allAttributes = InformationTableSnapshot.readAttributes(bankAnalysis.metadataPath);
+			int[] attributeIndices = selectAttributes(allAttributes, attributes);
+			Attribute[] selectedAttributes = new Attribute[attributeIndices.length];
+			for (int i = 0; i < attributeIndices.length; i++) {
+				selectedAttributes[i] = allAttributes[attributeIndices[i]];
+			}
+
+			SyntheticDataGenerator generator = new SyntheticDataGenerator(allAttributes, SyntheticDataGenerator.readObjects(allAttributes, bankAnalysis.dataPath),
+					0.0, SyntheticDataGenerator.DEFAULT_JITTER);
+			InformationTableBuilder informationTableBuilder = new InformationTableBuilder(selectedAttributes, new String[] {SyntheticDataGenerator.MISSING_VALUE});
+			generator.generate(values -> {
+				String[] selectedValues = new String[attributeIndices.length];
+				for (int i = 0; i < attributeIndices.length; i++) {
+					selectedValues[i] = values[attributeIndices[i]];
+				}
+				informationTableBuilder.addObject(selectedValues);
+			}, objects, 0L); //the same objects for each number of threads
+
+			informationTable = new InformationTableWithDecisionDistributions(informationTableBuilder.build(), true);
+			forkJoinPool = new ForkJoinPool(threads);
+		}
+
+		@TearDown(Level.Trial)
+		public void tearDown() {
+			forkJoinPool.shutdown();
+		}
+	}
+
+	/**
+	 * Selects given number of condition attributes (in the order of metadata), and all decision attributes.
+	 *
+	 * @param attributes all attributes
+	 * @param conditionAttributesCount number of selected condition attributes
+	 * @return indices of selected attributes
+	 */
+	static int[] selectAttributes(Attribute[] attributes, int conditionAttributesCount) {
+		List<Integer> attributeIndices = new ArrayList<>();
+		int selectedConditionAttributesCount = 0;
+		for (int attributeIndex = 0; attributeIndex < attributes.length; attributeIndex++) {
+			boolean isCondition = attributes[attributeIndex] instanceof EvaluationAttribute
+					&& ((EvaluationAttribute)attributes[attributeIndex]).getType() == AttributeType.CONDITION;
+			if (!isCondition || selectedConditionAttributesCount++ < conditionAttributesCount) {
+				attributeIndices.add(attributeIndex);
+			}
+		}
+		return attributeIndices.stream().mapToInt(Integer::intValue).toArray();
+	}
+
+	@Benchmark
+	public double calculateQualityOfApproximation(Data data) throws InterruptedException, ExecutionException {
+		return data.forkJoinPool.submit(() -> (new UnionsWithSingleLimitingDecision(data.informationTable,
+				new VCDominanceBasedRoughSetCalculator(EpsilonConsistencyMeasure.getInstance(), data.consistencyThreshold))).getQualityOfApproximation()).get();
+	}
+
+	@Benchmark
+	public RuleSetWithComputableCharacteristics induceRules(Data data) throws InterruptedException, ExecutionException {
+		return data.forkJoinPool.submit(() -> (new VCDomLEMWrapper()).induceRulesWithCharacteristics(data.informationTable, data.consistencyThreshold)).get();
+	}
+
+	/**
+	 * Scaling curve: average times of a stage for consecutive numbers of objects, with fixed remaining parameters.
+	 */
+	static final class Curve {
+		final String stage;
+		final int attributes;
+		final double consistencyThreshold;
+		final int threads;
+		final TreeMap<Integer, Double> times = new TreeMap<>(); //[ms], by number of objects
+		double exponent = Double.NaN;
+
+		Curve(String stage, int attributes, double consistencyThreshold, int threads) {
+			this.stage = stage;
+			this.attributes = attributes;
+			this.consistencyThreshold = consistencyThreshold;
+			this.threads = threads;
+		}
+
+		String getKey() {
+			return key(stage, attributes, consistencyThreshold, threads);
+		}
+
+		static String key(String stage, int attributes, double consistencyThreshold, int threads) {
+			return stage+"/attributes="+attributes+"/consistencyThreshold="+consistencyThreshold+"/threads="+threads;
+		}
+
+		/**
+		 * Fits exponent {@code b} of {@code time = a * objects^b} by least squares in log-log scale.
+		 */
+		void fit() {
+			int count = times.size();
+			if (count < 2) {
+				return;
+			}
+			double sumX = 0.0, sumY = 0.0, sumXX = 0.0, sumXY = 0.0;
+			for (Map.Entry<Integer, Double> entry : times.entrySet()) {
+				double x = Math.log(entry.getKey());
+				double y = Math.log(entry.getValue());
+				sumX += x;
+				sumY += y;
+				sumXX += x * x;
+				sumXY += x * y;
+			}
+			exponent = (count * sumXY - sumX * sumY) / (count * sumXX - sumX * sumX);
+		}
+	}
+
+	/**
+	 * Runs the whole benchmark grid, reports complexity exponents and speedup curves, and compares them with the baseline (if present).
+	 * Baseline is written only if it does not exist yet, or if {@link #UPDATE_BASELINE_FLAG} is given, so a regressed run does not become the new baseline.
+	 * Exits with status 1 if any regression is found.
+	 *
+	 * @param args command-line arguments: optional {@link #UPDATE_BASELINE_FLAG}, and optional path to baseline file (default {@link #DEFAULT_BASELINE_PATH})
+	 * @throws RunnerException if benchmarks cannot be run
+	 * @throws IOException if baseline file cannot be read or written
+	 */
+	public static void main(String[] args) throws RunnerException, IOException {
+		boolean updateBaseline = Arrays.asList(args).contains(UPDATE_BASELINE_FLAG);
+		String[] pathArgs = Arrays.stream(args).filter(arg -> !UPDATE_BASELINE_FLAG.equals(arg)).toArray(String[]::new);
+		Path baselinePath = Paths.get(pathArgs.length > 0 ? pathArgs[0] : DEFAULT_BASELINE_PATH);
+		Collection<RunResult> runResults = new Runner(new OptionsBuilder().include(ScalingBenchmark.class.getName() + "\\.").build()).run();
+
+		Map<String, Curve> curves = new TreeMap<>();
+		for (RunResult runResult : runResults) {
+			String benchmark = runResult.getParams().getBenchmark();
+			String stage = benchmark.substring(benchmark.lastIndexOf('.') + 1);
+			int attributes = Integer.parseInt(runResult.getParams().getParam("attributes"));
+			double consistencyThreshold = Double.parseDouble(runResult.getParams().getParam("consistencyThreshold"));
+			int threads = Integer.parseInt(runResult.getParams().getParam("threads"));
+			curves.computeIfAbsent(Curve.key(stage, attributes, consistencyThreshold, threads), key -> new Curve(stage, attributes, consistencyThreshold, threads))
+					.times.put(Integer.parseInt(runResult.getParams().getParam("objects")), runResult.getPrimaryResult().getScore());
+		}
+		curves.values().forEach(Curve::fit);
+
+		System.out.println(); //!
+		System.out.println("Complexity exponents (time ~ objects^b):"); //!
+		for (Curve curve : curves.values()) {
+			System.out.println(String.format(Locale.US, "  %-80s b = %.3f", curve.getKey(), curve.exponent)); //!
+		}
+
+		System.out.println("Speedup (efficiency) with respect to a single thread:"); //!
+		for (Curve curve : curves.values()) {
+			Curve sequentialCurve = curves.get(Curve.key(curve.stage, curve.attributes, curve.consistencyThreshold, 1));
+			if (curve.threads == 1 || sequentialCurve == null) {
+				continue;
+			}
+			StringBuilder line = new StringBuilder(String.format(Locale.US, "  %-80s", curve.getKey()));
+			for (Map.Entry<Integer, Double> entry : curve.times.entrySet()) {
+				Double sequentialTime = sequentialCurve.times.get(entry.getKey());
+				if (sequentialTime != null) {
+					double speedup = sequentialTime / entry.getValue();
+					line.append(String.format(Locale.US, " n=%d: %.2f (%.2f)", entry.getKey(), speedup, speedup / curve.threads));
+				}
+			}
+			System.out.println(line); //!
+		}
+
+		boolean baselineExists = Files.isRegularFile(baselinePath);
+		int regressionsCount = baselineExists ? compareWithBaseline(curves, readBaseline(baselinePath), baselinePath) : 0;
+		if (!baselineExists || updateBaseline) {
+			writeBaseline(curves, baselinePath);
+			System.out.println("Baseline written to "+baselinePath+"."); //!
+		} else {
+			System.out.println("Baseline "+baselinePath+" kept (use "+UPDATE_BASELINE_FLAG+" to overwrite it)."); //!
+		}
+		if (regressionsCount > 0) {
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Compares fitted curves with the baseline ones, and reports regressions.
+	 *
+	 * @param curves fitted curves, by key
+	 * @param baselineExponents exponents read from baseline file, by curve key
+	 * @param baselinePath path to baseline file
+	 * @return number of regressions
+	 */
+	static int compareWithBaseline(Map<String, Curve> curves, Map<String, Double> baselineExponents, Path baselinePath) {
+		int regressionsCount = 0;
+		System.out.println("Comparison with baseline "+baselinePath+":"); //!
+		for (Curve curve : curves.values()) {
+			Double baselineExponent = baselineExponents.get(curve.getKey());
+			if (baselineExponent == null || Double.isNaN(curve.exponent)) {
+				continue;
+			}
+			boolean regression = curve.exponent > baselineExponent + EXPONENT_TOLERANCE;
+			if (regression) {
+				regressionsCount++;
+			}
+			System.out.println(String.format(Locale.US, "  %-80s b = %.3f (baseline %.3f)%s", curve.getKey(), curve.exponent, baselineExponent,
+					regression ? "  <-- SUPERLINEAR REGRESSION" : "")); //!
+		}
+		System.out.println("  "+regressionsCount+" regression(s)."); //!
+		return regressionsCount;
+	}
+
+	/**
+	 * Reads exponents of curves from baseline file.
+	 *
+	 * @param baselinePath path to baseline file
+	 * @return exponents, by curve key
+	 * @throws IOException if baseline file cannot be read
+	 */
+	@SuppressWarnings("unchecked")
+	static Map<String, Double> readBaseline(Path baselinePath) throws IOException {
+		Map<String, Double> exponents = new HashMap<>();
+		try {
+			Map<String, Object> baseline = (Map<String, Object>)(new JSONParser(new String(Files.readAllBytes(baselinePath), StandardCharsets.UTF_8))).parse();
+			for (Object element : (List<Object>)baseline.get("curves")) {
+				Map<String, Object> curve = (Map<String, Object>)element;
+				if (curve.get("exponent") instanceof BigDecimal) {
+					exponents.put((String)curve.get("key"), ((BigDecimal)curve.get("exponent")).doubleValue());
+				}
+			}
+		} catch (IllegalArgumentException | ClassCastException | NullPointerException exception) {
+			throw new IOException("Invalid baseline file "+baselinePath+".", exception);
+		}
+		return exponents;
+	}
+
+	/**
+	 * Writes fitted curves to baseline file.
+	 *
+	 * @param curves fitted curves, by key
+	 * @param baselinePath path to baseline file
+	 * @throws IOException if baseline file cannot be written
+	 */
+	static void writeBaseline(Map<String, Curve> curves, Path baselinePath) throws IOException {
+		if (baselinePath.getParent() != null) {
+			Files.createDirectories(baselinePath.getParent());
+		}
+		try (BufferedWriter writer = Files.newBufferedWriter(baselinePath, StandardCharsets.UTF_8)) {
+			writer.write("{\n  \"curves\": [");
+			boolean first = true;
+			for (Curve curve : curves.values()) {
+				writer.write(first ? "\n" : ",\n");
+				first = false;
+				writer.write(String.format(Locale.US, "    {\"key\": \"%s\", \"stage\": \"%s\", \"attributes\": %d, \"consistencyThreshold\": %s, \"threads\": %d, \"exponent\": %s, \"timesMs\": {",
+						curve.getKey(), curve.stage, curve.attributes, curve.consistencyThreshold, curve.threads, Double.isNaN(curve.exponent) ? "null" : String.format(Locale.US, "%.4f", curve.exponent)));
+				boolean firstTime = true;
+				for (Map.Entry<Integer, Double> entry : curve.times.entrySet()) {
+					writer.write(String.format(Locale.US, "%s\"%d\": %.4f", firstTime ? "" : ", ", entry.getKey(), entry.getValue()));
+					firstTime = false;
+				}
+				writer.write("}}");
+			}
+			writer.write("\n  ]\n}\n");
+		}
+	}
+
+}
@@ -0,0 +1,373 @@
+/**
+ * Copyright (C) Jerzy Błaszczyński, Marcin Szeląg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rulelearn.usecases;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Metrics of an analysis run. Each {@link Phase phase} of the analysis (loading data, calculation of approximations, rule induction, etc.) is timed with nanosecond precision,
+ * possibly many times and by many threads (e.g., once per cross-validation fold). For each phase, all durations are kept, so their percentiles and histogram can be reported,
+ * along with the number of bytes allocated by timing threads during the phase (if supported by the JVM).
+ * Bytes allocated by each thread are summed over its top-level phases only, so bytes of phases nested in other phases (e.g., rule induction within a fold) are not counted twice.
+ * Each timed phase is also recorded as a {@link PhaseEvent JFR event}, visible in Java Flight Recorder when the recording includes events of this project.
+ * <br>
+ * Metrics can be exported as JSON, so performance of consecutive runs (e.g., after data refreshes) can be compared.
+ *
+ * @author Marcin Szeląg (<a href="mailto:marcin.szelag@cs.put.poznan.pl">marcin.szelag@cs.put.poznan.pl</a>)
+ */
+public class AnalysisMetrics {
+
+	/**
+	 * Timed phases of an analysis.
+	 */
+	public enum Phase {
+		/**
+		 * Loading data from disk.
+		 */
+		LOAD,
+		/**
+		 * Calculation of approximations of unions of decision classes (and quality of approximation).
+		 */
+		APPROXIMATION,
+		/**
+		 * Rule induction.
+		 */
+		INDUCTION,
+		/**
+		 * Filtering of induced rules.
+		 */
+		FILTERING,
+		/**
+		 * Classification of objects by rules.
+		 */
+		CLASSIFICATION,
+		/**
+		 * Writing rules to disk.
+		 */
+		SERIALIZATION,
+		/**
+		 * Processing of a single cross-validation fold (rule induction, filtering, and classification of test data).
+		 */
+		FOLD
+	}
+
+	/**
+	 * JFR event wrapping a single timed phase.
+	 */
+	@Name("org.rulelearn.usecases.Phase")
+	@Label("Analysis Phase")
+	@Category("ruleLearn")
+	@Description("Single timed phase of an analysis run")
+	static final class PhaseEvent extends Event {
+		@Label("Phase")
+		String phase;
+
+		@Label("Allocated Bytes")
+		long allocatedBytes;
+	}
+
+	/**
+	 * Timer of a single execution of a phase, to be used in try-with-resources statement. Should be stopped by the thread that started it.
+	 */
+	public final class PhaseTimer implements AutoCloseable {
+		final Phase phase;
+		final boolean topLevel; //not nested in another phase timed by the same thread
+		final long startAllocatedBytes;
+		final PhaseEvent event;
+		final long startTime;
+		long duration = -1L;
+
+		PhaseTimer(Phase phase) {
+			this.phase = phase;
+			this.topLevel = openTimersCount.get()[0]++ == 0;
+			this.startAllocatedBytes = getCurrentThreadAllocatedBytes();
+			this.event = jfrAvailable ? new PhaseEvent() : null;
+			if (event != null) {
+				event.begin();
+			}
+			this.startTime = System.nanoTime();
+		}
+
+		/**
+		 * Stops this timer (if not stopped yet), and records measured duration.
+		 *
+		 * @return duration of the phase [ns]
+		 */
+		public long stop() {
+			if (duration < 0) {
+				duration = System.nanoTime() - startTime;
+				openTimersCount.get()[0]--;
+				long allocatedBytes = startAllocatedBytes >= 0 ? Math.max(getCurrentThreadAllocatedBytes() - startAllocatedBytes, 0L) : -1L;
+				if (event != null) {
+					event.end();
+					if (event.shouldCommit()) {
+						event.phase = phase.name();
+						event.allocatedBytes = allocatedBytes;
+						event.commit();
+					}
+				}
+				record(phase, duration, allocatedBytes, topLevel);
+			}
+			return duration;
+		}
+
+		/**
+		 * Stops this timer.
+		 */
+		@Override
+		public void close() {
+			stop();
+		}
+	}
+
+	/**
+	 * Durations and allocations of all executions of a phase.
+	 */
+	static final class PhaseStatistics {
+		long[] durations = new long[16];
+		int count = 0;
+		long allocatedBytes = 0L;
+		boolean allocatedBytesMeasured = true;
+
+		synchronized void add(long duration, long allocatedBytes) {
+			if (count == durations.length) {
+				durations = Arrays.copyOf(durations, 2 * count);
+			}
+			durations[count++] = duration;
+			if (allocatedBytes >= 0) {
+				this.allocatedBytes += allocatedBytes;
+			} else {
+				allocatedBytesMeasured = false;
+			}
+		}
+
+		synchronized long[] getSortedDurations() {
+			long[] sortedDurations = Arrays.copyOf(durations, count);
+			Arrays.sort(sortedDurations);
+			return sortedDurations;
+		}
+	}
+
+	static final com.sun.management.ThreadMXBean THREAD_MX_BEAN = getThreadMXBean();
+
+	final Map<Phase, PhaseStatistics> phaseStatistics = new EnumMap<>(Phase.class);
+	final Map<String, LongAdder> threadAllocatedBytes = new ConcurrentHashMap<>(); //bytes allocated during top-level timed phases, by thread name
+	final ThreadLocal<int[]> openTimersCount = ThreadLocal.withInitial(() -> new int[1]); //number of timers started and not yet stopped by current thread
+	final Instant startInstant = Instant.now();
+	final boolean jfrAvailable = isJFRAvailable();
+
+	/**
+	 * Constructs empty metrics.
+	 */
+	public AnalysisMetrics() {
+		for (Phase phase : Phase.values()) {
+			phaseStatistics.put(phase, new PhaseStatistics());
+		}
+	}
+
+	/**
+	 * Starts timing given phase in current thread.
+	 *
+	 * @param phase timed phase
+	 * @return started timer
+	 */
+	public PhaseTimer start(Phase phase) {
+		return new PhaseTimer(phase);
+	}
+
+	/**
+	 * Records single execution of given phase, performed by current thread.
+	 *
+	 * @param phase phase
+	 * @param duration duration of the phase [ns]
+	 * @param allocatedBytes number of bytes allocated by current thread during the phase, or -1 if not measured
+	 * @param topLevel indicates if the phase is not nested in another phase timed by current thread (only then allocated bytes are added to total of the thread)
+	 */
+	void record(Phase phase, long duration, long allocatedBytes, boolean topLevel) {
+		phaseStatistics.get(phase).add(duration, allocatedBytes);
+		if (topLevel && allocatedBytes > 0) {
+			threadAllocatedBytes.computeIfAbsent(Thread.currentThread().getName(), name -> new LongAdder()).add(allocatedBytes);
+		}
+	}
+
+	/**
+	 * Gets number of bytes allocated so far by current thread.
+	 *
+	 * @return number of allocated bytes, or -1 if this is not supported by the JVM
+	 */
+	static long getCurrentThreadAllocatedBytes() {
+		return THREAD_MX_BEAN != null ? THREAD_MX_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId()) : -1L;
+	}
+
+	private static com.sun.management.ThreadMXBean getThreadMXBean() {
+		try {
+			java.lang.management.ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+			if (threadMXBean instanceof com.sun.management.ThreadMXBean && ((com.sun.management.ThreadMXBean)threadMXBean).isThreadAllocatedMemorySupported()) {
+				((com.sun.management.ThreadMXBean)threadMXBean).setThreadAllocatedMemoryEnabled(true);
+				return (com.sun.management.ThreadMXBean)threadMXBean;
+			}
+		} catch (LinkageError | RuntimeException exception) {
+			//not a HotSpot-compatible JVM, or measurement cannot be enabled
+		}
+		return null;
+	}
+
+	private static boolean isJFRAvailable() {
+		try {
+			new PhaseEvent(); //fails if JFR module is absent
+			return true;
+		} catch (LinkageError exception) {
+			return false;
+		}
+	}
+
+	/**
+	 * Gets total duration of all executions of given phase.
+	 *
+	 * @param phase phase
+	 * @return total duration [ns]
+	 */
+	public long getTotalDuration(Phase phase) {
+		return Arrays.stream(phaseStatistics.get(phase).getSortedDurations()).sum();
+	}
+
+	/**
+	 * Writes these metrics to a JSON file, creating parent directories if necessary.
+	 *
+	 * @param metricsFilePath path to JSON file
+	 * @param analysisName name of the analysis, written along with metrics
+	 *
+	 * @throws IOException if metrics cannot be written
+	 */
+	public void writeJSON(String metricsFilePath, String analysisName) throws IOException {
+		Path metricsPath = Paths.get(metricsFilePath);
+		if (metricsPath.getParent() != null) {
+			Files.createDirectories(metricsPath.getParent());
+		}
+		try (Writer writer = Files.newBufferedWriter(metricsPath, StandardCharsets.UTF_8)) {
+			writeJSON(writer, analysisName);
+		}
+	}
+
+	/**
+	 * Writes these metrics in JSON format. Durations are given in nanoseconds.
+	 *
+	 * @param writer destination of metrics
+	 * @param analysisName name of the analysis, written along with metrics
+	 *
+	 * @throws IOException if metrics cannot be written
+	 */
+	public void writeJSON(Writer writer, String analysisName) throws IOException {
+		writer.write("{\n");
+		writer.write("  \"analysis\": \""+ConvertCsv2Json.escape(analysisName)+"\",\n");
+		writer.write("  \"start\": \""+startInstant+"\",\n");
+		writer.write("  \"end\": \""+Instant.now()+"\",\n");
+		writer.write("  \"availableProcessors\": "+Runtime.getRuntime().availableProcessors()+",\n");
+		writer.write("  \"phases\": {");
+
+		boolean first = true;
+		for (Phase phase : Phase.values()) {
+			PhaseStatistics statistics = phaseStatistics.get(phase);
+			long[] durations = statistics.getSortedDurations();
+			if (durations.length == 0) {
+				continue;
+			}
+			writer.write(first ? "\n" : ",\n");
+			first = false;
+
+			long totalDuration = Arrays.stream(durations).sum();
+			writer.write("    \""+phase.name().toLowerCase()+"\": {\n");
+			writer.write("      \"count\": "+durations.length+",\n");
+			writer.write("      \"totalNs\": "+totalDuration+",\n");
+			writer.write("      \"meanNs\": "+(totalDuration / durations.length)+",\n");
+			writer.write("      \"minNs\": "+durations[0]+",\n");
+			writer.write("      \"p50Ns\": "+percentile(durations, 0.50)+",\n");
+			writer.write("      \"p90Ns\": "+percentile(durations, 0.90)+",\n");
+			writer.write("      \"p99Ns\": "+percentile(durations, 0.99)+",\n");
+			writer.write("      \"maxNs\": "+durations[durations.length - 1]+",\n");
+			writer.write("      \"allocatedBytes\": "+(statistics.allocatedBytesMeasured ? statistics.allocatedBytes : -1L)+",\n");
+			writer.write("      \"histogramMs\": {");
+			boolean firstBucket = true;
+			for (Map.Entry<Long, Integer> bucket : histogram(durations).entrySet()) {
+				writer.write((firstBucket ? "" : ", ")+"\"<="+bucket.getKey()+"\": "+bucket.getValue());
+				firstBucket = false;
+			}
+			writer.write("}\n");
+			writer.write("    }");
+		}
+		writer.write("\n  },\n");
+
+		writer.write("  \"threadAllocatedBytes\": {");
+		first = true;
+		for (Map.Entry<String, LongAdder> entry : new TreeMap<>(threadAllocatedBytes).entrySet()) {
+			writer.write((first ? "\n" : ",\n")+"    \""+ConvertCsv2Json.escape(entry.getKey())+"\": "+entry.getValue().sum());
+			first = false;
+		}
+		writer.write("\n  }\n");
+		writer.write("}");
+	}
+
+	/**
+	 * Gets percentile of sorted durations, using nearest-rank method.
+	 *
+	 * @param sortedDurations non-empty array of durations, sorted ascending
+	 * @param fraction percentile, as a fraction from (0, 1]
+	 * @return duration not exceeded by given fraction of durations
+	 */
+	static long percentile(long[] sortedDurations, double fraction) {
+		int rank = (int)Math.ceil(fraction * sortedDurations.length);
+		return sortedDurations[Math.max(rank, 1) - 1];
+	}
+
+	/**
+	 * Counts durations in buckets with upper bounds being consecutive powers of 2 of milliseconds (1, 2, 4, ...).
+	 *
+	 * @param sortedDurations array of durations [ns], sorted ascending
+	 * @return map from upper bound of a bucket [ms] to the number of durations in that bucket, sorted by bucket
+	 */
+	static Map<Long, Integer> histogram(long[] sortedDurations) {
+		Map<Long, Integer> histogram = new TreeMap<>();
+		long upperBound = 1L;
+		for (long duration : sortedDurations) {
+			while (TimeUnit.MILLISECONDS.toNanos(upperBound) < duration) {
+				upperBound <<= 1;
+			}
+			histogram.merge(upperBound, 1, Integer::sum);
+		}
+		return histogram;
+	}
+
+}
@@ -0,0 +1,385 @@
+/**
+ * Copyright (C) Jerzy Błaszczyński, Marcin Szeląg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rulelearn.usecases;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import org.rulelearn.classification.SimpleClassificationResult;
+import org.rulelearn.data.Decision;
+import org.rulelearn.data.InformationTable;
+import org.rulelearn.data.InformationTableWithDecisionDistributions;
+import org.rulelearn.data.SimpleDecision;
+import org.rulelearn.rules.RuleFilter;
+import org.rulelearn.rules.RuleSetWithComputableCharacteristics;
+import org.rulelearn.wrappers.VCDomLEMWrapper;
+
+/**
+ * Trains bagged ensembles of rule sets induced by {@link VCDomLEMWrapper}. Bootstrap samples are drawn as arrays of indices of objects from one shared information table,
+ * and are materialized (by {@link InformationTable#select(int[], boolean)}, as in {@link CrossValidationEngine.Fold}) only for the time of inducing rules of a single model.
+ * Models are trained in parallel, using {@link #threadsCount} threads.
+ * <br>
+ * Out-of-bag accuracy is updated incrementally, after each trained model: the model votes only for objects absent from its bootstrap sample,
+ * and only objects whose majority vote could change are re-evaluated.
+ *
+ * @author Marcin Szeląg (<a href="mailto:marcin.szelag@cs.put.poznan.pl">marcin.szelag@cs.put.poznan.pl</a>)
+ */
+public class BaggingEngine {
+
+	/**
+	 * Default number of models in an ensemble.
+	 */
+	public static final int DEFAULT_MODELS_COUNT = 50;
+
+	final double consistencyThreshold;
+	final RuleFilter ruleFilter;
+	final SimpleClassificationResult defaultClassificationResult;
+	final int threadsCount;
+
+	/**
+	 * Constructs this engine.
+	 *
+	 * @param consistencyThreshold threshold for consistency measure used when inducing rules of each model
+	 * @param ruleFilter filter applied to rules of each model
+	 * @param defaultClassificationResult default classification result of each model
+	 * @param threadsCount number of threads training models
+	 *
+	 * @throws IllegalArgumentException if number of threads is not positive
+	 */
+	public BaggingEngine(double consistencyThreshold, RuleFilter ruleFilter, SimpleClassificationResult defaultClassificationResult, int threadsCount) {
+		if (threadsCount < 1) {
+			throw new IllegalArgumentException("Number of threads has to be positive.");
+		}
+		this.consistencyThreshold = consistencyThreshold;
+		this.ruleFilter = ruleFilter;
+		this.defaultClassificationResult = defaultClassificationResult;
+		this.threadsCount = threadsCount;
+	}
+
+	/**
+	 * Trains an ensemble of given number of models. Bootstrap sample of each model is determined by given seed and index of the model,
+	 * so the ensemble does not depend on the number of threads (only the order of out-of-bag accuracies does, as they are recorded in the order of finished models).
+	 *
+	 * @param informationTable the data
+	 * @param modelsCount number of models
+	 * @param seed random generator seed
+	 * @return trained ensemble
+	 *
+	 * @throws IllegalArgumentException if number of models is not positive
+	 * @throws RuntimeException if training of any model fails
+	 */
+	public Ensemble train(InformationTableWithDecisionDistributions informationTable, int modelsCount, long seed) {
+		if (modelsCount < 1) {
+			throw new IllegalArgumentException("Number of models has to be positive.");
+		}
+		Random random = new Random(seed);
+		long[] modelSeeds = new long[modelsCount];
+		for (int i = 0; i < modelsCount; i++) {
+			modelSeeds[i] = random.nextLong();
+		}
+
+		Ensemble ensemble = new Ensemble(informationTable, modelsCount, defaultClassificationResult);
+		OutOfBagVotes outOfBagVotes = new OutOfBagVotes(informationTable, ensemble.decisionIndices, ensemble.decisions.length);
+		ColumnarInformationTable columnarInformationTable = ColumnarInformationTable.of(informationTable); //shared by all models, to classify their out-of-bag objects
+		ExecutorService executor = Executors.newFixedThreadPool(threadsCount, new CrossValidationEngine.CrossValidationThreadFactory());
+
+		try {
+			List<Future<?>> futures = new ArrayList<>(modelsCount);
+			for (int i = 0; i < modelsCount; i++) {
+				int modelIndex = i;
+				futures.add(executor.submit(() -> {
+					ensemble.models[modelIndex] = trainModel(informationTable, columnarInformationTable, modelSeeds[modelIndex], outOfBagVotes, ensemble);
+				}));
+			}
+			for (Future<?> future : futures) {
+				CrossValidationEngine.getResult(future);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+
+		return ensemble;
+	}
+
+	/**
+	 * Trains single model on a bootstrap sample, and adds its votes for out-of-bag objects.
+	 *
+	 * @param informationTable the data
+	 * @param columnarInformationTable columnar view of the data
+	 * @param seed random generator seed of the bootstrap sample
+	 * @param outOfBagVotes out-of-bag votes of already trained models
+	 * @param ensemble trained ensemble, whose out-of-bag accuracies are updated
+	 * @return trained model
+	 */
+	Model trainModel(InformationTableWithDecisionDistributions informationTable, ColumnarInformationTable columnarInformationTable, long seed, OutOfBagVotes outOfBagVotes, Ensemble ensemble) {
+		int objectsCount = informationTable.getNumberOfObjects();
+		Random random = new Random(seed);
+		int[] drawsCounts = new int[objectsCount];
+		for (int i = 0; i < objectsCount; i++) {
+			drawsCounts[random.nextInt(objectsCount)]++;
+		}
+
+		int[] bootstrapIndices = new int[objectsCount]; //sorted, for locality of the view
+		int outOfBagCount = 0;
+		for (int objectIndex = 0, position = 0; objectIndex < objectsCount; objectIndex++) {
+			for (int j = 0; j < drawsCounts[objectIndex]; j++) {
+				bootstrapIndices[position++] = objectIndex;
+			}
+			if (drawsCounts[objectIndex] == 0) {
+				outOfBagCount++;
+			}
+		}
+		int[] outOfBagIndices = new int[outOfBagCount];
+		for (int objectIndex = 0, position = 0; objectIndex < objectsCount; objectIndex++) {
+			if (drawsCounts[objectIndex] == 0) {
+				outOfBagIndices[position++] = objectIndex;
+			}
+		}
+
+		RuleSetWithComputableCharacteristics ruleSetWithCharacteristics = (new VCDomLEMWrapper()).induceRulesWithCharacteristics(informationTable.select(bootstrapIndices, true), consistencyThreshold);
+		if (ruleFilter != null) {
+			ruleSetWithCharacteristics = ruleSetWithCharacteristics.filter(ruleFilter);
+		}
+		Model model = new Model(ruleSetWithCharacteristics, RuleSetIndex.of(ruleSetWithCharacteristics)); //index does not depend on classified data, so no copy of any table is kept
+
+		//out-of-bag objects are classified directly in the shared table
+		IndexedRuleClassifier classifier = model.newClassifier(defaultClassificationResult);
+		int[] votedDecisionIndices = new int[outOfBagCount];
+		for (int i = 0; i < outOfBagCount; i++) {
+			votedDecisionIndices[i] = ensemble.getDecisionIndex(classifier.classify(outOfBagIndices[i], columnarInformationTable).getSuggestedDecision());
+		}
+		outOfBagVotes.add(outOfBagIndices, votedDecisionIndices, ensemble);
+
+		return model;
+	}
+
+	/**
+	 * Single model of an ensemble.
+	 */
+	static final class Model {
+		final RuleSetWithComputableCharacteristics ruleSetWithCharacteristics;
+		final RuleSetIndex ruleSetIndex; //shared by classifiers of all threads
+
+		Model(RuleSetWithComputableCharacteristics ruleSetWithCharacteristics, RuleSetIndex ruleSetIndex) {
+			this.ruleSetWithCharacteristics = ruleSetWithCharacteristics;
+			this.ruleSetIndex = ruleSetIndex;
+		}
+
+		IndexedRuleClassifier newClassifier(SimpleClassificationResult defaultClassificationResult) {
+			return new IndexedRuleClassifier(ruleSetIndex, ruleSetWithCharacteristics, defaultClassificationResult, IndexedRuleClassifier.DEFAULT_CACHE_SIZE);
+		}
+	}
+
+	/**
+	 * Votes of trained models for objects absent from their bootstrap samples, together with the current number of out-of-bag objects
+	 * whose majority vote is correct.
+	 */
+	static final class OutOfBagVotes {
+		final int decisionsCount;
+		final int[] votes; //votes[objectIndex * decisionsCount + decisionIndex]
+		final int[] trueDecisionIndices; //-1 if decision of an object is not fully determined
+		final boolean[] voted;
+		final boolean[] correct;
+		int votedCount = 0;
+		int correctCount = 0;
+
+		OutOfBagVotes(InformationTable informationTable, Map<Decision, Integer> decisionIndices, int decisionsCount) {
+			int objectsCount = informationTable.getNumberOfObjects();
+			this.decisionsCount = decisionsCount;
+			this.votes = new int[objectsCount * decisionsCount];
+			this.trueDecisionIndices = new int[objectsCount];
+			for (int objectIndex = 0; objectIndex < objectsCount; objectIndex++) {
+				trueDecisionIndices[objectIndex] = decisionIndices.getOrDefault(informationTable.getDecision(objectIndex), -1);
+			}
+			this.voted = new boolean[objectsCount];
+			this.correct = new boolean[objectsCount];
+		}
+
+		/**
+		 * Adds votes of a single model, and records updated out-of-bag accuracy (i.e., accuracy of majority votes for objects that have at least one vote) in given ensemble.
+		 *
+		 * @param objectIndices indices of out-of-bag objects of the model
+		 * @param votedDecisionIndices indices of decisions voted for by the model (-1 if the decision is unknown)
+		 * @param ensemble trained ensemble
+		 */
+		synchronized void add(int[] objectIndices, int[] votedDecisionIndices, Ensemble ensemble) {
+			for (int i = 0; i < objectIndices.length; i++) {
+				int objectIndex = objectIndices[i];
+				if (trueDecisionIndices[objectIndex] < 0 || votedDecisionIndices[i] < 0) {
+					continue;
+				}
+				votes[objectIndex * decisionsCount + votedDecisionIndices[i]]++;
+				if (!voted[objectIndex]) {
+					voted[objectIndex] = true;
+					votedCount++;
+				}
+				boolean isCorrect = argMax(votes, objectIndex * decisionsCount, decisionsCount) == trueDecisionIndices[objectIndex];
+				if (isCorrect != correct[objectIndex]) {
+					correct[objectIndex] = isCorrect;
+					correctCount += isCorrect ? 1 : -1;
+				}
+			}
+			ensemble.addOutOfBagAccuracy(votedCount > 0 ? (double)correctCount / votedCount : Double.NaN); //recorded in the order of added votes
+		}
+	}
+
+	/**
+	 * Gets index of the largest count in given range of an array. In case of a tie, the lowest index is returned.
+	 *
+	 * @param counts array of counts
+	 * @param offset index of the first considered count
+	 * @param length number of considered counts
+	 * @return index of the largest count, relative to the offset
+	 */
+	static int argMax(int[] counts, int offset, int length) {
+		int best = 0;
+		for (int i = 1; i < length; i++) {
+			if (counts[offset + i] > counts[offset + best]) {
+				best = i;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Bagged ensemble of rule sets, classifying objects by majority voting of its models.
+	 */
+	public static final class Ensemble {
+		final Model[] models;
+		final Decision[] decisions; //ordered decisions of the training data
+		final Map<Decision, Integer> decisionIndices;
+		final SimpleClassificationResult defaultClassificationResult; //default classification result of each model
+		final List<Double> outOfBagAccuracies;
+
+		Ensemble(InformationTable informationTable, int modelsCount, SimpleClassificationResult defaultClassificationResult) {
+			this.models = new Model[modelsCount];
+			this.decisions = informationTable.getOrderedUniqueFullyDeterminedDecisions();
+			this.decisionIndices = new HashMap<>();
+			for (int i = 0; i < decisions.length; i++) {
+				decisionIndices.put(decisions[i], i);
+			}
+			this.defaultClassificationResult = defaultClassificationResult;
+			this.outOfBagAccuracies = Collections.synchronizedList(new ArrayList<>(modelsCount));
+		}
+
+		int getDecisionIndex(Decision decision) {
+			return decisionIndices.getOrDefault(decision, -1);
+		}
+
+		void addOutOfBagAccuracy(double outOfBagAccuracy) {
+			outOfBagAccuracies.add(outOfBagAccuracy);
+		}
+
+		public int getModelsCount() {
+			return models.length;
+		}
+
+		/**
+		 * Gets out-of-bag accuracies of this ensemble, recorded after each trained model (i.e., element at index {@code i} concerns the first {@code i+1} trained models).
+		 *
+		 * @return out-of-bag accuracies after consecutive trained models
+		 */
+		public List<Double> getOutOfBagAccuracies() {
+			return Collections.unmodifiableList(outOfBagAccuracies);
+		}
+
+		/**
+		 * Gets out-of-bag accuracy of the whole ensemble.
+		 *
+		 * @return out-of-bag accuracy of the whole ensemble
+		 */
+		public double getOutOfBagAccuracy() {
+			return outOfBagAccuracies.isEmpty() ? Double.NaN : outOfBagAccuracies.get(outOfBagAccuracies.size() - 1);
+		}
+
+		/**
+		 * Classifies all objects from given information table by majority voting of models of this ensemble. In case of a tie, the lowest voted decision wins.
+		 * Range of object indices is split into chunks, classified in parallel, as in {@link BatchClassifier}. Each thread uses its own classifiers of all models
+		 * and its own buffer of votes, reused for all objects it classifies. All classifiers read the same {@link ColumnarInformationTable columnar view} of test data.
+		 *
+		 * @param testData test data
+		 * @return array of suggested decisions, indexed by object index
+		 */
+		public SimpleDecision[] classify(InformationTable testData) {
+			int testDataSize = testData.getNumberOfObjects();
+			SimpleDecision[] assignedDecisions = new SimpleDecision[testDataSize];
+			ColumnarInformationTable columnarTestData = ColumnarInformationTable.of(testData); //shared by classifiers of all models and threads
+			ThreadLocal<VotingScratch> threadScratch = ThreadLocal.withInitial(() -> new VotingScratch(models, decisions.length, defaultClassificationResult));
+			int chunkSize = BatchClassifier.DEFAULT_CHUNK_SIZE;
+			int chunksCount = (testDataSize + chunkSize - 1) / chunkSize;
+
+			IntStream chunks = IntStream.range(0, chunksCount);
+			if (testDataSize >= BatchClassifier.DEFAULT_SEQUENTIAL_THRESHOLD) {
+				chunks = chunks.parallel();
+			}
+			chunks.forEach(chunkIndex -> {
+				VotingScratch scratch = threadScratch.get();
+				int toIndex = Math.min((chunkIndex + 1) * chunkSize, testDataSize);
+				for (int testObjectIndex = chunkIndex * chunkSize; testObjectIndex < toIndex; testObjectIndex++) {
+					assignedDecisions[testObjectIndex] = vote(scratch, testObjectIndex, columnarTestData);
+				}
+			});
+
+			return assignedDecisions;
+		}
+
+		/**
+		 * Classifies single object by majority voting, using given per-thread scratch.
+		 */
+		SimpleDecision vote(VotingScratch scratch, int objectIndex, ColumnarInformationTable columnarTestData) {
+			int[] votes = scratch.votes;
+			Arrays.fill(votes, 0);
+			SimpleDecision unknownDecision = null; //decision absent from the training data, used only if no model votes for a known one
+			for (IndexedRuleClassifier classifier : scratch.classifiers) {
+				SimpleDecision decision = classifier.classify(objectIndex, columnarTestData).getSuggestedDecision();
+				int decisionIndex = getDecisionIndex(decision);
+				if (decisionIndex >= 0) {
+					votes[decisionIndex]++;
+				} else if (unknownDecision == null) {
+					unknownDecision = decision;
+				}
+			}
+			int best = argMax(votes, 0, votes.length);
+			return votes.length > 0 && votes[best] > 0 ? (SimpleDecision)decisions[best] : unknownDecision;
+		}
+	}
+
+	/**
+	 * Per-thread classifiers of all models, and buffer of votes.
+	 */
+	static final class VotingScratch {
+		final IndexedRuleClassifier[] classifiers;
+		final int[] votes;
+
+		VotingScratch(Model[] models, int decisionsCount, SimpleClassificationResult defaultClassificationResult) {
+			this.classifiers = new IndexedRuleClassifier[models.length];
+			for (int i = 0; i < models.length; i++) {
+				classifiers[i] = models[i].newClassifier(defaultClassificationResult);
+			}
+			this.votes = new int[decisionsCount];
+		}
+	}
+
+}
@@ -3,23 +3,20 @@
  */
 package org.rulelearn.usecases;
 
-import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Random;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import org.rulelearn.approximations.Unions;
 import org.rulelearn.approximations.UnionsWithSingleLimitingDecision;
 import org.rulelearn.approximations.VCDominanceBasedRoughSetCalculator;
 import org.rulelearn.classification.SimpleClassificationResult;
-import org.rulelearn.classification.SimpleOptimizingRuleClassifier;
-import org.rulelearn.classification.SimpleRuleClassifier;
 import org.rulelearn.data.Decision;
 import org.rulelearn.data.EvaluationAttribute;
 import org.rulelearn.data.InformationTable;
-import org.rulelearn.data.InformationTableBuilder;
 import org.rulelearn.data.InformationTableWithDecisionDistributions;
 import org.rulelearn.data.ObjectParseException;
 import org.rulelearn.data.SimpleDecision;
@@ -30,11 +27,8 @@ import org.rulelearn.rules.ConfidenceRuleFilter;
 import org.rulelearn.rules.RuleFilter;
 import org.rulelearn.rules.RuleSet;
 import org.rulelearn.rules.RuleSetWithComputableCharacteristics;
-import org.rulelearn.rules.ruleml.RuleMLBuilder;
-import org.rulelearn.sampling.CrossValidator;
 import org.rulelearn.types.EnumerationFieldFactory;
 import org.rulelearn.validation.OrdinalMisclassificationMatrix;
-import org.rulelearn.wrappers.VCDomLEMWrapper;
 
 /**
  * Calculations for bank customer satisfaction data set (4000 customers, divided equally into two classes).
@@ -49,6 +43,12 @@ public class BankCustomerSatisfactionAnalysis {
 	
 	final String metadataPath = "src/main/resources/data/json-metadata/bank-churn-4000-v8 metadata.json";
 	final String dataPath = "src/main/resources/data/json-objects/bank-churn-4000-v8 data.json";
+	final String snapshotDirectoryPath = "build/snapshots"; //directory with binary snapshots of data, used instead of parsing JSON files if they did not change
+	final String metricsPath = "build/metrics/bank-churn-4000-v8-metrics.json"; //JSON file with timings of consecutive phases of the analysis, written at the end of run()
+	final AnalysisMetrics metrics = new AnalysisMetrics();
+	final String reportPath = "build/reports/bank-churn-4000-v8"; //prefix of CSV and JSON Lines files with results reported during run()
+	ReportSink reportSink = new ReportSink(); //writes only to the console, until run() opens result files
+	final RuleInductionCache ruleInductionCache = new RuleInductionCache("build/rule-cache"); //rules induced earlier for the same data, threshold, and version of ruleLearn
 	
 	//PARAM 2a
 	//String ruleSetPath = "src/main/resources/data/ruleml/bank-churn-4000-v8-"+consistencyThreshold+"-rules.xml";
@@ -63,6 +63,23 @@ public class BankCustomerSatisfactionAnalysis {
 	//RuleFilter ruleFilter = CompositeRuleCharacteristicsFilter.of("s>0");
 	RuleFilter ruleFilter = CompositeRuleCharacteristicsFilter.of("s > 0 & coverage-factor >= 0.01");
 	
+	//PARAM 3
+	int threadsCount = Runtime.getRuntime().availableProcessors(); //number of threads used to process cross-validation folds (of all seeds); each thread keeps train data of its fold (0.9 of the data for 10 folds), so folds take up to about threadsCount * 0.9 * size of the data
+	
+	//PARAM 4
+	//double[] sweptConsistencyThresholds = {0.0, 0.005, 0.01, 0.015, 0.02, 0.025, 0.03};
+	double[] sweptConsistencyThresholds = {}; //thresholds compared by cross-validation after the main analysis; empty array means no sweep
+	
+	//PARAM 5
+	//double[] racedConsistencyThresholds = {0.0, 0.005, 0.01, 0.015, 0.02};
+	double[] racedConsistencyThresholds = {}; //thresholds raced (combined with racedRuleFilters) over cross-validation folds of all seeds after the main analysis; empty array means no race
+	String[] racedRuleFilters = {"s > 0", "s > 0 & coverage-factor >= 0.01", "s > 0 & confidence > 0.5"};
+	ConfigurationRace.Measure raceMeasure = ConfigurationRace.Measure.ACCURACY;
+	
+	//PARAM 6
+	//int baggedModelsCount = BaggingEngine.DEFAULT_MODELS_COUNT;
+	int baggedModelsCount = 0; //number of models of a bagged ensemble trained on the whole data after the main analysis, reporting its out-of-bag accuracy; 0 means no bagging
+	
 	final int foldsCount = 10;
 	final long seeds[] = {0L, 5488762120989881L, 4329629961476882L};
 	final int decisionAttributeIndex = 11;
@@ -85,13 +102,34 @@ public class BankCustomerSatisfactionAnalysis {
 	}
 	
 	/**
-	 * Calculations.
+	 * Performs calculations, reporting results asynchronously to the console and to result files.
 	 */
 	void run() {
-		InformationTable informationTable = null;
+		try {
+			reportSink = new ReportSink(reportPath+"-results.csv", reportPath+"-results.jsonl");
+		} catch (IOException exception) {
+			exception.printStackTrace();
+		}
 		
 		try {
-			informationTable = InformationTableBuilder.safelyBuildFromJSONFile(metadataPath, dataPath);
+			analyze();
+		} finally {
+			try {
+				reportSink.close(); //writes all pending reports
+			} catch (IOException exception) {
+				exception.printStackTrace();
+			}
+		}
+	}
+	
+	/**
+	 * Calculations.
+	 */
+	void analyze() {
+		InformationTable informationTable = null;
+		
+		try (AnalysisMetrics.PhaseTimer timer = metrics.start(AnalysisMetrics.Phase.LOAD)) {
+			informationTable = InformationTableSnapshot.safelyBuildFromJSONFile(metadataPath, dataPath, snapshotDirectoryPath);
 		} catch (IOException exception) {
 			exception.printStackTrace();
 		} catch (ObjectParseException exception) {
@@ -99,12 +137,12 @@ public class BankCustomerSatisfactionAnalysis {
 		}
 		
 		if (informationTable != null) { //read succeeded
-			System.out.println("Data read from "+metadataPath+" and "+dataPath+"."); //!
+			reportSink.message("Data read from "+metadataPath+" and "+dataPath+"."); //!
 			
 			InformationTableWithDecisionDistributions informationTableWithDecisionDistributions = new InformationTableWithDecisionDistributions(informationTable, true);
 			
-			System.out.println("Consistency threshold: " + consistencyThreshold); //!
-			System.out.println("Quality of approximation: " + calculateQualityOfApproximation(informationTableWithDecisionDistributions, consistencyThreshold)); //!
+			reportSink.message("Consistency threshold: " + consistencyThreshold); //!
+			reportSink.message("Quality of approximation: " + calculateQualityOfApproximation(informationTableWithDecisionDistributions, consistencyThreshold)); //!
 			
 			printRuleFilter(ruleFilter); //!
 
@@ -112,35 +150,51 @@ public class BankCustomerSatisfactionAnalysis {
 			
 			if (ruleSetWithCharacteristics != null) {
 				writeRuleSet2RuleML(ruleSetWithCharacteristics, ruleSetPath); //save rules to disk
-				System.out.println(ruleSetWithCharacteristics.size()+" rules written to file "+ruleSetPath+"."); //!
+				reportSink.message(ruleSetWithCharacteristics.size()+" rules written to file "+ruleSetPath+"."); //!
 			}
 			
 			defaultClassificationResult = new SimpleClassificationResult(new SimpleDecision(EnumerationFieldFactory.getInstance().create(
 					defaultClassificationResultLabel, (EvaluationAttribute)informationTableWithDecisionDistributions.getAttribute(decisionAttributeIndex)), decisionAttributeIndex));
 			
-			System.out.println("Default decision: " + defaultClassificationResult.getSuggestedDecision().getEvaluation()); //!
+			reportSink.message("Default decision: " + defaultClassificationResult.getSuggestedDecision().getEvaluation()); //!
 			
-			System.out.println();
-			System.out.println("-- Misclassification matrix for reclassification:"); //!
+			reportSink.message("");
+			reportSink.message("-- Misclassification matrix for reclassification:"); //!
 			
 			OrdinalMisclassificationMatrix mzeOrdinalMisclassificationMatrix = classify(ruleSetWithCharacteristics, informationTableWithDecisionDistributions, defaultClassificationResult);
-			printMisclassificationMatrix(mzeOrdinalMisclassificationMatrix, informationTableWithDecisionDistributions.getOrderedUniqueFullyDeterminedDecisions());
+			printMisclassificationMatrix("reclassification", mzeOrdinalMisclassificationMatrix, informationTableWithDecisionDistributions.getOrderedUniqueFullyDeterminedDecisions());
 			
-			for (long seed : seeds) {
-				System.out.println();
-				System.out.println("-- Misclassification matrix for cross-validation: (seed="+seed+")"); //!
-				
-				long startTime = System.currentTimeMillis();
-				OrdinalMisclassificationMatrix avgMZEOrdinalMisclassificationMatrix = crossValidate(informationTableWithDecisionDistributions, seed, foldsCount);
-				printMisclassificationMatrix(avgMZEOrdinalMisclassificationMatrix, informationTableWithDecisionDistributions.getOrderedUniqueFullyDeterminedDecisions());
-				long duration = System.currentTimeMillis() - startTime;
-				System.out.println("-- Cross-validation time [ms]: "+duration);
-				
-				averageAccuracies.add(avgMZEOrdinalMisclassificationMatrix.getAccuracy());
+			long startTime = System.currentTimeMillis();
+			OrdinalMisclassificationMatrix[] avgMZEOrdinalMisclassificationMatrices = crossValidate(informationTableWithDecisionDistributions, seeds, foldsCount);
+			long duration = System.currentTimeMillis() - startTime;
+			
+			for (int seedIndex = 0; seedIndex < seeds.length; seedIndex++) {
+				reportSink.message("");
+				reportSink.message("-- Misclassification matrix for cross-validation: (seed="+seeds[seedIndex]+")"); //!
+				printMisclassificationMatrix("cross-validation (seed="+seeds[seedIndex]+")", avgMZEOrdinalMisclassificationMatrices[seedIndex], informationTableWithDecisionDistributions.getOrderedUniqueFullyDeterminedDecisions());
+				averageAccuracies.add(avgMZEOrdinalMisclassificationMatrices[seedIndex].getAccuracy());
+			}
+			
+			reportSink.message("");
+			reportSink.message("-- Cross-validation time [ms] (all seeds): "+duration);
+			reportSink.message("-- Fold assignment version: "+CrossValidationEngine.FOLD_ASSIGNMENT_VERSION+" (for the same seeds, folds differ from the ones of version 1, drawn by CrossValidator)"); //!
+			
+			reportSink.message("");
+			reportSink.message("Average over all CVs: "+averageAccuracies.stream().collect(Collectors.averagingDouble(num -> num)));
+			
+			if (sweptConsistencyThresholds.length > 0) {
+				sweepConsistencyThresholds(informationTableWithDecisionDistributions, sweptConsistencyThresholds);
 			}
 			
-			System.out.println();
-			System.out.println("Average over all CVs: "+averageAccuracies.stream().collect(Collectors.averagingDouble(num -> num)));
+			if (racedConsistencyThresholds.length > 0) {
+				raceConfigurations(informationTableWithDecisionDistributions, racedConsistencyThresholds, racedRuleFilters);
+			}
+			
+			if (baggedModelsCount > 0) {
+				bagRules(informationTableWithDecisionDistributions, baggedModelsCount);
+			}
+			
+			writeMetrics();
 		}
 	}
 	
@@ -154,10 +208,12 @@ public class BankCustomerSatisfactionAnalysis {
 		InformationTableWithDecisionDistributions informationTableWithDecisionDistributions = (informationTable instanceof InformationTableWithDecisionDistributions ?
 				(InformationTableWithDecisionDistributions)informationTable : new InformationTableWithDecisionDistributions(informationTable, true));
 		
-		Unions unions = new UnionsWithSingleLimitingDecision(informationTableWithDecisionDistributions, 
-				   new VCDominanceBasedRoughSetCalculator(EpsilonConsistencyMeasure.getInstance(), consistencyThreshold));
-		
-		return unions.getQualityOfApproximation();
+		try (AnalysisMetrics.PhaseTimer timer = metrics.start(AnalysisMetrics.Phase.APPROXIMATION)) {
+			Unions unions = new UnionsWithSingleLimitingDecision(informationTableWithDecisionDistributions, 
+					   new VCDominanceBasedRoughSetCalculator(EpsilonConsistencyMeasure.getInstance(), consistencyThreshold));
+			
+			return unions.getQualityOfApproximation();
+		}
 	}
 	
 	/**
@@ -171,15 +227,21 @@ public class BankCustomerSatisfactionAnalysis {
 	 * @return rule set with characteristics
 	 */
 	RuleSetWithComputableCharacteristics generateAndFilterRules(InformationTable informationTable, double consistencyThreshold, RuleFilter ruleFilter, String comment) {
-		long startTime = System.currentTimeMillis();
-		RuleSetWithComputableCharacteristics ruleSetWithCharacteristics = (new VCDomLEMWrapper()).induceRulesWithCharacteristics(informationTable, consistencyThreshold);
-		long duration = System.currentTimeMillis() - startTime;
+		RuleSetWithComputableCharacteristics ruleSetWithCharacteristics;
+		long duration;
+		try (AnalysisMetrics.PhaseTimer timer = metrics.start(AnalysisMetrics.Phase.INDUCTION)) {
+			ruleSetWithCharacteristics = ruleInductionCache.induceRulesWithCharacteristics(informationTable, consistencyThreshold); //read from cache, or induced by VCDomLEM
+			duration = TimeUnit.NANOSECONDS.toMillis(timer.stop());
+		}
 		
-		System.out.println(comment+"Rules' generation time [ms]: "+duration);
+		RuleSetWithComputableCharacteristics filteredRuleSetWithCharacteristics;
+		try (AnalysisMetrics.PhaseTimer filteringTimer = metrics.start(AnalysisMetrics.Phase.FILTERING)) {
+			filteredRuleSetWithCharacteristics = ruleSetWithCharacteristics.filter(ruleFilter); //apply rule filter (replaces rule set, retains hash)
+		}
 		
-		ruleSetWithCharacteristics.setLearningInformationTableHash(informationTable.getHash()); //save data hash along with rules
+		reportSink.rulesGenerated(comment, filteredRuleSetWithCharacteristics.size(), duration);
 		
-		return ruleSetWithCharacteristics.filter(ruleFilter); //apply rule filter (replaces rule set, retains hash)
+		return filteredRuleSetWithCharacteristics;
 	}
 	
 	/**
@@ -192,15 +254,12 @@ public class BankCustomerSatisfactionAnalysis {
 	 * @return ordinal misclassification matrix summarizing classification of test objects by rules
 	 */
 	OrdinalMisclassificationMatrix classify(RuleSetWithComputableCharacteristics ruleSetWithCharacteristics, InformationTable testData, SimpleClassificationResult defaultClassificationResult) {
-		SimpleRuleClassifier simpleRuleClassifier = new SimpleOptimizingRuleClassifier(ruleSetWithCharacteristics, defaultClassificationResult);
-
-		int testDataSize = testData.getNumberOfObjects(); //it is assumed that testDataSize > 0
+		//it is assumed that testData contains at least one object
 		Decision[] orderOfDecisions = testData.getOrderedUniqueFullyDeterminedDecisions();
 		Decision[] originalDecisions = testData.getDecisions(true);
-		SimpleDecision[] assignedDecisions = new SimpleDecision[testDataSize]; //will contain assigned decisions
-	
-		for (int testObjectIndex = 0; testObjectIndex < testDataSize; testObjectIndex++) {
-			assignedDecisions[testObjectIndex] = simpleRuleClassifier.classify(testObjectIndex, testData).getSuggestedDecision();
+		SimpleDecision[] assignedDecisions;
+		try (AnalysisMetrics.PhaseTimer timer = metrics.start(AnalysisMetrics.Phase.CLASSIFICATION)) {
+			assignedDecisions = (new BatchClassifier(ruleSetWithCharacteristics, defaultClassificationResult)).classify(testData); //classified in parallel chunks, if testData is large enough
 		}
 		
 		return new OrdinalMisclassificationMatrix(orderOfDecisions, originalDecisions, assignedDecisions);
@@ -216,60 +275,133 @@ public class BankCustomerSatisfactionAnalysis {
 	 * @return ordinal misclassification matrix resulting from k-fold cross-validation
 	 */
 	OrdinalMisclassificationMatrix crossValidate(InformationTable informationTable, long seed, int foldsCount) {
+		return crossValidate(informationTable, new long[] {seed}, foldsCount)[0];
+	}
+	
+	/**
+	 * Calculations ordinal misclassification matrices resulting from k-fold cross-validations performed for consecutive seeds.
+	 * All folds, for all seeds, are processed together by {@link CrossValidationEngine}, using {@link #threadsCount} threads.
+	 * 
+	 * @param informationTable the data
+	 * @param seeds random generator seeds
+	 * @param foldsCount number of cross-validation folds
+	 * 
+	 * @return ordinal misclassification matrices resulting from k-fold cross-validations, one per seed
+	 */
+	OrdinalMisclassificationMatrix[] crossValidate(InformationTable informationTable, long[] seeds, int foldsCount) {
+		return crossValidate(informationTable, seeds, foldsCount, consistencyThreshold);
+	}
+	
+	/**
+	 * Calculations ordinal misclassification matrices resulting from k-fold cross-validations performed for consecutive seeds, for given consistency threshold.
+	 * 
+	 * @param informationTable the data
+	 * @param seeds random generator seeds
+	 * @param foldsCount number of cross-validation folds
+	 * @param consistencyThreshold threshold for consistency measure used when inducing rules in each fold
+	 * 
+	 * @return ordinal misclassification matrices resulting from k-fold cross-validations, one per seed
+	 */
+	OrdinalMisclassificationMatrix[] crossValidate(InformationTable informationTable, long[] seeds, int foldsCount, double consistencyThreshold) {
 		InformationTableWithDecisionDistributions informationTableWithDecisionDistributions = (informationTable instanceof InformationTableWithDecisionDistributions ?
 				(InformationTableWithDecisionDistributions)informationTable : new InformationTableWithDecisionDistributions(informationTable, true));
 		
-		CrossValidator crossValidator = new CrossValidator(new Random());
-		crossValidator.setSeed(seed);
-		List<CrossValidator.CrossValidationFold<InformationTable>> folds = crossValidator.splitStratifiedIntoKFolds(informationTableWithDecisionDistributions, foldsCount); //split data in foldsCount folds
-		
-		final class IndexedFold {
-			int index; //starting from 1
-			InformationTable trainData;
-			InformationTable testData;
-			
-			public IndexedFold(int foldIndex, InformationTable foldTrainData, InformationTable foldTestData) {
-				this.index = foldIndex;
-				this.trainData = foldTrainData;
-				this.testData = foldTestData;
+		//do in parallel sequences of rule learning on train data and classification with the rules on test data
+		return (new CrossValidationEngine(threadsCount)).crossValidate(informationTableWithDecisionDistributions, seeds, foldsCount, fold -> {
+			reportSink.foldStarted(fold.getSeed(), fold.getIndex(), foldsCount, fold.getNumberOfTrainObjects(), fold.getNumberOfTestObjects());
+			try (AnalysisMetrics.PhaseTimer timer = metrics.start(AnalysisMetrics.Phase.FOLD)) {
+				return classify(generateAndFilterRules(fold.getTrainData(), consistencyThreshold, ruleFilter, "  Fold "+fold.getIndex()+"/"+foldsCount+" (seed="+fold.getSeed()+"). "), fold.getTestData(), defaultClassificationResult);
 			}
-		}
-		
-		List<IndexedFold> indexedFolds = new ArrayList<>(foldsCount);
-		for (int i = 0; i < foldsCount; i++) {
-			indexedFolds.add(new IndexedFold(i+1, folds.get(i).getTrainingTable(), folds.get(i).getValidationTable()));
-		}
+		});
+	}
+	
+	/**
+	 * Compares given consistency thresholds, printing for each of them quality of approximation, number of rules induced from the whole data,
+	 * and accuracy averaged over cross-validations for all seeds. Dominance cones are calculated only once, by {@link ConsistencyThresholdSweep},
+	 * and rules are induced from the whole data only once for thresholds yielding the same lower approximations. Each threshold is cross-validated separately,
+	 * as thresholds equivalent on the whole data need not be equivalent on training data of folds.
+	 * 
+	 * @param informationTable the data
+	 * @param consistencyThresholds compared thresholds for consistency measure
+	 */
+	void sweepConsistencyThresholds(InformationTableWithDecisionDistributions informationTable, double[] consistencyThresholds) {
+		long startTime = System.currentTimeMillis();
+		ConsistencyThresholdSweep consistencyThresholdSweep = new ConsistencyThresholdSweep(informationTable);
 		
-		OrdinalMisclassificationMatrix[] mzeOrdinalMisclassificationMatrices = new OrdinalMisclassificationMatrix[foldsCount];
-		OrdinalMisclassificationMatrix avgMZEOrdinalMisclassificationMatrix;
-
-//		InformationTable foldTrainData;
-//		InformationTable foldTestData;
-//		RuleSetWithComputableCharacteristics ruleSetWithCharacteristics;
-//		
-//		for (int foldIndex = 0; foldIndex < foldsCount; foldIndex++) {
-//			foldTrainData = folds.get(foldIndex).getTrainingTable();
-//			foldTestData = folds.get(foldIndex).getValidationTable();
-//
-//			System.out.println("Starting fold " + (foldIndex + 1) + "/" + foldsCount + ": train="+foldTrainData.getNumberOfObjects()+", test="+foldTestData.getNumberOfObjects()+" objects. ");
-//			
-//			ruleSetWithCharacteristics = generateAndFilterRules(foldTrainData, consistencyThreshold, ruleFilter, "  Fold "+(foldIndex + 1)+"/"+foldsCount+". ");
-//			
-//			mzeOrdinalMisclassificationMatrices[foldIndex] = classify(ruleSetWithCharacteristics, foldTestData, defaultClassificationResult);
-//		} //for foldIndex
+		List<ConsistencyThresholdSweep.Result> results = consistencyThresholdSweep.sweep(consistencyThresholds, threshold -> {
+			RuleSetWithComputableCharacteristics ruleSet = generateAndFilterRules(informationTable, threshold, ruleFilter, "Sweep, full data (threshold="+threshold+"). ");
+			return ruleSet != null ? ruleSet.size() : 0;
+		}, threshold -> Arrays.stream(crossValidate(informationTable, seeds, foldsCount, threshold)).mapToDouble(OrdinalMisclassificationMatrix::getAccuracy).average().orElse(0.0));
+		long duration = System.currentTimeMillis() - startTime;
 		
-		//do in parallel sequences of rule learning on train data and classification with the rules on test data		
-		mzeOrdinalMisclassificationMatrices = indexedFolds.parallelStream()
-			.map(fold -> {
-				System.out.println("Starting fold "+(fold.index)+"/"+foldsCount+": train="+fold.trainData.getNumberOfObjects()+", test="+fold.testData.getNumberOfObjects()+" objects.");
-				return classify(generateAndFilterRules(fold.trainData, consistencyThreshold, ruleFilter, "  Fold "+(fold.index)+"/"+foldsCount+". "), fold.testData, defaultClassificationResult);
-			})
-			.collect(Collectors.toList()).toArray(mzeOrdinalMisclassificationMatrices);
+		reportSink.message("");
+		reportSink.message("-- Consistency threshold sweep:"); //!
+		reportSink.message("threshold\tquality\taccuracy\trules"); //!
+		for (ConsistencyThresholdSweep.Result result : results) {
+			reportSink.message(result.toString()); //!
+		}
+		reportSink.message("-- Consistency threshold sweep time [ms]: "+duration);
+	}
+	
+	/**
+	 * Races all combinations of given consistency thresholds and rule filters over cross-validation folds of all seeds, using {@link ConfigurationRace},
+	 * and prints surviving and eliminated configurations together with compute saved with respect to cross-validating all of them.
+	 * 
+	 * @param informationTable the data
+	 * @param consistencyThresholds raced thresholds for consistency measure
+	 * @param ruleFilters raced rule filters, as expressions accepted by {@link ExperimentGridRunner#createRuleFilter(String)}
+	 */
+	void raceConfigurations(InformationTableWithDecisionDistributions informationTable, double[] consistencyThresholds, String[] ruleFilters) {
+		long startTime = System.currentTimeMillis();
+		ConfigurationRace configurationRace = new ConfigurationRace(ruleInductionCache::induceRulesWithCharacteristics,
+				(ruleSet, testData) -> classify(ruleSet, testData, defaultClassificationResult),
+				raceMeasure, ConfigurationRace.DEFAULT_MIN_BLOCKS, ConfigurationRace.DEFAULT_ALPHA, threadsCount);
+		ConfigurationRace.Result result = configurationRace.race(informationTable, consistencyThresholds, ruleFilters, seeds, foldsCount);
+		long duration = System.currentTimeMillis() - startTime;
 		
-		avgMZEOrdinalMisclassificationMatrix = new OrdinalMisclassificationMatrix(true, informationTableWithDecisionDistributions.getOrderedUniqueFullyDeterminedDecisions(),
-				mzeOrdinalMisclassificationMatrices); //accumulated misclassification matrix
+		reportSink.message("");
+		reportSink.message("-- Configuration race:"); //!
+		reportSink.message("threshold\tfilter\t"+raceMeasure.name().toLowerCase()+"\tfolds\tstatus"); //!
+		for (ConfigurationRace.Candidate candidate : result.getCandidates()) {
+			reportSink.message(candidate.toString()); //!
+		}
+		reportSink.message(result.getSavingsSummary()); //!
+		reportSink.message("-- Configuration race time [ms]: "+duration);
+	}
+	
+	/**
+	 * Trains bagged ensemble of rule sets induced from bootstrap samples of the whole data, using {@link BaggingEngine},
+	 * and prints its out-of-bag accuracy after consecutive trained models.
+	 * 
+	 * @param informationTable the data
+	 * @param modelsCount number of models of the ensemble
+	 */
+	void bagRules(InformationTableWithDecisionDistributions informationTable, int modelsCount) {
+		long startTime = System.currentTimeMillis();
+		BaggingEngine.Ensemble ensemble = (new BaggingEngine(consistencyThreshold, ruleFilter, defaultClassificationResult, threadsCount)).train(informationTable, modelsCount, seeds[0]);
+		long duration = System.currentTimeMillis() - startTime;
 		
-		return avgMZEOrdinalMisclassificationMatrix;
+		reportSink.message("");
+		reportSink.message("-- Bagging, out-of-bag accuracy:"); //!
+		reportSink.message("models\taccuracy"); //!
+		List<Double> outOfBagAccuracies = ensemble.getOutOfBagAccuracies();
+		for (int i = 0; i < outOfBagAccuracies.size(); i++) {
+			reportSink.message((i + 1)+"\t"+outOfBagAccuracies.get(i)); //!
+		}
+		reportSink.message("-- Bagging time [ms]: "+duration);
+	}
+	
+	/**
+	 * Writes metrics of this analysis to {@link #metricsPath}.
+	 */
+	void writeMetrics() {
+		try {
+			metrics.writeJSON(metricsPath, "BankCustomerSatisfactionAnalysis");
+			reportSink.message("");
+			reportSink.message("Metrics written to "+metricsPath+"."); //!
+		} catch (IOException exception) {
+			exception.printStackTrace();
+		}
 	}
 	
 	/**
@@ -279,29 +411,26 @@ public class BankCustomerSatisfactionAnalysis {
 	 */
 	void printRuleFilter(RuleFilter ruleFilter) {
 		if (ruleFilter instanceof AcceptingRuleFilter) {
-			System.out.println("Rule filter: accepting rule filter.");
+			reportSink.message("Rule filter: accepting rule filter.");
 		} else if (ruleFilter instanceof ConfidenceRuleFilter) { //Confidence rule filter
 				ConfidenceRuleFilter confidenceRuleFilter = (ConfidenceRuleFilter)ruleFilter;
-				System.out.println("Rule filter: confidence rule filter (confidence "+(confidenceRuleFilter.getStrictComparison() ? "> " : ">= ")+confidenceRuleFilter.getConfidenceThreshold()+")");
+				reportSink.message("Rule filter: confidence rule filter (confidence "+(confidenceRuleFilter.getStrictComparison() ? "> " : ">= ")+confidenceRuleFilter.getConfidenceThreshold()+")");
 		} else {
-			System.out.println("Rule filter: "+ruleFilter.toString());
+			reportSink.message("Rule filter: "+ruleFilter.toString());
 
 		}
 	}
 	
 	/**
 	 * Writes to file, in RuleML format, given rules (and their characteristics, if present).
+	 * Rules are written one chunk after another, to a buffered stream. If file path ends with ".gz", the file is compressed with gzip.
 	 * 
 	 * @param ruleSet set of rules (possibly along with their characteristics)
 	 * @param ruleMLFilePath path to disk file where rules (and their characteristics) should be written in RuleML format
 	 */
 	void writeRuleSet2RuleML(RuleSet ruleSet, String ruleMLFilePath) {
-		RuleMLBuilder ruleMLBuilder = new RuleMLBuilder();
-		String ruleML = ruleMLBuilder.toRuleMLString(ruleSet, 1);
-		
-		try (FileWriter fileWriter = new FileWriter(ruleMLFilePath)) {
-			fileWriter.write(ruleML);
-			fileWriter.close();
+		try (AnalysisMetrics.PhaseTimer timer = metrics.start(AnalysisMetrics.Phase.SERIALIZATION)) {
+			(new RuleMLStreamWriter()).write(ruleSet, 1, ruleMLFilePath);
 		}
 		catch (IOException exception) {
 			exception.printStackTrace();
@@ -309,27 +438,14 @@ public class BankCustomerSatisfactionAnalysis {
 	}
 	
 	/**
-	 * Prints given misclassification matrix to standard output.
+	 * Reports given misclassification matrix to {@link #reportSink}, which prints it to standard output and writes its summary to result files.
 	 * 
+	 * @param label label of the matrix, written to result files
 	 * @param misclassificationMatrix misclassification matrix to print to system output 
 	 * @param orderOfDecisions order of decisions (and thus order of rows and columns of the matrix)
 	 */
-	void printMisclassificationMatrix(OrdinalMisclassificationMatrix misclassificationMatrix, Decision[] orderOfDecisions) {
-		System.out.println("Accuracy: " + misclassificationMatrix.getAccuracy()); //!
-		System.out.println("MAE: " + misclassificationMatrix.getMAE()); //!
-		System.out.println("RMSE: " + misclassificationMatrix.getRMSE()); //!
-		System.out.println("GMean: " + misclassificationMatrix.getGmean()); //!
-		System.out.println("Number of correct assignments: " + misclassificationMatrix.getNumberOfCorrectAssignments()); //!
-		System.out.println("Number of incorrect assignments: " + misclassificationMatrix.getNumberOfIncorrectAssignments()); //!
-		System.out.println("Number of objects with assigned decision: " + misclassificationMatrix.getNumberObjectsWithAssignedDecision()); //!
-		
-		for (int i = 0; i < orderOfDecisions.length; i++) {
-			for (int j = 0; j < orderOfDecisions.length; j++) {
-				System.out.println("Misclassification matrix cell for row '"+orderOfDecisions[i].getEvaluation(decisionAttributeIndex)
-						+"' and column '"+orderOfDecisions[j].getEvaluation(decisionAttributeIndex)+"': "
-						+ misclassificationMatrix.getValue(orderOfDecisions[i], orderOfDecisions[j])); //!
-			}
-		}
+	void printMisclassificationMatrix(String label, OrdinalMisclassificationMatrix misclassificationMatrix, Decision[] orderOfDecisions) {
+		reportSink.matrixCalculated(label, misclassificationMatrix, orderOfDecisions, decisionAttributeIndex); //rendered by the thread of report sink
 	}
 	
 }
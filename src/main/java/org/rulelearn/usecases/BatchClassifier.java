@@ -0,0 +1,135 @@
+/**
+ * Copyright (C) Jerzy Błaszczyński, Marcin Szeląg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rulelearn.usecases;
+
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+import org.rulelearn.classification.SimpleClassificationResult;
+import org.rulelearn.classification.SimpleOptimizingRuleClassifier;
+import org.rulelearn.data.InformationTable;
+import org.rulelearn.data.SimpleDecision;
+import org.rulelearn.rules.RuleSetWithCharacteristics;
+
+/**
+ * Classifies all objects from an {@link InformationTable information table} in a batch.
+ * Range of object indices is split into chunks, classified in parallel. Each thread uses its own {@link IndexedRuleClassifier classifier},
+ * and each chunk writes to a disjoint range of the result array, so threads do not contend with each other.
+ * {@link ColumnarInformationTable Columnar view} of classified table is built once per batch, and shared by classifiers of all threads.
+ * Small tables are classified sequentially, as the cost of parallelization would exceed the gain.
+ *
+ * @author Marcin Szeląg (<a href="mailto:marcin.szelag@cs.put.poznan.pl">marcin.szelag@cs.put.poznan.pl</a>)
+ */
+public class BatchClassifier {
+
+	/**
+	 * Default number of objects classified as a single chunk.
+	 */
+	public static final int DEFAULT_CHUNK_SIZE = 1024;
+
+	/**
+	 * Default number of objects below which classification is sequential.
+	 */
+	public static final int DEFAULT_SEQUENTIAL_THRESHOLD = 4096;
+
+	final Supplier<? extends IndexedRuleClassifier> classifierFactory;
+	final int chunkSize;
+	final int sequentialThreshold;
+
+	/**
+	 * Constructs batch classifier employing {@link IndexedRuleClassifier}, with default chunk size and sequential threshold.
+	 * Index of rules is compiled once, and shared by classifiers of all threads. Results are identical to the ones of {@link SimpleOptimizingRuleClassifier}.
+	 *
+	 * @param ruleSetWithCharacteristics rules used to classify objects
+	 * @param defaultClassificationResult default classification result
+	 */
+	public BatchClassifier(RuleSetWithCharacteristics ruleSetWithCharacteristics, SimpleClassificationResult defaultClassificationResult) {
+		this(RuleSetIndex.of(ruleSetWithCharacteristics), ruleSetWithCharacteristics, defaultClassificationResult);
+	}
+
+	/**
+	 * Constructs batch classifier employing {@link IndexedRuleClassifier} with given index of rules, shared by classifiers of all threads.
+	 * Default chunk size and sequential threshold are used.
+	 *
+	 * @param ruleSetIndex index of given rules
+	 * @param ruleSetWithCharacteristics rules used to classify objects
+	 * @param defaultClassificationResult default classification result
+	 */
+	public BatchClassifier(RuleSetIndex ruleSetIndex, RuleSetWithCharacteristics ruleSetWithCharacteristics, SimpleClassificationResult defaultClassificationResult) {
+		this(() -> new IndexedRuleClassifier(ruleSetIndex, ruleSetWithCharacteristics, defaultClassificationResult, IndexedRuleClassifier.DEFAULT_CACHE_SIZE),
+				DEFAULT_CHUNK_SIZE, DEFAULT_SEQUENTIAL_THRESHOLD);
+	}
+
+	/**
+	 * Constructs batch classifier.
+	 *
+	 * @param classifierFactory factory of classifiers; called at most once per classifying thread
+	 * @param chunkSize number of objects classified as a single chunk
+	 * @param sequentialThreshold number of objects below which classification is sequential
+	 *
+	 * @throws IllegalArgumentException if chunk size is not positive
+	 */
+	public BatchClassifier(Supplier<? extends IndexedRuleClassifier> classifierFactory, int chunkSize, int sequentialThreshold) {
+		if (chunkSize < 1) {
+			throw new IllegalArgumentException("Chunk size has to be positive.");
+		}
+		this.classifierFactory = classifierFactory;
+		this.chunkSize = chunkSize;
+		this.sequentialThreshold = sequentialThreshold;
+	}
+
+	/**
+	 * Classifies all objects from given information table.
+	 *
+	 * @param testData test data
+	 * @return array of suggested decisions, indexed by object index
+	 */
+	public SimpleDecision[] classify(InformationTable testData) {
+		int testDataSize = testData.getNumberOfObjects();
+		SimpleDecision[] assignedDecisions = new SimpleDecision[testDataSize]; //will contain assigned decisions
+		ColumnarInformationTable columnarTestData = ColumnarInformationTable.of(testData);
+
+		if (testDataSize < sequentialThreshold || testDataSize <= chunkSize) {
+			classify(classifierFactory.get(), columnarTestData, 0, testDataSize, assignedDecisions);
+		} else {
+			ThreadLocal<IndexedRuleClassifier> threadClassifier = ThreadLocal.withInitial(classifierFactory);
+			int chunksCount = (testDataSize + chunkSize - 1) / chunkSize;
+
+			IntStream.range(0, chunksCount).parallel().forEach(chunkIndex -> {
+				int fromIndex = chunkIndex * chunkSize;
+				classify(threadClassifier.get(), columnarTestData, fromIndex, Math.min(fromIndex + chunkSize, testDataSize), assignedDecisions);
+			});
+		}
+
+		return assignedDecisions;
+	}
+
+	/**
+	 * Classifies objects with indices from given range.
+	 *
+	 * @param classifier classifier used by current thread
+	 * @param columnarTestData columnar view of test data
+	 * @param fromIndex index of the first classified object (inclusive)
+	 * @param toIndex index of the last classified object (exclusive)
+	 * @param assignedDecisions array of suggested decisions, filled for given range of objects
+	 */
+	static void classify(IndexedRuleClassifier classifier, ColumnarInformationTable columnarTestData, int fromIndex, int toIndex, SimpleDecision[] assignedDecisions) {
+		for (int testObjectIndex = fromIndex; testObjectIndex < toIndex; testObjectIndex++) {
+			assignedDecisions[testObjectIndex] = classifier.classify(testObjectIndex, columnarTestData).getSuggestedDecision();
+		}
+	}
+
+}
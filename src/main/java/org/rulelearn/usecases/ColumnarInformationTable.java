@@ -0,0 +1,236 @@
+/**
+ * Copyright (C) Jerzy Błaszczyński, Marcin Szeląg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rulelearn.usecases;
+
+import java.util.stream.IntStream;
+
+import org.rulelearn.data.AttributePreferenceType;
+import org.rulelearn.data.EvaluationAttribute;
+import org.rulelearn.data.InformationTable;
+import org.rulelearn.types.EnumerationField;
+import org.rulelearn.types.Field;
+import org.rulelearn.types.IntegerField;
+import org.rulelearn.types.RealField;
+import org.rulelearn.types.UnknownSimpleField;
+
+/**
+ * Primitive columnar view of an {@link InformationTable information table}. Evaluations of all objects on each attribute are stored in a single primitive array:
+ * {@code int[]} for integer evaluations and indices of enumeration elements, and {@code double[]} for real evaluations. Missing evaluations are marked in a bit mask
+ * (one bit per object, in consecutive {@code long} words), and the corresponding array elements are zero.
+ * Columns of attributes with other evaluations (e.g., identifiers), or with evaluations of mixed types, are not created.
+ * Preference types of evaluation attributes are kept as well, so comparisons of column elements can follow them.
+ * <br>
+ * View is built once per table (columns in parallel), and is immutable afterwards, so it can be shared by several threads.
+ * It refers to the viewed table, which remains the source of attributes and decisions.
+ *
+ * @author Marcin Szeląg (<a href="mailto:marcin.szelag@cs.put.poznan.pl">marcin.szelag@cs.put.poznan.pl</a>)
+ */
+public class ColumnarInformationTable {
+
+	final InformationTable informationTable;
+	final int objectsCount;
+	final int[][] integerColumns; //indexed by attribute index; null for attributes without integer column
+	final double[][] realColumns; //indexed by attribute index; null for attributes without real column
+	final long[][] missingMasks; //indexed by attribute index; null for attributes without missing evaluations
+	final AttributePreferenceType[] preferenceTypes; //indexed by attribute index; null for attributes other than evaluation ones
+
+	/**
+	 * Constructs this view.
+	 *
+	 * @param informationTable viewed information table
+	 * @param integerColumns integer columns, indexed by attribute index
+	 * @param realColumns real columns, indexed by attribute index
+	 * @param missingMasks masks of missing evaluations, indexed by attribute index
+	 */
+	ColumnarInformationTable(InformationTable informationTable, int[][] integerColumns, double[][] realColumns, long[][] missingMasks) {
+		this.informationTable = informationTable;
+		this.objectsCount = informationTable.getNumberOfObjects();
+		this.integerColumns = integerColumns;
+		this.realColumns = realColumns;
+		this.missingMasks = missingMasks;
+		this.preferenceTypes = new AttributePreferenceType[integerColumns.length];
+		for (int attributeIndex = 0; attributeIndex < preferenceTypes.length; attributeIndex++) {
+			if (informationTable.getAttribute(attributeIndex) instanceof EvaluationAttribute) {
+				preferenceTypes[attributeIndex] = ((EvaluationAttribute)informationTable.getAttribute(attributeIndex)).getPreferenceType();
+			}
+		}
+	}
+
+	/**
+	 * Builds columnar view of given information table.
+	 *
+	 * @param informationTable information table
+	 * @return columnar view of given table
+	 */
+	public static ColumnarInformationTable of(InformationTable informationTable) {
+		int attributesCount = informationTable.getNumberOfAttributes();
+		int[][] integerColumns = new int[attributesCount][];
+		double[][] realColumns = new double[attributesCount][];
+		long[][] missingMasks = new long[attributesCount][];
+
+		IntStream.range(0, attributesCount).parallel().forEach(attributeIndex -> buildColumn(informationTable, attributeIndex, integerColumns, realColumns, missingMasks));
+
+		return new ColumnarInformationTable(informationTable, integerColumns, realColumns, missingMasks);
+	}
+
+	/**
+	 * Copies evaluations of all objects on given attribute to a primitive column.
+	 *
+	 * @param informationTable information table
+	 * @param attributeIndex index of an attribute
+	 * @param integerColumns integer columns, whose element with given attribute index is set if evaluations are integer or enumeration ones
+	 * @param realColumns real columns, whose element with given attribute index is set if evaluations are real ones
+	 * @param missingMasks masks of missing evaluations, whose element with given attribute index is set if some evaluation is missing
+	 */
+	static void buildColumn(InformationTable informationTable, int attributeIndex, int[][] integerColumns, double[][] realColumns, long[][] missingMasks) {
+		int objectsCount = informationTable.getNumberOfObjects();
+		int[] integerValues = null;
+		double[] realValues = null;
+		long[] missing = null;
+		Field field;
+
+		for (int objectIndex = 0; objectIndex < objectsCount; objectIndex++) {
+			field = informationTable.getField(objectIndex, attributeIndex);
+			if (field instanceof UnknownSimpleField) {
+				if (missing == null) {
+					missing = new long[(objectsCount + 63) >>> 6];
+				}
+				missing[objectIndex >>> 6] |= 1L << (objectIndex & 63);
+			} else if ((field instanceof IntegerField || field instanceof EnumerationField) && realValues == null) {
+				if (integerValues == null) {
+					integerValues = new int[objectsCount];
+				}
+				integerValues[objectIndex] = field instanceof IntegerField ? ((IntegerField)field).getValue() : ((EnumerationField)field).getValue();
+			} else if (field instanceof RealField && integerValues == null) {
+				if (realValues == null) {
+					realValues = new double[objectsCount];
+				}
+				realValues[objectIndex] = ((RealField)field).getValue();
+			} else {
+				return; //no column
+			}
+		}
+
+		if (integerValues != null || realValues != null) { //otherwise, only missing evaluations
+			integerColumns[attributeIndex] = integerValues;
+			realColumns[attributeIndex] = realValues;
+			missingMasks[attributeIndex] = missing;
+		}
+	}
+
+	/**
+	 * Gets viewed information table.
+	 *
+	 * @return viewed information table
+	 */
+	public InformationTable getInformationTable() {
+		return informationTable;
+	}
+
+	/**
+	 * Gets number of objects.
+	 *
+	 * @return number of objects
+	 */
+	public int getNumberOfObjects() {
+		return objectsCount;
+	}
+
+	/**
+	 * Gets column of integer evaluations (or indices of enumeration elements) on given attribute. Returned array should not be modified.
+	 *
+	 * @param attributeIndex index of an attribute
+	 * @return column of evaluations, indexed by object index, or {@code null} if attribute has no integer column
+	 */
+	public int[] getIntegerColumn(int attributeIndex) {
+		return integerColumns[attributeIndex];
+	}
+
+	/**
+	 * Gets column of real evaluations on given attribute. Returned array should not be modified.
+	 *
+	 * @param attributeIndex index of an attribute
+	 * @return column of evaluations, indexed by object index, or {@code null} if attribute has no real column
+	 */
+	public double[] getRealColumn(int attributeIndex) {
+		return realColumns[attributeIndex];
+	}
+
+	/**
+	 * Gets mask of missing evaluations on given attribute. Evaluation of object with index {@code i} is missing if bit {@code i & 63} of word {@code i >>> 6} is set.
+	 * Returned array should not be modified.
+	 *
+	 * @param attributeIndex index of an attribute
+	 * @return mask of missing evaluations, or {@code null} if attribute has no missing evaluations (or no column)
+	 */
+	public long[] getMissingMask(int attributeIndex) {
+		return missingMasks[attributeIndex];
+	}
+
+	/**
+	 * Gets preference type of given attribute.
+	 *
+	 * @param attributeIndex index of an attribute
+	 * @return preference type of the attribute, or {@code null} if it is not an evaluation attribute
+	 */
+	public AttributePreferenceType getPreferenceType(int attributeIndex) {
+		return preferenceTypes[attributeIndex];
+	}
+
+	/**
+	 * Tells if given attribute has a primitive column.
+	 *
+	 * @param attributeIndex index of an attribute
+	 * @return {@code true} if given attribute has an integer or a real column
+	 */
+	public boolean hasColumn(int attributeIndex) {
+		return integerColumns[attributeIndex] != null || realColumns[attributeIndex] != null;
+	}
+
+	/**
+	 * Tells if evaluation of given object on given attribute is missing.
+	 *
+	 * @param objectIndex index of an object
+	 * @param attributeIndex index of an attribute
+	 * @return {@code true} if evaluation is missing
+	 */
+	public boolean isMissing(int objectIndex, int attributeIndex) {
+		return isMissing(missingMasks[attributeIndex], objectIndex);
+	}
+
+	/**
+	 * Tells if bit of given object is set in given mask.
+	 *
+	 * @param missingMask mask of missing evaluations (possibly {@code null})
+	 * @param objectIndex index of an object
+	 * @return {@code true} if evaluation is missing
+	 */
+	static boolean isMissing(long[] missingMask, int objectIndex) {
+		return missingMask != null && (missingMask[objectIndex >>> 6] & (1L << (objectIndex & 63))) != 0L;
+	}
+
+	/**
+	 * Gets evaluation of given object on given attribute, as a number. Evaluation should not be missing, and attribute should have a column.
+	 *
+	 * @param objectIndex index of an object
+	 * @param attributeIndex index of an attribute
+	 * @return evaluation of the object
+	 */
+	public double getValue(int objectIndex, int attributeIndex) {
+		return integerColumns[attributeIndex] != null ? integerColumns[attributeIndex][objectIndex] : realColumns[attributeIndex][objectIndex];
+	}
+
+}
@@ -0,0 +1,501 @@
+/**
+ * Copyright (C) Jerzy Błaszczyński, Marcin Szeląg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rulelearn.usecases;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiFunction;
+import java.util.function.ToDoubleFunction;
+
+import org.rulelearn.data.InformationTable;
+import org.rulelearn.data.InformationTableWithDecisionDistributions;
+import org.rulelearn.rules.RuleFilter;
+import org.rulelearn.rules.RuleSetWithComputableCharacteristics;
+import org.rulelearn.validation.OrdinalMisclassificationMatrix;
+
+/**
+ * Selects the best configurations (consistency threshold &times; rule filter) by racing over cross-validation folds, in the style of F-race
+ * (Birattari et al., "A Racing Algorithm for Configuring Metaheuristics", GECCO 2002). Folds of all seeds are consecutive blocks of the race.
+ * In each block, rules are induced once per consistency threshold of surviving configurations, filtered by each surviving rule filter, and used to classify test data of the fold.
+ * After at least {@code minBlocks} blocks, surviving configurations are ranked within each block, and Friedman test is performed; if it rejects equivalence of configurations
+ * at significance level {@code alpha}, each configuration that is significantly worse than the best one (according to Conover's post-hoc test) is dropped.
+ * Race stops when a single configuration survives, or when all blocks are evaluated.
+ * <br>
+ * Compute saved with respect to full cross-validation of all configurations is reported as the fraction of rule inductions and classifications that were not needed.
+ *
+ * @author Marcin Szeląg (<a href="mailto:marcin.szelag@cs.put.poznan.pl">marcin.szelag@cs.put.poznan.pl</a>)
+ */
+public class ConfigurationRace {
+
+	/**
+	 * Default number of blocks evaluated before the first test.
+	 */
+	public static final int DEFAULT_MIN_BLOCKS = 5;
+
+	/**
+	 * Default significance level of the tests.
+	 */
+	public static final double DEFAULT_ALPHA = 0.05;
+
+	/**
+	 * Measure of quality of classification of test data of a fold.
+	 */
+	public enum Measure {
+		ACCURACY(OrdinalMisclassificationMatrix::getAccuracy, true),
+		MAE(OrdinalMisclassificationMatrix::getMAE, false);
+
+		final ToDoubleFunction<OrdinalMisclassificationMatrix> function;
+		final boolean higherIsBetter;
+
+		Measure(ToDoubleFunction<OrdinalMisclassificationMatrix> function, boolean higherIsBetter) {
+			this.function = function;
+			this.higherIsBetter = higherIsBetter;
+		}
+	}
+
+	/**
+	 * Raced configuration.
+	 */
+	public static final class Candidate {
+		final double consistencyThreshold;
+		final String ruleFilterExpression;
+		final RuleFilter ruleFilter;
+		final List<Double> values = new ArrayList<>(); //values of the measure in consecutive blocks
+		int eliminatedAfterBlock = -1; //-1 if not eliminated
+
+		Candidate(double consistencyThreshold, String ruleFilterExpression) {
+			this.consistencyThreshold = consistencyThreshold;
+			this.ruleFilterExpression = ruleFilterExpression;
+			this.ruleFilter = ExperimentGridRunner.createRuleFilter(ruleFilterExpression);
+		}
+
+		public double getConsistencyThreshold() {
+			return consistencyThreshold;
+		}
+
+		public String getRuleFilterExpression() {
+			return ruleFilterExpression;
+		}
+
+		/**
+		 * Gets average value of the measure over evaluated blocks.
+		 *
+		 * @return average value of the measure
+		 */
+		public double getMeanValue() {
+			return values.stream().mapToDouble(Double::doubleValue).average().orElse(Double.NaN);
+		}
+
+		public int getBlocksCount() {
+			return values.size();
+		}
+
+		public boolean isEliminated() {
+			return eliminatedAfterBlock >= 0;
+		}
+
+		@Override
+		public String toString() {
+			return consistencyThreshold+"\t"+ruleFilterExpression+"\t"+getMeanValue()+"\t"+getBlocksCount()+"\t"+(isEliminated() ? "eliminated after block "+eliminatedAfterBlock : "survived");
+		}
+	}
+
+	/**
+	 * Result of a race.
+	 */
+	public static final class Result {
+		final List<Candidate> candidates; //survivors first, best first
+		final long inductionsCount;
+		final long fullInductionsCount;
+		final long classificationsCount;
+		final long fullClassificationsCount;
+
+		Result(List<Candidate> candidates, long inductionsCount, long fullInductionsCount, long classificationsCount, long fullClassificationsCount) {
+			this.candidates = candidates;
+			this.inductionsCount = inductionsCount;
+			this.fullInductionsCount = fullInductionsCount;
+			this.classificationsCount = classificationsCount;
+			this.fullClassificationsCount = fullClassificationsCount;
+		}
+
+		public List<Candidate> getCandidates() {
+			return candidates;
+		}
+
+		/**
+		 * Gets fraction of rule inductions saved with respect to full cross-validation of all configurations.
+		 *
+		 * @return fraction of saved rule inductions
+		 */
+		public double getSavedInductionsFraction() {
+			return fullInductionsCount > 0 ? 1.0 - (double)inductionsCount / fullInductionsCount : 0.0;
+		}
+
+		/**
+		 * Gets fraction of classifications saved with respect to full cross-validation of all configurations.
+		 *
+		 * @return fraction of saved classifications
+		 */
+		public double getSavedClassificationsFraction() {
+			return fullClassificationsCount > 0 ? 1.0 - (double)classificationsCount / fullClassificationsCount : 0.0;
+		}
+
+		/**
+		 * Gets summary of compute saved with respect to full cross-validation of all configurations.
+		 *
+		 * @return summary of saved compute
+		 */
+		public String getSavingsSummary() {
+			return "Rule inductions: "+inductionsCount+" of "+fullInductionsCount+" ("+String.format("%.1f", 100.0 * getSavedInductionsFraction())+"% saved), classifications: "
+					+classificationsCount+" of "+fullClassificationsCount+" ("+String.format("%.1f", 100.0 * getSavedClassificationsFraction())+"% saved).";
+		}
+	}
+
+	final BiFunction<InformationTable, Double, RuleSetWithComputableCharacteristics> ruleInducer;
+	final BiFunction<RuleSetWithComputableCharacteristics, InformationTable, OrdinalMisclassificationMatrix> classifier;
+	final Measure measure;
+	final int minBlocks;
+	final double alpha;
+	final int threadsCount;
+
+	/**
+	 * Constructs this race.
+	 *
+	 * @param ruleInducer induces rules from train data, for given consistency threshold (e.g., using {@link RuleInductionCache})
+	 * @param classifier classifies test data using given rules
+	 * @param measure measure of quality of classification compared in the race
+	 * @param minBlocks number of blocks evaluated before the first test
+	 * @param alpha significance level of the tests
+	 * @param threadsCount number of threads inducing rules for different consistency thresholds
+	 *
+	 * @throws IllegalArgumentException if number of blocks before the first test is smaller than two, significance level is not in (0, 1), or number of threads is not positive
+	 */
+	public ConfigurationRace(BiFunction<InformationTable, Double, RuleSetWithComputableCharacteristics> ruleInducer,
+			BiFunction<RuleSetWithComputableCharacteristics, InformationTable, OrdinalMisclassificationMatrix> classifier, Measure measure, int minBlocks, double alpha, int threadsCount) {
+		if (minBlocks < 2) {
+			throw new IllegalArgumentException("At least two blocks have to be evaluated before the first test.");
+		}
+		if (alpha <= 0.0 || alpha >= 1.0) {
+			throw new IllegalArgumentException("Significance level has to be in (0, 1).");
+		}
+		if (threadsCount < 1) {
+			throw new IllegalArgumentException("Number of threads has to be positive.");
+		}
+		this.ruleInducer = ruleInducer;
+		this.classifier = classifier;
+		this.measure = measure;
+		this.minBlocks = minBlocks;
+		this.alpha = alpha;
+		this.threadsCount = threadsCount;
+	}
+
+	/**
+	 * Races all combinations of given consistency thresholds and rule filters.
+	 *
+	 * @param informationTable the data
+	 * @param consistencyThresholds raced consistency thresholds
+	 * @param ruleFilterExpressions raced rule filters, as expressions accepted by {@link ExperimentGridRunner#createRuleFilter(String)}
+	 * @param seeds random generator seeds, one per cross-validation
+	 * @param foldsCount number of cross-validation folds
+	 * @return result of the race
+	 *
+	 * @throws RuntimeException if induction or classification in any fold fails
+	 */
+	public Result race(InformationTableWithDecisionDistributions informationTable, double[] consistencyThresholds, String[] ruleFilterExpressions, long[] seeds, int foldsCount) {
+		List<Candidate> candidates = new ArrayList<>();
+		for (double consistencyThreshold : consistencyThresholds) {
+			for (String ruleFilterExpression : ruleFilterExpressions) {
+				candidates.add(new Candidate(consistencyThreshold, ruleFilterExpression));
+			}
+		}
+
+		List<Candidate> survivors = new ArrayList<>(candidates);
+		int blocksCount = seeds.length * foldsCount;
+		int block = 0;
+		long inductionsCount = 0L;
+		long classificationsCount = 0L;
+		ExecutorService executor = Executors.newFixedThreadPool(threadsCount, new CrossValidationEngine.CrossValidationThreadFactory());
+
+		try {
+			for (int seedIndex = 0; seedIndex < seeds.length && survivors.size() > 1; seedIndex++) {
+				int[] foldAssignment = CrossValidationEngine.assignStratifiedFolds(informationTable, seeds[seedIndex], foldsCount);
+
+				for (int foldIndex = 1; foldIndex <= foldsCount && survivors.size() > 1; foldIndex++) {
+					CrossValidationEngine.Fold fold = new CrossValidationEngine.Fold(seeds[seedIndex], seedIndex, foldIndex, foldsCount, informationTable, foldAssignment);
+					InformationTable trainData = fold.getTrainData();
+					InformationTable testData = fold.getTestData();
+
+					double[] survivingThresholds = survivors.stream().mapToDouble(Candidate::getConsistencyThreshold).distinct().toArray();
+					List<Future<RuleSetWithComputableCharacteristics>> futures = new ArrayList<>(survivingThresholds.length);
+					for (double consistencyThreshold : survivingThresholds) {
+						futures.add(executor.submit(() -> ruleInducer.apply(trainData, consistencyThreshold)));
+					}
+					for (int i = 0; i < survivingThresholds.length; i++) {
+						RuleSetWithComputableCharacteristics ruleSetWithCharacteristics = CrossValidationEngine.getResult(futures.get(i));
+						for (Candidate candidate : survivors) {
+							if (candidate.consistencyThreshold == survivingThresholds[i]) {
+								candidate.values.add(measure.function.applyAsDouble(classifier.apply(ruleSetWithCharacteristics.filter(candidate.ruleFilter), testData)));
+								classificationsCount++;
+							}
+						}
+					}
+					inductionsCount += survivingThresholds.length;
+					block++;
+
+					if (block >= minBlocks) {
+						eliminate(survivors, block);
+					}
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+
+		Comparator<Candidate> byMeanValue = Comparator.comparingDouble(Candidate::getMeanValue);
+		List<Candidate> ranking = new ArrayList<>(candidates);
+		ranking.sort(Comparator.comparing(Candidate::isEliminated).thenComparing(measure.higherIsBetter ? byMeanValue.reversed() : byMeanValue));
+
+		return new Result(ranking, inductionsCount, (long)consistencyThresholds.length * blocksCount, classificationsCount, (long)candidates.size() * blocksCount);
+	}
+
+	/**
+	 * Performs Friedman test on values of surviving candidates in all evaluated blocks, followed by post-hoc comparisons with the best candidate,
+	 * and removes candidates that are significantly worse than the best one.
+	 *
+	 * @param survivors surviving candidates, each with the same number of evaluated blocks
+	 * @param block number of evaluated blocks
+	 */
+	void eliminate(List<Candidate> survivors, int block) {
+		int candidatesCount = survivors.size();
+		if (candidatesCount < 2) {
+			return;
+		}
+
+		//ranks within blocks (1 = best; ties get average ranks)
+		double[] rankSums = new double[candidatesCount];
+		double sumOfSquaredRanks = 0.0;
+		double[] values = new double[candidatesCount];
+		for (int b = 0; b < block; b++) {
+			for (int j = 0; j < candidatesCount; j++) {
+				double value = survivors.get(j).values.get(b);
+				values[j] = measure.higherIsBetter ? -value : value;
+			}
+			double[] ranks = rank(values);
+			for (int j = 0; j < candidatesCount; j++) {
+				rankSums[j] += ranks[j];
+				sumOfSquaredRanks += ranks[j] * ranks[j];
+			}
+		}
+
+		double c = block * candidatesCount * (candidatesCount + 1) * (candidatesCount + 1) / 4.0;
+		if (sumOfSquaredRanks - c <= 0.0) {
+			return; //all candidates tied in all blocks
+		}
+		double expectedRankSum = block * (candidatesCount + 1) / 2.0;
+		double statistic = 0.0;
+		for (double rankSum : rankSums) {
+			statistic += (rankSum - expectedRankSum) * (rankSum - expectedRankSum);
+		}
+		statistic *= (candidatesCount - 1) / (sumOfSquaredRanks - c);
+
+		if (Statistics.chiSquaredSurvival(statistic, candidatesCount - 1) >= alpha) {
+			return;
+		}
+
+		int bestIndex = 0;
+		for (int j = 1; j < candidatesCount; j++) {
+			if (rankSums[j] < rankSums[bestIndex]) {
+				bestIndex = j;
+			}
+		}
+		int degreesOfFreedom = (block - 1) * (candidatesCount - 1);
+		double variance = 2.0 * block * (sumOfSquaredRanks - c) / degreesOfFreedom * (1.0 - statistic / (block * (candidatesCount - 1)));
+		double criticalDifference = Statistics.studentTQuantile(1.0 - alpha / 2.0, degreesOfFreedom) * Math.sqrt(Math.max(variance, 0.0));
+
+		List<Candidate> eliminated = new ArrayList<>();
+		for (int j = 0; j < candidatesCount; j++) {
+			if (rankSums[j] - rankSums[bestIndex] > criticalDifference) {
+				survivors.get(j).eliminatedAfterBlock = block;
+				eliminated.add(survivors.get(j));
+			}
+		}
+		survivors.removeAll(eliminated);
+	}
+
+	/**
+	 * Ranks given values in ascending order. Tied values get the average of their ranks.
+	 *
+	 * @param values ranked values
+	 * @return ranks of values, starting from 1
+	 */
+	static double[] rank(double[] values) {
+		Integer[] order = new Integer[values.length];
+		for (int i = 0; i < values.length; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, Comparator.comparingDouble(i -> values[i]));
+
+		double[] ranks = new double[values.length];
+		for (int i = 0; i < values.length; ) {
+			int j = i;
+			while (j + 1 < values.length && values[order[j + 1]] == values[order[i]]) {
+				j++;
+			}
+			double averageRank = (i + j) / 2.0 + 1.0;
+			for (int k = i; k <= j; k++) {
+				ranks[order[k]] = averageRank;
+			}
+			i = j + 1;
+		}
+		return ranks;
+	}
+
+	/**
+	 * Distribution functions needed by the tests.
+	 */
+	static final class Statistics {
+		static final double EPSILON = 1e-12;
+		static final int MAX_ITERATIONS = 1000;
+
+		private Statistics() {
+		}
+
+		/**
+		 * Calculates probability that chi-squared variable with given degrees of freedom exceeds given value.
+		 */
+		static double chiSquaredSurvival(double x, int degreesOfFreedom) {
+			return x <= 0.0 ? 1.0 : regularizedGammaQ(degreesOfFreedom / 2.0, x / 2.0);
+		}
+
+		/**
+		 * Calculates quantile of Student's t distribution with given degrees of freedom, by bisection.
+		 */
+		static double studentTQuantile(double p, int degreesOfFreedom) {
+			double low = 0.0;
+			double high = 1.0;
+			while (studentTCdf(high, degreesOfFreedom) < p) {
+				high *= 2.0;
+			}
+			for (int i = 0; i < 200 && high - low > EPSILON; i++) {
+				double middle = (low + high) / 2.0;
+				if (studentTCdf(middle, degreesOfFreedom) < p) {
+					low = middle;
+				} else {
+					high = middle;
+				}
+			}
+			return (low + high) / 2.0;
+		}
+
+		static double studentTCdf(double t, int degreesOfFreedom) {
+			double tail = 0.5 * regularizedBeta(degreesOfFreedom / (degreesOfFreedom + t * t), degreesOfFreedom / 2.0, 0.5);
+			return t >= 0 ? 1.0 - tail : tail;
+		}
+
+		static double logGamma(double x) { //Lanczos approximation
+			double[] coefficients = {76.18009172947146, -86.50532032941677, 24.01409824083091, -1.231739572450155, 0.1208650973866179e-2, -0.5395239384953e-5};
+			double y = x;
+			double tmp = x + 5.5;
+			tmp -= (x + 0.5) * Math.log(tmp);
+			double series = 1.000000000190015;
+			for (double coefficient : coefficients) {
+				series += coefficient / ++y;
+			}
+			return -tmp + Math.log(2.5066282746310005 * series / x);
+		}
+
+		static double regularizedGammaQ(double a, double x) {
+			if (x < a + 1.0) { //series for P
+				double term = 1.0 / a;
+				double sum = term;
+				for (int n = 1; n < MAX_ITERATIONS && Math.abs(term) > Math.abs(sum) * EPSILON; n++) {
+					term *= x / (a + n);
+					sum += term;
+				}
+				return 1.0 - sum * Math.exp(-x + a * Math.log(x) - logGamma(a));
+			}
+			//continued fraction for Q
+			double b = x + 1.0 - a;
+			double c = 1.0 / Double.MIN_NORMAL;
+			double d = 1.0 / b;
+			double h = d;
+			for (int i = 1; i < MAX_ITERATIONS; i++) {
+				double an = -i * (i - a);
+				b += 2.0;
+				d = an * d + b;
+				d = Math.abs(d) < Double.MIN_NORMAL ? Double.MIN_NORMAL : d;
+				c = b + an / c;
+				c = Math.abs(c) < Double.MIN_NORMAL ? Double.MIN_NORMAL : c;
+				d = 1.0 / d;
+				double delta = d * c;
+				h *= delta;
+				if (Math.abs(delta - 1.0) < EPSILON) {
+					break;
+				}
+			}
+			return Math.exp(-x + a * Math.log(x) - logGamma(a)) * h;
+		}
+
+		static double regularizedBeta(double x, double a, double b) {
+			if (x <= 0.0) {
+				return 0.0;
+			} else if (x >= 1.0) {
+				return 1.0;
+			}
+			double front = Math.exp(logGamma(a + b) - logGamma(a) - logGamma(b) + a * Math.log(x) + b * Math.log(1.0 - x));
+			if (x < (a + 1.0) / (a + b + 2.0)) {
+				return front * betaContinuedFraction(x, a, b) / a;
+			}
+			return 1.0 - front * betaContinuedFraction(1.0 - x, b, a) / b;
+		}
+
+		static double betaContinuedFraction(double x, double a, double b) {
+			double c = 1.0;
+			double d = 1.0 - (a + b) * x / (a + 1.0);
+			d = Math.abs(d) < Double.MIN_NORMAL ? Double.MIN_NORMAL : d;
+			d = 1.0 / d;
+			double h = d;
+			for (int m = 1; m < MAX_ITERATIONS; m++) {
+				int m2 = 2 * m;
+				double an = m * (b - m) * x / ((a + m2 - 1.0) * (a + m2));
+				d = 1.0 + an * d;
+				d = Math.abs(d) < Double.MIN_NORMAL ? Double.MIN_NORMAL : d;
+				c = 1.0 + an / c;
+				c = Math.abs(c) < Double.MIN_NORMAL ? Double.MIN_NORMAL : c;
+				d = 1.0 / d;
+				h *= d * c;
+				an = -(a + m) * (a + b + m) * x / ((a + m2) * (a + m2 + 1.0));
+				d = 1.0 + an * d;
+				d = Math.abs(d) < Double.MIN_NORMAL ? Double.MIN_NORMAL : d;
+				c = 1.0 + an / c;
+				c = Math.abs(c) < Double.MIN_NORMAL ? Double.MIN_NORMAL : c;
+				d = 1.0 / d;
+				double delta = d * c;
+				h *= delta;
+				if (Math.abs(delta - 1.0) < EPSILON) {
+					break;
+				}
+			}
+			return h;
+		}
+	}
+
+}
@@ -0,0 +1,359 @@
+/**
+ * Copyright (C) Jerzy Błaszczyński, Marcin Szeląg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rulelearn.usecases;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import org.rulelearn.approximations.Union.UnionType;
+import org.rulelearn.core.TernaryLogicValue;
+import org.rulelearn.data.Decision;
+import org.rulelearn.data.InformationTableWithDecisionDistributions;
+
+/**
+ * Sweeps a list of thresholds for consistency measure epsilon, reusing dominance computations.
+ * Decision distributions in positive and negative dominance cones of all objects are calculated only once, using {@link DominanceConeIndex}. Then, epsilon consistency of each object
+ * with respect to each union of ordered decision classes is calculated, also only once. For any threshold, lower approximations and quality of approximation
+ * are derived from these values without touching the data again.
+ * <br>
+ * Epsilon consistency of an object is a ratio of the number of negative objects in its dominance cone and the size of the complement of the union.
+ * Hence, two thresholds admitting the same maximal number of negative objects, for each union, yield the same lower approximations,
+ * and accept the same rules during rule induction from the same data. Rules are induced from the swept data just once for all such thresholds.
+ * Equivalence does not carry over to subsets of the data (e.g., training data of cross-validation folds), as they have different sizes of complements of unions,
+ * so accuracy is evaluated separately for each threshold.
+ *
+ * @author Marcin Szeląg (<a href="mailto:marcin.szelag@cs.put.poznan.pl">marcin.szelag@cs.put.poznan.pl</a>)
+ */
+public class ConsistencyThresholdSweep {
+
+	/**
+	 * Evaluation of rules induced for a given threshold: accuracy (e.g., cross-validated) and number of rules induced from the swept data.
+	 */
+	public static final class Evaluation {
+		final double accuracy;
+		final int rulesCount;
+
+		public Evaluation(double accuracy, int rulesCount) {
+			this.accuracy = accuracy;
+			this.rulesCount = rulesCount;
+		}
+
+		public double getAccuracy() {
+			return accuracy;
+		}
+
+		public int getRulesCount() {
+			return rulesCount;
+		}
+	}
+
+	/**
+	 * Counts rules induced from the swept data for a given threshold.
+	 */
+	@FunctionalInterface
+	public interface RuleCounter {
+		/**
+		 * Counts rules induced from the swept data for given threshold.
+		 *
+		 * @param consistencyThreshold threshold for consistency measure epsilon
+		 * @return number of rules
+		 */
+		int countRules(double consistencyThreshold);
+	}
+
+	/**
+	 * Evaluates accuracy of rules induced for a given threshold (e.g., by cross-validation).
+	 */
+	@FunctionalInterface
+	public interface AccuracyEvaluator {
+		/**
+		 * Evaluates accuracy of rules induced for given threshold.
+		 *
+		 * @param consistencyThreshold threshold for consistency measure epsilon
+		 * @return accuracy
+		 */
+		double evaluateAccuracy(double consistencyThreshold);
+	}
+
+	/**
+	 * Result of a sweep, for a single threshold.
+	 */
+	public static final class Result {
+		final double consistencyThreshold;
+		final double qualityOfApproximation;
+		final Evaluation evaluation;
+		final double equivalentThreshold; //threshold for which rules have been counted
+
+		Result(double consistencyThreshold, double qualityOfApproximation, Evaluation evaluation, double equivalentThreshold) {
+			this.consistencyThreshold = consistencyThreshold;
+			this.qualityOfApproximation = qualityOfApproximation;
+			this.evaluation = evaluation;
+			this.equivalentThreshold = equivalentThreshold;
+		}
+
+		public double getConsistencyThreshold() {
+			return consistencyThreshold;
+		}
+
+		public double getQualityOfApproximation() {
+			return qualityOfApproximation;
+		}
+
+		public Evaluation getEvaluation() {
+			return evaluation;
+		}
+
+		/**
+		 * Tells if number of rules has been reused from another, equivalent threshold.
+		 *
+		 * @return {@code true} if number of rules has been reused from another threshold
+		 */
+		public boolean isReused() {
+			return equivalentThreshold != consistencyThreshold;
+		}
+
+		@Override
+		public String toString() {
+			return consistencyThreshold+"\t"+qualityOfApproximation+"\t"+evaluation.getAccuracy()+"\t"+evaluation.getRulesCount()
+					+(isReused() ? "\t(same rules as for "+equivalentThreshold+")" : "");
+		}
+	}
+
+	final int objectsCount;
+	final Decision[] decisions; //limiting decisions of unions
+	final int[] objectClasses; //index of decision of each object, or -1 if decision is not fully determined
+	final int[] upwardComplementSizes; //indexed by limiting decision
+	final int[] downwardComplementSizes; //indexed by limiting decision
+	final int[][] upwardNegativeCounts; //[object][limiting decision]: number of objects outside upward union in positive cone, or -1 if object is not in the union
+	final int[][] downwardNegativeCounts; //[object][limiting decision]: number of objects outside downward union in negative cone, or -1 if object is not in the union
+	final double[] sortedMaxConsistencies; //maximal epsilon of each object, over all unions it belongs to, sorted ascending
+
+	/**
+	 * Constructs this sweep, calculating dominance cones, decision distributions in these cones, and epsilon consistencies of all objects.
+	 *
+	 * @param informationTable the data
+	 */
+	public ConsistencyThresholdSweep(InformationTableWithDecisionDistributions informationTable) {
+		this(DominanceConeIndex.of(informationTable), IntStream.range(0, informationTable.getNumberOfObjects()).toArray());
+	}
+
+	/**
+	 * Constructs this sweep for a subset of objects for which dominance cones have already been calculated.
+	 * Objects of the subset are indexed by their position in given array of indices.
+	 *
+	 * @param dominanceConeIndex dominance cones of objects of the whole data
+	 * @param objectIndices indices of objects of the subset, in the whole data
+	 */
+	public ConsistencyThresholdSweep(DominanceConeIndex dominanceConeIndex, int[] objectIndices) {
+		objectsCount = objectIndices.length;
+		decisions = dominanceConeIndex.getDecisions();
+		int decisionsCount = decisions.length;
+
+		objectClasses = new int[objectsCount];
+		int[] classSizes = new int[decisionsCount];
+		for (int objectIndex = 0; objectIndex < objectsCount; objectIndex++) {
+			objectClasses[objectIndex] = dominanceConeIndex.getObjectClass(objectIndices[objectIndex]);
+			if (objectClasses[objectIndex] >= 0) {
+				classSizes[objectClasses[objectIndex]]++;
+			}
+		}
+
+		//upward[c][t] is true iff decision c belongs to upward union limited by decision t; downward analogously
+		boolean[][] upward = new boolean[decisionsCount][decisionsCount];
+		boolean[][] downward = new boolean[decisionsCount][decisionsCount];
+		upwardComplementSizes = new int[decisionsCount];
+		downwardComplementSizes = new int[decisionsCount];
+		for (int c = 0; c < decisionsCount; c++) {
+			for (int t = 0; t < decisionsCount; t++) {
+				upward[c][t] = decisions[c].isAtLeastAsGoodAs(decisions[t]) == TernaryLogicValue.TRUE;
+				downward[c][t] = decisions[c].isAtMostAsGoodAs(decisions[t]) == TernaryLogicValue.TRUE;
+				upwardComplementSizes[t] += upward[c][t] ? 0 : classSizes[c];
+				downwardComplementSizes[t] += downward[c][t] ? 0 : classSizes[c];
+			}
+		}
+
+		int[][][] coneDistributions = dominanceConeIndex.calculateConeDecisionDistributions(objectIndices);
+		upwardNegativeCounts = new int[objectsCount][];
+		downwardNegativeCounts = new int[objectsCount][];
+		double[] maxConsistencies = new double[objectsCount];
+
+		for (int objectIndex = 0; objectIndex < objectsCount; objectIndex++) {
+			int objectClass = objectClasses[objectIndex];
+			upwardNegativeCounts[objectIndex] = new int[decisionsCount];
+			downwardNegativeCounts[objectIndex] = new int[decisionsCount];
+			double maxConsistency = objectClass >= 0 ? 0.0 : Double.POSITIVE_INFINITY; //object without decision is never in a lower approximation
+
+			for (int t = 0; t < decisionsCount; t++) {
+				upwardNegativeCounts[objectIndex][t] = -1;
+				downwardNegativeCounts[objectIndex][t] = -1;
+				if (objectClass < 0) {
+					continue;
+				}
+				if (upward[objectClass][t]) {
+					int negativeCount = 0;
+					for (int c = 0; c < decisionsCount; c++) {
+						negativeCount += upward[c][t] ? 0 : coneDistributions[0][objectIndex][c];
+					}
+					upwardNegativeCounts[objectIndex][t] = negativeCount;
+					maxConsistency = Math.max(maxConsistency, epsilon(negativeCount, upwardComplementSizes[t]));
+				}
+				if (downward[objectClass][t]) {
+					int negativeCount = 0;
+					for (int c = 0; c < decisionsCount; c++) {
+						negativeCount += downward[c][t] ? 0 : coneDistributions[1][objectIndex][c];
+					}
+					downwardNegativeCounts[objectIndex][t] = negativeCount;
+					maxConsistency = Math.max(maxConsistency, epsilon(negativeCount, downwardComplementSizes[t]));
+				}
+			}
+			maxConsistencies[objectIndex] = maxConsistency;
+		}
+
+		Arrays.sort(maxConsistencies);
+		sortedMaxConsistencies = maxConsistencies;
+	}
+
+	/**
+	 * Calculates value of consistency measure epsilon.
+	 *
+	 * @param negativeCount number of negative objects in dominance cone
+	 * @param complementSize size of the complement of the union
+	 * @return value of consistency measure epsilon
+	 */
+	static double epsilon(int negativeCount, int complementSize) {
+		return complementSize > 0 ? (double)negativeCount / complementSize : 0.0;
+	}
+
+	/**
+	 * Calculates quality of approximation for given threshold, i.e., the fraction of objects belonging to lower approximations of all unions they belong to.
+	 *
+	 * @param consistencyThreshold threshold for consistency measure epsilon
+	 * @return quality of approximation
+	 */
+	public double getQualityOfApproximation(double consistencyThreshold) {
+		if (objectsCount == 0) {
+			return 0.0;
+		}
+		//number of objects whose maximal epsilon does not exceed the threshold
+		int index = Arrays.binarySearch(sortedMaxConsistencies, consistencyThreshold);
+		if (index < 0) {
+			index = -index - 1;
+		} else {
+			while (index < objectsCount && sortedMaxConsistencies[index] <= consistencyThreshold) {
+				index++;
+			}
+		}
+		return (double)index / objectsCount;
+	}
+
+	/**
+	 * Calculates lower approximation of a union of ordered decision classes, for given threshold.
+	 *
+	 * @param unionType type of the union
+	 * @param limitingDecisionIndex index of limiting decision of the union, in the array of ordered unique fully determined decisions
+	 * @param consistencyThreshold threshold for consistency measure epsilon
+	 * @return bitset of indices of objects belonging to the lower approximation
+	 */
+	public BitSet getLowerApproximation(UnionType unionType, int limitingDecisionIndex, double consistencyThreshold) {
+		int[][] negativeCounts = unionType == UnionType.AT_LEAST ? upwardNegativeCounts : downwardNegativeCounts;
+		int complementSize = unionType == UnionType.AT_LEAST ? upwardComplementSizes[limitingDecisionIndex] : downwardComplementSizes[limitingDecisionIndex];
+		BitSet lowerApproximation = new BitSet(objectsCount);
+
+		for (int objectIndex = 0; objectIndex < objectsCount; objectIndex++) {
+			int negativeCount = negativeCounts[objectIndex][limitingDecisionIndex];
+			if (negativeCount >= 0 && epsilon(negativeCount, complementSize) <= consistencyThreshold) {
+				lowerApproximation.set(objectIndex);
+			}
+		}
+		return lowerApproximation;
+	}
+
+	/**
+	 * Calculates, for each union, the maximal number of negative objects that a dominance cone (or a rule) can contain without exceeding given threshold.
+	 * Thresholds with equal results yield the same lower approximations and the same rules.
+	 *
+	 * @param consistencyThreshold threshold for consistency measure epsilon
+	 * @return array with maximal numbers of negative objects for consecutive upward unions, followed by consecutive downward unions
+	 */
+	public int[] getMaxNegativeCounts(double consistencyThreshold) {
+		int decisionsCount = decisions.length;
+		int[] maxNegativeCounts = new int[2 * decisionsCount];
+		for (int t = 0; t < decisionsCount; t++) {
+			maxNegativeCounts[t] = maxNegativeCount(consistencyThreshold, upwardComplementSizes[t]);
+			maxNegativeCounts[decisionsCount + t] = maxNegativeCount(consistencyThreshold, downwardComplementSizes[t]);
+		}
+		return maxNegativeCounts;
+	}
+
+	private static int maxNegativeCount(double consistencyThreshold, int complementSize) {
+		if (complementSize == 0) {
+			return 0;
+		}
+		if (consistencyThreshold < 0.0) {
+			return -1;
+		}
+		int count = (int)Math.min(complementSize, Math.floor(consistencyThreshold * complementSize));
+		//correct possible rounding errors, so the result is consistent with epsilon(count, complementSize) <= consistencyThreshold
+		while (count < complementSize && epsilon(count + 1, complementSize) <= consistencyThreshold) {
+			count++;
+		}
+		while (count >= 0 && epsilon(count, complementSize) > consistencyThreshold) {
+			count--;
+		}
+		return count;
+	}
+
+	/**
+	 * Sweeps given thresholds. Quality of approximation and accuracy are calculated for each threshold,
+	 * while rules are counted only once for each group of thresholds equivalent on the swept data.
+	 *
+	 * @param consistencyThresholds thresholds for consistency measure epsilon
+	 * @param ruleCounter counter of rules induced from the swept data for a threshold
+	 * @param accuracyEvaluator evaluator of accuracy of rules induced for a threshold
+	 * @return results for consecutive thresholds
+	 */
+	public List<Result> sweep(double[] consistencyThresholds, RuleCounter ruleCounter, AccuracyEvaluator accuracyEvaluator) {
+		Map<List<Integer>, Double> representativeThresholds = new LinkedHashMap<>();
+		Map<Double, Integer> rulesCounts = new HashMap<>();
+		List<Result> results = new ArrayList<>(consistencyThresholds.length);
+
+		for (double consistencyThreshold : consistencyThresholds) {
+			List<Integer> key = new ArrayList<>();
+			for (int maxNegativeCount : getMaxNegativeCounts(consistencyThreshold)) {
+				key.add(maxNegativeCount);
+			}
+
+			Double representativeThreshold = representativeThresholds.get(key);
+			if (representativeThreshold == null) {
+				representativeThreshold = consistencyThreshold;
+				representativeThresholds.put(key, representativeThreshold);
+				rulesCounts.put(representativeThreshold, ruleCounter.countRules(consistencyThreshold));
+			}
+
+			Evaluation evaluation = new Evaluation(accuracyEvaluator.evaluateAccuracy(consistencyThreshold), rulesCounts.get(representativeThreshold));
+			results.add(new Result(consistencyThreshold, getQualityOfApproximation(consistencyThreshold), evaluation, representativeThreshold));
+		}
+
+		return results;
+	}
+
+}
@@ -15,19 +15,399 @@
  */
 package org.rulelearn.usecases;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.rulelearn.data.Attribute;
+import org.rulelearn.data.json.AttributeParser;
+
 /**
  * Converts data (objects) from CSV format to JSON format. Employs metadata (attributes) in JSON format.
+ * Conversion is streaming - CSV file is read line by line and JSON objects are written to disk as soon as they are parsed,
+ * so memory usage does not depend on the size of converted file.
  *
  * @author Jerzy Błaszczyński (<a href="mailto:jurek.blaszczynski@cs.put.poznan.pl">jurek.blaszczynski@cs.put.poznan.pl</a>)
  * @author Marcin Szeląg (<a href="mailto:marcin.szelag@cs.put.poznan.pl">marcin.szelag@cs.put.poznan.pl</a>)
  */
 public class ConvertCsv2Json {
 
+	/**
+	 * Default separator of values in CSV file.
+	 */
+	static final char DEFAULT_SEPARATOR = ',';
+
+	/**
+	 * String written to JSON file for an empty value in CSV file.
+	 */
+	static final String MISSING_VALUE_STRING = "?";
+
+	/**
+	 * Size (in chars) of read and write buffers.
+	 */
+	static final int BUFFER_SIZE = 1 << 16;
+
+	/**
+	 * Number of converted objects after which progress is reported.
+	 */
+	static final long PROGRESS_REPORT_INTERVAL = 1_000_000L;
+
+	/**
+	 * Converts CSV file with header to JSON file with the same path, but with extension changed to ".json".
+	 * Values in CSV file should be separated by {@link #DEFAULT_SEPARATOR}.
+	 *
+	 * @param metadataJSONFilePath path to JSON file with metadata (attributes)
+	 * @param dataCsvFilePath path to CSV file with data (objects)
+	 */
 	public static void convertCsv2Json(String metadataJSONFilePath, String dataCsvFilePath) {
-		//TODO: implement
+		int extensionIndex = dataCsvFilePath.lastIndexOf('.');
+		String dataJSONFilePath = (extensionIndex > 0 ? dataCsvFilePath.substring(0, extensionIndex) : dataCsvFilePath) + ".json";
+
+		try {
+			convertCsv2Json(metadataJSONFilePath, dataCsvFilePath, dataJSONFilePath, DEFAULT_SEPARATOR, true);
+		} catch (IOException exception) {
+			exception.printStackTrace();
+		}
+	}
+
+	/**
+	 * Converts data (objects) from CSV file to JSON file, in a streaming fashion. Attribute metadata are read only once.
+	 * If CSV file has a header, values in each row are matched with attributes by name. Otherwise, consecutive values in each row
+	 * are assigned to consecutive attributes from metadata. Empty values are written as {@link #MISSING_VALUE_STRING}.
+	 *
+	 * @param metadataJSONFilePath path to JSON file with metadata (attributes)
+	 * @param dataCsvFilePath path to CSV file with data (objects)
+	 * @param dataJSONFilePath path to JSON file to which converted data (objects) should be written
+	 * @param separator separator of values in CSV file
+	 * @param header indicates if the first row of CSV file contains names of attributes
+	 *
+	 * @return number of converted objects
+	 *
+	 * @throws IOException if any of the files cannot be read or written
+	 * @throws IllegalArgumentException if metadata cannot be read or CSV header does not match metadata
+	 */
+	public static long convertCsv2Json(String metadataJSONFilePath, String dataCsvFilePath, String dataJSONFilePath, char separator, boolean header) throws IOException {
+		Attribute[] attributes;
+		try (FileReader attributeReader = new FileReader(metadataJSONFilePath)) {
+			attributes = (new AttributeParser()).parseAttributes(attributeReader);
+		}
+		if (attributes == null) {
+			throw new IllegalArgumentException("Unable to load JSON file with meta-data.");
+		}
+
+		String[] attributeNames = new String[attributes.length];
+		String[] escapedAttributeNames = new String[attributes.length];
+		for (int i = 0; i < attributes.length; i++) {
+			attributeNames[i] = attributes[i].getName();
+			escapedAttributeNames[i] = escape(attributeNames[i]);
+		}
+
+		long objectsCount = 0;
+		long startTime = System.nanoTime();
+
+		try (BufferedReader reader = new BufferedReader(Files.newBufferedReader(Paths.get(dataCsvFilePath), StandardCharsets.UTF_8), BUFFER_SIZE);
+				BufferedWriter writer = new BufferedWriter(Files.newBufferedWriter(Paths.get(dataJSONFilePath), StandardCharsets.UTF_8), BUFFER_SIZE)) {
+			CsvRowReader rowReader = new CsvRowReader(reader, separator);
+			String[] values = new String[attributes.length];
+			int[] columnToAttributeIndex = null; //null means positional mapping
+
+			if (header) {
+				if (rowReader.readRow(null) < 0) {
+					throw new IllegalArgumentException("CSV file "+dataCsvFilePath+" is empty.");
+				}
+				columnToAttributeIndex = mapColumns(rowReader.getHeader(), attributeNames);
+			}
+
+			writer.write('[');
+			while (rowReader.readRow(values) >= 0) {
+				if (columnToAttributeIndex != null) {
+					rowReader.remap(values, columnToAttributeIndex);
+				}
+				writer.write(objectsCount == 0 ? "\n" : ",\n");
+				writeObject(writer, escapedAttributeNames, values);
+				objectsCount++;
+
+				if (objectsCount % PROGRESS_REPORT_INTERVAL == 0) {
+					reportProgress(objectsCount, System.nanoTime() - startTime, false);
+				}
+			}
+			writer.write(objectsCount == 0 ? "]" : "\n]");
+		}
+
+		reportProgress(objectsCount, System.nanoTime() - startTime, true);
+
+		return objectsCount;
+	}
+
+	/**
+	 * Writes single object, in the layout used by data files of this project (two-space indent, all values as strings).
+	 *
+	 * @param writer writer to which object is written
+	 * @param escapedAttributeNames names of attributes, already escaped
+	 * @param values values of attributes (not escaped); {@code null} values are skipped
+	 *
+	 * @throws IOException if object cannot be written
+	 */
+	static void writeObject(Writer writer, String[] escapedAttributeNames, String[] values) throws IOException {
+		writer.write("  {");
+		boolean first = true;
+		for (int i = 0; i < escapedAttributeNames.length; i++) {
+			if (values[i] != null) {
+				writer.write(first ? "\n    \"" : ",\n    \"");
+				writer.write(escapedAttributeNames[i]);
+				writer.write("\": \"");
+				writer.write(values[i].isEmpty() ? MISSING_VALUE_STRING : escape(values[i]));
+				writer.write('"');
+				first = false;
+			}
+		}
+		writer.write("\n  }");
+	}
+
+	/**
+	 * Escapes given text so it can be written as JSON string.
+	 *
+	 * @param text text to escape
+	 * @return escaped text (the same instance if there is nothing to escape)
+	 */
+	static String escape(String text) {
+		int length = text.length();
+		int i = 0;
+		while (i < length && text.charAt(i) >= 0x20 && text.charAt(i) != '"' && text.charAt(i) != '\\') {
+			i++;
+		}
+		if (i == length) {
+			return text;
+		}
+
+		StringBuilder builder = new StringBuilder(length + 16).append(text, 0, i);
+		char c;
+		for (; i < length; i++) {
+			c = text.charAt(i);
+			switch (c) {
+			case '"': builder.append("\\\""); break;
+			case '\\': builder.append("\\\\"); break;
+			case '\n': builder.append("\\n"); break;
+			case '\r': builder.append("\\r"); break;
+			case '\t': builder.append("\\t"); break;
+			default:
+				if (c < 0x20) {
+					builder.append(String.format("\\u%04x", (int)c));
+				} else {
+					builder.append(c);
+				}
+			}
+		}
+		return builder.toString();
 	}
-	
+
+	/**
+	 * Maps columns of CSV file onto indices of attributes with the same names.
+	 *
+	 * @param header names of columns read from CSV header
+	 * @param attributeNames names of attributes
+	 * @return array mapping column index to attribute index (-1 for columns not present in metadata)
+	 *
+	 * @throws IllegalArgumentException if some attribute is not present in CSV header
+	 */
+	static int[] mapColumns(String[] header, String[] attributeNames) {
+		return mapColumns(header, attributeNames, true);
+	}
+
+	/**
+	 * Maps columns of CSV file onto indices of attributes with the same names.
+	 *
+	 * @param header names of columns read from CSV header
+	 * @param attributeNames names of attributes
+	 * @param requireAllAttributes indicates if each attribute has to be present in CSV header; if {@code false}, attributes without a column are not mapped
+	 * @return array mapping column index to attribute index (-1 for columns not present in metadata)
+	 *
+	 * @throws IllegalArgumentException if all attributes are required, and some attribute is not present in CSV header
+	 */
+	static int[] mapColumns(String[] header, String[] attributeNames, boolean requireAllAttributes) {
+		Map<String, Integer> attributeIndices = new HashMap<>();
+		for (int i = 0; i < attributeNames.length; i++) {
+			attributeIndices.put(attributeNames[i], i);
+		}
+
+		int[] columnToAttributeIndex = new int[header.length];
+		int mappedCount = 0;
+		for (int i = 0; i < header.length; i++) {
+			Integer attributeIndex = attributeIndices.get(header[i].trim());
+			columnToAttributeIndex[i] = (attributeIndex != null ? attributeIndex : -1);
+			if (attributeIndex != null) {
+				mappedCount++;
+			}
+		}
+		if (requireAllAttributes && mappedCount < attributeNames.length) {
+			throw new IllegalArgumentException("CSV header does not contain all attributes defined in meta-data.");
+		}
+
+		return columnToAttributeIndex;
+	}
+
+	/**
+	 * Prints to system output conversion progress.
+	 *
+	 * @param objectsCount number of converted objects
+	 * @param durationNanos time of conversion [ns]
+	 * @param finished indicates if conversion is finished
+	 */
+	static void reportProgress(long objectsCount, long durationNanos, boolean finished) {
+		double seconds = durationNanos / 1e9;
+		System.out.println((finished ? "Converted " : "  ... ")+objectsCount+" objects in "+String.format("%.1f", seconds)+" s ("
+				+String.format("%.0f", seconds > 0 ? objectsCount / seconds : 0.0)+" rows/s)."); //!
+	}
+
+	/**
+	 * Reads consecutive rows of a CSV file. Supports values enclosed in double quotes (with doubled quotes as escapes and separators or line breaks inside).
+	 * Buffers used for a single row are reused, so memory usage depends only on the length of the longest row.
+	 */
+	static final class CsvRowReader {
+		final BufferedReader reader;
+		final char separator;
+		final StringBuilder value = new StringBuilder(64);
+		String[] header = new String[0];
+		String[] row = new String[0]; //values of last row, in column order
+		int rowLength = 0; //number of values of last row (further elements of row are stale values of earlier rows)
+
+		CsvRowReader(BufferedReader reader, char separator) {
+			this.reader = reader;
+			this.separator = separator;
+		}
+
+		/**
+		 * Reads next non-empty row. If {@code values} is {@code null}, the row is stored as header.
+		 * Otherwise, consecutive values are copied to {@code values} (missing trailing values are set to empty strings).
+		 *
+		 * @param values array for values of the row, or {@code null}
+		 * @return number of values in the row, or -1 if end of file has been reached
+		 *
+		 * @throws IOException if row cannot be read
+		 */
+		int readRow(String[] values) throws IOException {
+			String line;
+			do {
+				line = reader.readLine();
+				if (line == null) {
+					return -1;
+				}
+			} while (line.isEmpty());
+
+			int count = 0;
+			int position = 0;
+			boolean quoted = false;
+			value.setLength(0);
+
+			while (true) {
+				if (position >= line.length()) {
+					if (quoted) { //line break inside quoted value
+						line = reader.readLine();
+						if (line == null) {
+							throw new IOException("Unterminated quoted value in CSV file.");
+						}
+						value.append('\n');
+						position = 0;
+						continue;
+					}
+					count = store(count, values);
+					break;
+				}
+
+				char c = line.charAt(position++);
+				if (quoted) {
+					if (c == '"') {
+						if (position < line.length() && line.charAt(position) == '"') {
+							value.append('"');
+							position++;
+						} else {
+							quoted = false;
+						}
+					} else {
+						value.append(c);
+					}
+				} else if (c == '"' && value.length() == 0) {
+					quoted = true;
+				} else if (c == separator) {
+					count = store(count, values);
+				} else {
+					value.append(c);
+				}
+			}
+
+			rowLength = count;
+			if (values == null) {
+				header = Arrays.copyOf(row, count);
+			} else {
+				for (int i = count; i < values.length; i++) {
+					values[i] = "";
+				}
+			}
+			return count;
+		}
+
+		private int store(int count, String[] values) {
+			if (count >= row.length) {
+				row = Arrays.copyOf(row, Math.max(8, row.length * 2));
+			}
+			row[count] = value.toString();
+			if (values != null && count < values.length) {
+				values[count] = row[count];
+			}
+			value.setLength(0);
+			return count + 1;
+		}
+
+		/**
+		 * Reorders values of last read row according to given mapping of columns to attributes.
+		 * Attributes mapped to columns absent from the row get empty strings.
+		 *
+		 * @param values array for values, indexed by attribute index
+		 * @param columnToAttributeIndex mapping of columns to attributes
+		 */
+		void remap(String[] values, int[] columnToAttributeIndex) {
+			Arrays.fill(values, "");
+			for (int i = 0; i < columnToAttributeIndex.length; i++) {
+				if (columnToAttributeIndex[i] >= 0 && i < rowLength) {
+					values[columnToAttributeIndex[i]] = row[i];
+				}
+			}
+		}
+
+		String[] getHeader() {
+			return header;
+		}
+	}
+
+	/**
+	 * Application entry point.
+	 *
+	 * @param args input arguments of this application: path to JSON metadata file, path to CSV data file,
+	 *        and optionally: path to output JSON data file, separator, and "true"/"false" indicating presence of CSV header
+	 */
 	public static void main(String[] args) {
-		//TODO: call convertCsv2Json with proper arguments
+		if (args.length < 2) {
+			System.out.println("Usage: ConvertCsv2Json <metadata JSON file> <data CSV file> [<data JSON file> [<separator> [<header: true/false>]]]");
+			return;
+		}
+
+		if (args.length == 2) {
+			convertCsv2Json(args[0], args[1]);
+		} else {
+			try {
+				convertCsv2Json(args[0], args[1], args[2], args.length > 3 && !args[3].isEmpty() ? args[3].charAt(0) : DEFAULT_SEPARATOR,
+						args.length > 4 ? Boolean.parseBoolean(args[4]) : true);
+			} catch (IOException exception) {
+				exception.printStackTrace();
+			}
+		}
 	}
 }
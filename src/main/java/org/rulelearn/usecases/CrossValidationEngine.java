@@ -0,0 +1,363 @@
+/**
+ * Copyright (C) Jerzy Błaszczyński, Marcin Szeląg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rulelearn.usecases;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.rulelearn.data.Decision;
+import org.rulelearn.data.InformationTable;
+import org.rulelearn.data.InformationTableWithDecisionDistributions;
+import org.rulelearn.validation.OrdinalMisclassificationMatrix;
+
+/**
+ * Performs repeated k-fold cross-validation, for several random generator seeds at once.
+ * Folds are {@link Fold views} of the data, defined by assignment of objects to folds, so their train and test data exist only while folds are evaluated.
+ * All (seed, fold) jobs are scheduled together on a dedicated thread pool of configurable size, starting from the folds with the largest training data.
+ * Misclassification matrices calculated for consecutive folds are accumulated in the order of folds, so the result does not depend on the order in which jobs complete.
+ *
+ * @author Marcin Szeląg (<a href="mailto:marcin.szelag@cs.put.poznan.pl">marcin.szelag@cs.put.poznan.pl</a>)
+ */
+public class CrossValidationEngine {
+
+	/**
+	 * Version of assignment of objects to folds by {@link #assignStratifiedFolds(InformationTable, long, int)}. Version 1 denotes folds of
+	 * {@link org.rulelearn.sampling.CrossValidator}, used by analyses before this engine. For the same seeds, folds of different versions differ,
+	 * so cross-validation results obtained with different versions should not be compared seed by seed.
+	 */
+	public static final int FOLD_ASSIGNMENT_VERSION = 2;
+
+	/**
+	 * Single cross-validation fold for a given seed. Fold does not copy the data - it refers to the whole (parent) information table,
+	 * and to the assignment of all objects to folds of its seed, shared by all these folds. Objects of train and test data are given by their indices in the parent table.
+	 * Train and test data are selected from the parent table only when requested (sharing fields of the parent table), and kept only until the fold is evaluated.
+	 */
+	public static final class Fold {
+		final long seed;
+		final int seedIndex; //index of the seed in the array of seeds, starting from 0
+		final int index; //starting from 1
+		final int foldsCount;
+		final InformationTable informationTable; //parent table
+		final int[] foldAssignment; //index of test fold of each object of the parent table, starting from 0; shared by all folds of the seed
+		final int testObjectsCount;
+		InformationTable trainData = null; //selected on demand
+		InformationTable testData = null; //selected on demand
+
+		Fold(long seed, int seedIndex, int index, int foldsCount, InformationTable informationTable, int[] foldAssignment) {
+			this.seed = seed;
+			this.seedIndex = seedIndex;
+			this.index = index;
+			this.foldsCount = foldsCount;
+			this.informationTable = informationTable;
+			this.foldAssignment = foldAssignment;
+			int count = 0;
+			for (int foldIndex : foldAssignment) {
+				if (foldIndex == index - 1) {
+					count++;
+				}
+			}
+			this.testObjectsCount = count;
+		}
+
+		public long getSeed() {
+			return seed;
+		}
+
+		public int getIndex() {
+			return index;
+		}
+
+		public int getFoldsCount() {
+			return foldsCount;
+		}
+
+		/**
+		 * Gets the whole information table this fold is a part of.
+		 *
+		 * @return parent information table
+		 */
+		public InformationTable getInformationTable() {
+			return informationTable;
+		}
+
+		/**
+		 * Gets indices of train objects in the parent information table.
+		 *
+		 * @return increasing indices of train objects
+		 */
+		public int[] getTrainIndices() {
+			return selectIndices(false);
+		}
+
+		/**
+		 * Gets indices of test objects in the parent information table.
+		 *
+		 * @return increasing indices of test objects
+		 */
+		public int[] getTestIndices() {
+			return selectIndices(true);
+		}
+
+		int[] selectIndices(boolean test) {
+			int[] indices = new int[test ? testObjectsCount : foldAssignment.length - testObjectsCount];
+			int count = 0;
+			for (int objectIndex = 0; objectIndex < foldAssignment.length; objectIndex++) {
+				if ((foldAssignment[objectIndex] == index - 1) == test) {
+					indices[count++] = objectIndex;
+				}
+			}
+			return indices;
+		}
+
+		public int getNumberOfTrainObjects() {
+			return foldAssignment.length - testObjectsCount;
+		}
+
+		public int getNumberOfTestObjects() {
+			return testObjectsCount;
+		}
+
+		/**
+		 * Gets train data, selected from the parent table when called for the first time.
+		 *
+		 * @return train data
+		 */
+		public synchronized InformationTable getTrainData() {
+			if (trainData == null) {
+				trainData = informationTable.select(getTrainIndices(), true); //fields of the parent table are shared, as they are not modified
+			}
+			return trainData;
+		}
+
+		/**
+		 * Gets test data, selected from the parent table when called for the first time.
+		 *
+		 * @return test data
+		 */
+		public synchronized InformationTable getTestData() {
+			if (testData == null) {
+				testData = informationTable.select(getTestIndices(), true); //fields of the parent table are shared, as they are not modified
+			}
+			return testData;
+		}
+
+		/**
+		 * Forgets selected train and test data, so they can be garbage collected once this fold is evaluated.
+		 */
+		synchronized void release() {
+			trainData = null;
+			testData = null;
+		}
+	}
+
+	/**
+	 * Learns rules on train data of a fold and classifies its test data.
+	 */
+	@FunctionalInterface
+	public interface FoldEvaluator {
+		/**
+		 * Evaluates given fold.
+		 *
+		 * @param fold cross-validation fold
+		 * @return ordinal misclassification matrix summarizing classification of test objects of given fold
+		 */
+		OrdinalMisclassificationMatrix evaluate(Fold fold);
+	}
+
+	/**
+	 * Number of threads used to evaluate folds.
+	 */
+	final int threadsCount;
+
+	/**
+	 * Constructs this engine.
+	 *
+	 * @param threadsCount number of threads used to evaluate folds
+	 * @throws IllegalArgumentException if given number of threads is not positive
+	 */
+	public CrossValidationEngine(int threadsCount) {
+		if (threadsCount < 1) {
+			throw new IllegalArgumentException("Number of threads has to be positive.");
+		}
+		this.threadsCount = threadsCount;
+	}
+
+	/**
+	 * Splits given data into stratified folds, for each given seed, and evaluates all folds in parallel.
+	 *
+	 * @param informationTable the data
+	 * @param seeds random generator seeds, one per cross-validation
+	 * @param foldsCount number of cross-validation folds
+	 * @param foldEvaluator evaluator of a single fold
+	 *
+	 * @return accumulated ordinal misclassification matrices resulting from k-fold cross-validation, one per seed (in the order of seeds)
+	 *
+	 * @throws RuntimeException if evaluation of any fold fails
+	 */
+	public OrdinalMisclassificationMatrix[] crossValidate(InformationTableWithDecisionDistributions informationTable, long[] seeds, int foldsCount, FoldEvaluator foldEvaluator) {
+		List<Fold> jobs = new ArrayList<>(seeds.length * foldsCount);
+
+		for (int seedIndex = 0; seedIndex < seeds.length; seedIndex++) {
+			int[] foldAssignment = assignStratifiedFolds(informationTable, seeds[seedIndex], foldsCount); //split data in foldsCount folds
+
+			for (int i = 0; i < foldsCount; i++) {
+				jobs.add(new Fold(seeds[seedIndex], seedIndex, i+1, foldsCount, informationTable, foldAssignment));
+			}
+		}
+
+		//largest folds first, so the longest jobs do not end up at the tail of the schedule (sort is stable, so ties retain order of seeds and folds)
+		jobs.sort(Comparator.comparingInt(Fold::getNumberOfTrainObjects).reversed());
+
+		OrdinalMisclassificationMatrix[][] foldMatrices = new OrdinalMisclassificationMatrix[seeds.length][foldsCount];
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(threadsCount, Math.max(jobs.size(), 1)), new CrossValidationThreadFactory());
+
+		try {
+			List<Future<OrdinalMisclassificationMatrix>> futures = new ArrayList<>(jobs.size());
+			for (Fold job : jobs) {
+				futures.add(executor.submit(() -> {
+					try {
+						return foldEvaluator.evaluate(job);
+					} finally {
+						job.release(); //at most one fold per thread keeps its data
+					}
+				}));
+			}
+
+			for (int i = 0; i < jobs.size(); i++) {
+				foldMatrices[jobs.get(i).seedIndex][jobs.get(i).index - 1] = getResult(futures.get(i));
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+
+		OrdinalMisclassificationMatrix[] accumulatedMatrices = new OrdinalMisclassificationMatrix[seeds.length];
+		for (int seedIndex = 0; seedIndex < seeds.length; seedIndex++) {
+			accumulatedMatrices[seedIndex] = new OrdinalMisclassificationMatrix(true, informationTable.getOrderedUniqueFullyDeterminedDecisions(),
+					foldMatrices[seedIndex]); //accumulated misclassification matrix
+		}
+
+		return accumulatedMatrices;
+	}
+
+	/**
+	 * Assigns objects of given information table to stratified cross-validation folds. Objects of each decision class (in the order of classes,
+	 * followed by objects whose decision is not fully determined) are shuffled, and then dealt to consecutive folds, continuing from the fold following
+	 * the one that received the last object of the previous class. Hence, sizes of folds differ by at most one object, and so do numbers of objects of each class in any two folds.
+ * This assignment differs from the one of {@link org.rulelearn.sampling.CrossValidator} for the same seed (see {@link #FOLD_ASSIGNMENT_VERSION}).
+	 *
+	 * @param informationTable the data
+	 * @param seed random generator seed
+	 * @param foldsCount number of cross-validation folds
+	 * @return index of the test fold of each object, starting from 0
+	 *
+	 * @throws IllegalArgumentException if number of folds is not positive
+	 */
+	public static int[] assignStratifiedFolds(InformationTable informationTable, long seed, int foldsCount) {
+		if (foldsCount < 1) {
+			throw new IllegalArgumentException("Number of folds has to be positive.");
+		}
+		int objectsCount = informationTable.getNumberOfObjects();
+		Decision[] decisions = informationTable.getOrderedUniqueFullyDeterminedDecisions();
+		Map<Decision, Integer> classIndices = new HashMap<>();
+		for (int i = 0; i < decisions.length; i++) {
+			classIndices.put(decisions[i], i);
+		}
+
+		int[] objectClasses = new int[objectsCount];
+		int[] classSizes = new int[decisions.length + 1]; //last class groups objects whose decision is not fully determined
+		for (int objectIndex = 0; objectIndex < objectsCount; objectIndex++) {
+			Integer classIndex = classIndices.get(informationTable.getDecision(objectIndex));
+			objectClasses[objectIndex] = classIndex != null ? classIndex : decisions.length;
+			classSizes[objectClasses[objectIndex]]++;
+		}
+
+		int[] classOffsets = new int[classSizes.length + 1];
+		for (int classIndex = 0; classIndex < classSizes.length; classIndex++) {
+			classOffsets[classIndex + 1] = classOffsets[classIndex] + classSizes[classIndex];
+		}
+		int[] objectsByClass = new int[objectsCount];
+		int[] positions = Arrays.copyOf(classOffsets, classSizes.length);
+		for (int objectIndex = 0; objectIndex < objectsCount; objectIndex++) {
+			objectsByClass[positions[objectClasses[objectIndex]]++] = objectIndex;
+		}
+
+		Random random = new Random(seed);
+		int[] foldAssignment = new int[objectsCount];
+		int foldIndex = 0;
+		for (int classIndex = 0; classIndex < classSizes.length; classIndex++) {
+			for (int i = classOffsets[classIndex + 1] - 1; i > classOffsets[classIndex]; i--) { //Fisher-Yates shuffle within the class
+				int j = classOffsets[classIndex] + random.nextInt(i - classOffsets[classIndex] + 1);
+				int objectIndex = objectsByClass[i];
+				objectsByClass[i] = objectsByClass[j];
+				objectsByClass[j] = objectIndex;
+			}
+			for (int i = classOffsets[classIndex]; i < classOffsets[classIndex + 1]; i++) {
+				foldAssignment[objectsByClass[i]] = foldIndex;
+				foldIndex = (foldIndex + 1) % foldsCount;
+			}
+		}
+
+		return foldAssignment;
+	}
+
+	/**
+	 * Waits for the result of a job, rethrowing its failure.
+	 *
+	 * @param future future result of a job
+	 * @return result of the job
+	 */
+	static <T> T getResult(Future<T> future) {
+		try {
+			return future.get();
+		} catch (InterruptedException exception) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for cross-validation results.", exception);
+		} catch (ExecutionException exception) {
+			if (exception.getCause() instanceof RuntimeException) {
+				throw (RuntimeException)exception.getCause();
+			} else if (exception.getCause() instanceof Error) {
+				throw (Error)exception.getCause();
+			}
+			throw new IllegalStateException(exception.getCause());
+		}
+	}
+
+	/**
+	 * Creates named daemon threads, so an abandoned engine does not prevent JVM from exiting.
+	 */
+	static final class CrossValidationThreadFactory implements ThreadFactory {
+		final AtomicInteger threadNumber = new AtomicInteger(1);
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "cross-validation-" + threadNumber.getAndIncrement());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+
+}
@@ -0,0 +1,218 @@
+/**
+ * Copyright (C) Jerzy Błaszczyński, Marcin Szeląg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rulelearn.usecases;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import org.rulelearn.core.TernaryLogicValue;
+import org.rulelearn.data.AttributeType;
+import org.rulelearn.data.Decision;
+import org.rulelearn.data.EvaluationAttribute;
+import org.rulelearn.data.InformationTable;
+import org.rulelearn.data.InformationTableWithDecisionDistributions;
+import org.rulelearn.types.EvaluationField;
+import org.rulelearn.types.Field;
+
+/**
+ * Dominance relation among objects of an {@link InformationTable information table}, calculated once and stored as primitive index structures:
+ * positive and negative dominance cone of each object is a bitset indexed by object index, and decision of each object is an index of a decision class.
+ * Cones of objects of any subset of the data are then obtained by intersecting stored cones with the bitset of that subset, without comparing any evaluations again.
+ * Index is used by {@link ConsistencyThresholdSweep}, so cones are calculated once for all swept thresholds.
+ * <br>
+ * Index takes {@code n*n/4} bytes for {@code n} objects, so it is intended for data sets with up to several tens of thousands of objects,
+ * and refuses larger ones (see {@link #MAX_OBJECTS_COUNT}).
+ *
+ * @author Marcin Szeląg (<a href="mailto:marcin.szelag@cs.put.poznan.pl">marcin.szelag@cs.put.poznan.pl</a>)
+ */
+public class DominanceConeIndex {
+
+	/**
+	 * Maximal number of indexed objects (index of that many objects takes 256 MB).
+	 */
+	public static final int MAX_OBJECTS_COUNT = 32768;
+
+	final int objectsCount;
+	final Decision[] decisions; //ordered unique fully determined decisions
+	final int[] objectClasses; //index of decision of each object, or -1 if decision is not fully determined
+	final BitSet[] positiveCones; //indexed by object index; objects dominating given object (including itself)
+	final BitSet[] negativeCones; //indexed by object index; objects dominated by given object (including itself)
+
+	DominanceConeIndex(int objectsCount, Decision[] decisions, int[] objectClasses, BitSet[] positiveCones, BitSet[] negativeCones) {
+		this.objectsCount = objectsCount;
+		this.decisions = decisions;
+		this.objectClasses = objectClasses;
+		this.positiveCones = positiveCones;
+		this.negativeCones = negativeCones;
+	}
+
+	/**
+	 * Calculates dominance cones of all objects from given information table, in parallel.
+	 * Dominance is checked on active condition attributes, by {@link EvaluationField#isAtLeastAsGoodAs(Field)}.
+	 *
+	 * @param informationTable the data
+	 * @return dominance cone index
+	 *
+	 * @throws IllegalArgumentException if given information table has more than {@link #MAX_OBJECTS_COUNT} objects
+	 */
+	public static DominanceConeIndex of(InformationTableWithDecisionDistributions informationTable) {
+		int objectsCount = informationTable.getNumberOfObjects();
+		if (objectsCount > MAX_OBJECTS_COUNT) {
+			throw new IllegalArgumentException("Dominance cones of "+objectsCount+" objects would take "+((long)objectsCount * objectsCount / 4 / (1 << 20))
+					+" MB; at most "+MAX_OBJECTS_COUNT+" objects can be indexed.");
+		}
+		Decision[] decisions = informationTable.getOrderedUniqueFullyDeterminedDecisions();
+
+		Map<Decision, Integer> decisionIndices = new HashMap<>();
+		for (int i = 0; i < decisions.length; i++) {
+			decisionIndices.put(decisions[i], i);
+		}
+		int[] objectClasses = new int[objectsCount];
+		for (int objectIndex = 0; objectIndex < objectsCount; objectIndex++) {
+			Integer decisionIndex = decisionIndices.get(informationTable.getDecision(objectIndex));
+			objectClasses[objectIndex] = decisionIndex != null ? decisionIndex : -1;
+		}
+
+		int attributesCount = informationTable.getNumberOfAttributes();
+		int[] conditionAttributeIndices = IntStream.range(0, attributesCount)
+				.filter(attributeIndex -> informationTable.getAttribute(attributeIndex) instanceof EvaluationAttribute
+						&& informationTable.getAttribute(attributeIndex).isActive()
+						&& ((EvaluationAttribute)informationTable.getAttribute(attributeIndex)).getType() == AttributeType.CONDITION)
+				.toArray();
+
+		EvaluationField[][] evaluations = new EvaluationField[objectsCount][conditionAttributeIndices.length];
+		for (int objectIndex = 0; objectIndex < objectsCount; objectIndex++) {
+			for (int i = 0; i < conditionAttributeIndices.length; i++) {
+				evaluations[objectIndex][i] = (EvaluationField)informationTable.getField(objectIndex, conditionAttributeIndices[i]);
+			}
+		}
+
+		BitSet[] positiveCones = new BitSet[objectsCount];
+		BitSet[] negativeCones = new BitSet[objectsCount];
+
+		IntStream.range(0, objectsCount).parallel().forEach(objectIndex -> {
+			BitSet positiveCone = new BitSet(objectsCount);
+			BitSet negativeCone = new BitSet(objectsCount);
+			for (int otherObjectIndex = 0; otherObjectIndex < objectsCount; otherObjectIndex++) {
+				if (dominates(evaluations[otherObjectIndex], evaluations[objectIndex])) {
+					positiveCone.set(otherObjectIndex);
+				}
+				if (dominates(evaluations[objectIndex], evaluations[otherObjectIndex])) {
+					negativeCone.set(otherObjectIndex);
+				}
+			}
+			positiveCones[objectIndex] = positiveCone;
+			negativeCones[objectIndex] = negativeCone;
+		});
+
+		return new DominanceConeIndex(objectsCount, decisions, objectClasses, positiveCones, negativeCones);
+	}
+
+	private static boolean dominates(EvaluationField[] dominatingEvaluations, EvaluationField[] dominatedEvaluations) {
+		for (int i = 0; i < dominatingEvaluations.length; i++) {
+			if (dominatingEvaluations[i].isAtLeastAsGoodAs(dominatedEvaluations[i]) != TernaryLogicValue.TRUE) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Gets number of indexed objects.
+	 *
+	 * @return number of indexed objects
+	 */
+	public int getObjectsCount() {
+		return objectsCount;
+	}
+
+	/**
+	 * Gets ordered unique fully determined decisions of indexed objects.
+	 *
+	 * @return ordered decisions; indices of this array are used as decision classes of objects
+	 */
+	public Decision[] getDecisions() {
+		return decisions;
+	}
+
+	/**
+	 * Gets index of decision class of given object.
+	 *
+	 * @param objectIndex index of an object
+	 * @return index of decision of the object in the array returned by {@link #getDecisions()}, or -1 if decision is not fully determined
+	 */
+	public int getObjectClass(int objectIndex) {
+		return objectClasses[objectIndex];
+	}
+
+	/**
+	 * Gets positive dominance cone of given object. Returned bitset should not be modified.
+	 *
+	 * @param objectIndex index of an object
+	 * @return bitset of indices of objects dominating given object
+	 */
+	public BitSet getPositiveCone(int objectIndex) {
+		return positiveCones[objectIndex];
+	}
+
+	/**
+	 * Gets negative dominance cone of given object. Returned bitset should not be modified.
+	 *
+	 * @param objectIndex index of an object
+	 * @return bitset of indices of objects dominated by given object
+	 */
+	public BitSet getNegativeCone(int objectIndex) {
+		return negativeCones[objectIndex];
+	}
+
+	/**
+	 * Calculates, for each object of given subset of indexed objects, the number of objects of that subset from each decision class,
+	 * in the positive and in the negative dominance cone of the object. Objects are processed in parallel.
+	 *
+	 * @param objectIndices indices of objects of the subset
+	 * @return array [0 for positive cone, 1 for negative cone][index in given array][decision index]
+	 */
+	public int[][][] calculateConeDecisionDistributions(int[] objectIndices) {
+		BitSet subset = new BitSet(objectsCount);
+		for (int objectIndex : objectIndices) {
+			subset.set(objectIndex);
+		}
+		int[][] positiveConeDistributions = new int[objectIndices.length][];
+		int[][] negativeConeDistributions = new int[objectIndices.length][];
+
+		IntStream.range(0, objectIndices.length).parallel().forEach(i -> {
+			positiveConeDistributions[i] = calculateDecisionDistribution(positiveCones[objectIndices[i]], subset);
+			negativeConeDistributions[i] = calculateDecisionDistribution(negativeCones[objectIndices[i]], subset);
+		});
+
+		return new int[][][] {positiveConeDistributions, negativeConeDistributions};
+	}
+
+	private int[] calculateDecisionDistribution(BitSet cone, BitSet subset) {
+		int[] distribution = new int[decisions.length];
+		BitSet subsetCone = (BitSet)cone.clone();
+		subsetCone.and(subset);
+		for (int objectIndex = subsetCone.nextSetBit(0); objectIndex >= 0; objectIndex = subsetCone.nextSetBit(objectIndex + 1)) {
+			if (objectClasses[objectIndex] >= 0) {
+				distribution[objectClasses[objectIndex]]++;
+			}
+		}
+		return distribution;
+	}
+
+}
@@ -0,0 +1,507 @@
+/**
+ * Copyright (C) Jerzy Błaszczyński, Marcin Szeląg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rulelearn.usecases;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.rulelearn.classification.SimpleClassificationResult;
+import org.rulelearn.data.AttributeType;
+import org.rulelearn.data.Decision;
+import org.rulelearn.data.EvaluationAttribute;
+import org.rulelearn.data.InformationTable;
+import org.rulelearn.data.InformationTableWithDecisionDistributions;
+import org.rulelearn.data.ObjectParseException;
+import org.rulelearn.data.SimpleDecision;
+import org.rulelearn.rules.AcceptingRuleFilter;
+import org.rulelearn.rules.CompositeRuleCharacteristicsFilter;
+import org.rulelearn.rules.RuleFilter;
+import org.rulelearn.rules.RuleSetWithComputableCharacteristics;
+import org.rulelearn.types.EnumerationFieldFactory;
+import org.rulelearn.validation.OrdinalMisclassificationMatrix;
+
+/**
+ * Runs a grid of cross-validation experiments described by a JSON specification: data sets &times; consistency thresholds &times; rule filters &times; seeds.
+ * Example specification is given in {@code src/main/resources/experiments/grid.json}. Rule filters are given as expressions accepted by
+ * {@link CompositeRuleCharacteristicsFilter#of(String)}, or as "accept", denoting {@link AcceptingRuleFilter}.
+ * <br>
+ * Grid is expanded into jobs, one per data set, threshold, and seed. Within a job, rules are induced once per fold (using {@link RuleInductionCache}),
+ * and then all rule filters are applied to them, as filtering does not influence induction. Jobs are scheduled on a fixed thread pool,
+ * starting from the ones with the largest estimated cost, so the longest jobs do not end up at the tail of the schedule.
+ * <br>
+ * Each finished cell of the grid (data set, threshold, rule filter, seed) is appended to a JSON Lines checkpoint file. When the grid is run again,
+ * cells present in the checkpoint are not recomputed, so an interrupted run can be resumed. Cells are identified also by {@link CrossValidationEngine#FOLD_ASSIGNMENT_VERSION version of fold assignment},
+ * so cells computed for differently assigned folds (e.g., by {@link org.rulelearn.sampling.CrossValidator}, whose cells carry no version) are recomputed.
+ *
+ * @author Marcin Szeląg (<a href="mailto:marcin.szelag@cs.put.poznan.pl">marcin.szelag@cs.put.poznan.pl</a>)
+ */
+public class ExperimentGridRunner {
+
+	/**
+	 * Path to default grid specification.
+	 */
+	public static final String DEFAULT_SPECIFICATION_PATH = "src/main/resources/experiments/grid.json";
+
+	/**
+	 * Rule filter name denoting {@link AcceptingRuleFilter}.
+	 */
+	public static final String ACCEPTING_RULE_FILTER = "accept";
+
+	final String snapshotDirectoryPath = "build/snapshots"; //directory with binary snapshots of data, used instead of parsing JSON files if they did not change
+	final RuleInductionCache ruleInductionCache = new RuleInductionCache("build/rule-cache"); //rules induced earlier for the same data, threshold, and version of ruleLearn
+
+	/**
+	 * Data set of the grid.
+	 */
+	static final class Dataset {
+		final String name;
+		final String metadataPath;
+		final String dataPath;
+		final int decisionAttributeIndex;
+		final String defaultClassificationResultLabel;
+		InformationTableWithDecisionDistributions informationTable = null; //loaded only if some cell concerning this data set has not been computed yet
+		SimpleClassificationResult defaultClassificationResult = null;
+
+		Dataset(String name, String metadataPath, String dataPath, int decisionAttributeIndex, String defaultClassificationResultLabel) {
+			this.name = name;
+			this.metadataPath = metadataPath;
+			this.dataPath = dataPath;
+			this.decisionAttributeIndex = decisionAttributeIndex;
+			this.defaultClassificationResultLabel = defaultClassificationResultLabel;
+		}
+	}
+
+	/**
+	 * Cross-validations of a single data set, for a single threshold and seed, evaluated for (not yet computed) rule filters.
+	 */
+	static final class Job {
+		final Dataset dataset;
+		final double consistencyThreshold;
+		final long seed;
+		final List<String> ruleFilters;
+		final double cost;
+
+		Job(Dataset dataset, double consistencyThreshold, long seed, List<String> ruleFilters, double cost) {
+			this.dataset = dataset;
+			this.consistencyThreshold = consistencyThreshold;
+			this.seed = seed;
+			this.ruleFilters = ruleFilters;
+			this.cost = cost;
+		}
+	}
+
+	final List<Dataset> datasets;
+	final double[] consistencyThresholds;
+	final String[] ruleFilters;
+	final long[] seeds;
+	final int foldsCount;
+	final int threadsCount;
+	final Path checkpointPath;
+	ReportSink reportSink = new ReportSink(); //writes only to the console
+
+	/**
+	 * Constructs this runner.
+	 *
+	 * @param datasets data sets
+	 * @param consistencyThresholds consistency thresholds
+	 * @param ruleFilters rule filters (expressions or {@link #ACCEPTING_RULE_FILTER})
+	 * @param seeds random generator seeds
+	 * @param foldsCount number of cross-validation folds
+	 * @param threadsCount number of threads running jobs; if not positive, number of available processors is used
+	 * @param checkpointPath path to JSON Lines checkpoint file
+	 */
+	ExperimentGridRunner(List<Dataset> datasets, double[] consistencyThresholds, String[] ruleFilters, long[] seeds, int foldsCount, int threadsCount, String checkpointPath) {
+		this.datasets = datasets;
+		this.consistencyThresholds = consistencyThresholds;
+		this.ruleFilters = ruleFilters;
+		this.seeds = seeds;
+		this.foldsCount = foldsCount;
+		this.threadsCount = threadsCount > 0 ? threadsCount : Runtime.getRuntime().availableProcessors();
+		this.checkpointPath = Paths.get(checkpointPath);
+	}
+
+	/**
+	 * Main entry point.
+	 *
+	 * @param args command-line arguments: optional path to grid specification (by default, {@link #DEFAULT_SPECIFICATION_PATH})
+	 */
+	public static void main(String[] args) {
+		long startTime = System.currentTimeMillis();
+		try {
+			fromJSONFile(args.length > 0 ? args[0] : DEFAULT_SPECIFICATION_PATH).run();
+		} catch (IOException | ObjectParseException | IllegalArgumentException exception) {
+			exception.printStackTrace();
+		}
+		long duration = System.currentTimeMillis() - startTime;
+
+		System.out.println();
+		System.out.println("Total time [ms]: "+duration);
+	}
+
+	/**
+	 * Constructs runner for grid described in given JSON file.
+	 *
+	 * @param specificationPath path to JSON file with grid specification
+	 * @return runner of the grid
+	 *
+	 * @throws IOException if specification cannot be read
+	 * @throws IllegalArgumentException if specification is invalid
+	 */
+	@SuppressWarnings("unchecked")
+	public static ExperimentGridRunner fromJSONFile(String specificationPath) throws IOException {
+		Object specification = (new JSONParser(new String(Files.readAllBytes(Paths.get(specificationPath)), StandardCharsets.UTF_8))).parse();
+		if (!(specification instanceof Map)) {
+			throw new IllegalArgumentException("Grid specification should be a JSON object.");
+		}
+		Map<String, Object> grid = (Map<String, Object>)specification;
+
+		List<Dataset> datasets = new ArrayList<>();
+		for (Object element : getList(grid, "datasets")) {
+			Map<String, Object> dataset = (Map<String, Object>)element;
+			datasets.add(new Dataset(getString(dataset, "name"), getString(dataset, "metadataPath"), getString(dataset, "dataPath"),
+					getNumber(dataset, "decisionAttributeIndex").intValueExact(), getString(dataset, "defaultClassificationResultLabel")));
+		}
+		double[] consistencyThresholds = getList(grid, "consistencyThresholds").stream().mapToDouble(value -> ((BigDecimal)value).doubleValue()).toArray();
+		String[] ruleFilters = getList(grid, "ruleFilters").stream().map(value -> (String)value).toArray(String[]::new);
+		long[] seeds = getList(grid, "seeds").stream().mapToLong(value -> ((BigDecimal)value).longValueExact()).toArray();
+
+		return new ExperimentGridRunner(datasets, consistencyThresholds, ruleFilters, seeds,
+				getNumber(grid, "foldsCount").intValueExact(),
+				grid.containsKey("threadsCount") ? getNumber(grid, "threadsCount").intValueExact() : 0,
+				grid.containsKey("checkpointPath") ? getString(grid, "checkpointPath") : "build/experiments/grid-checkpoint.jsonl");
+	}
+
+	private static List<?> getList(Map<String, Object> object, String key) {
+		if (!(object.get(key) instanceof List)) {
+			throw new IllegalArgumentException("Grid specification should contain an array \""+key+"\".");
+		}
+		return (List<?>)object.get(key);
+	}
+
+	private static String getString(Map<String, Object> object, String key) {
+		if (!(object.get(key) instanceof String)) {
+			throw new IllegalArgumentException("Grid specification should contain a string \""+key+"\".");
+		}
+		return (String)object.get(key);
+	}
+
+	private static BigDecimal getNumber(Map<String, Object> object, String key) {
+		if (!(object.get(key) instanceof BigDecimal)) {
+			throw new IllegalArgumentException("Grid specification should contain a number \""+key+"\".");
+		}
+		return (BigDecimal)object.get(key);
+	}
+
+	/**
+	 * Runs all cells of the grid not present in the checkpoint, and prints summary of all cells.
+	 *
+	 * @throws IOException if checkpoint cannot be read or written
+	 * @throws ObjectParseException if data cannot be parsed
+	 */
+	public void run() throws IOException, ObjectParseException {
+		Map<String, Map<String, Object>> completedCells = readCheckpoint();
+		int cellsCount = datasets.size() * consistencyThresholds.length * ruleFilters.length * seeds.length;
+		reportSink.message("Grid: "+cellsCount+" cells, "+completedCells.size()+" already in checkpoint "+checkpointPath+"."); //!
+
+		List<Job> jobs = createJobs(completedCells);
+		jobs.sort(Comparator.comparingDouble((Job job) -> job.cost).reversed()); //largest jobs first (sort is stable, so ties retain order of the grid)
+		reportSink.message("Jobs to run: "+jobs.size()+", using "+threadsCount+" threads."); //!
+
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(threadsCount, Math.max(jobs.size(), 1)), new CrossValidationEngine.CrossValidationThreadFactory());
+		try {
+			List<Future<?>> futures = new ArrayList<>(jobs.size());
+			for (Job job : jobs) {
+				futures.add(executor.submit(() -> {
+					evaluate(job);
+					return null;
+				}));
+			}
+			for (Future<?> future : futures) {
+				CrossValidationEngine.getResult(future);
+			}
+
+			printSummary(readCheckpoint());
+		} finally {
+			executor.shutdownNow();
+			reportSink.close();
+		}
+	}
+
+	/**
+	 * Expands the grid into jobs, skipping completed cells. Loads data sets concerned by any job.
+	 *
+	 * @param completedCells cells present in the checkpoint, by key
+	 * @return list of jobs, in the order of the grid
+	 *
+	 * @throws IOException if data cannot be read
+	 * @throws ObjectParseException if data cannot be parsed
+	 */
+	List<Job> createJobs(Map<String, Map<String, Object>> completedCells) throws IOException, ObjectParseException {
+		List<Job> jobs = new ArrayList<>();
+
+		for (Dataset dataset : datasets) {
+			for (double consistencyThreshold : consistencyThresholds) {
+				for (long seed : seeds) {
+					List<String> pendingRuleFilters = new ArrayList<>();
+					for (String ruleFilter : ruleFilters) {
+						if (!completedCells.containsKey(getCellKey(dataset.name, consistencyThreshold, ruleFilter, seed, CrossValidationEngine.FOLD_ASSIGNMENT_VERSION))) {
+							pendingRuleFilters.add(ruleFilter);
+						}
+					}
+					if (!pendingRuleFilters.isEmpty()) {
+						load(dataset);
+						jobs.add(new Job(dataset, consistencyThreshold, seed, pendingRuleFilters, estimateCost(dataset.informationTable, foldsCount)));
+					}
+				}
+			}
+		}
+
+		return jobs;
+	}
+
+	/**
+	 * Loads given data set, if it has not been loaded yet.
+	 *
+	 * @param dataset data set
+	 *
+	 * @throws IOException if data cannot be read
+	 * @throws ObjectParseException if data cannot be parsed
+	 */
+	void load(Dataset dataset) throws IOException, ObjectParseException {
+		if (dataset.informationTable == null) {
+			InformationTable informationTable = InformationTableSnapshot.safelyBuildFromJSONFile(dataset.metadataPath, dataset.dataPath, snapshotDirectoryPath);
+			if (informationTable == null) {
+				throw new IOException("Data set "+dataset.name+" could not be read.");
+			}
+			dataset.informationTable = new InformationTableWithDecisionDistributions(informationTable, true);
+			dataset.defaultClassificationResult = new SimpleClassificationResult(new SimpleDecision(EnumerationFieldFactory.getInstance().create(
+					dataset.defaultClassificationResultLabel, (EvaluationAttribute)informationTable.getAttribute(dataset.decisionAttributeIndex)), dataset.decisionAttributeIndex));
+			reportSink.message("Data set "+dataset.name+" read from "+dataset.metadataPath+" and "+dataset.dataPath+"."); //!
+		}
+	}
+
+	/**
+	 * Estimates relative cost of cross-validation of given data. Rule induction dominates this cost, and is driven by pairwise comparisons of training objects
+	 * on condition attributes. Cost of filtering and classification is neglected, so it does not depend on the number of rule filters.
+	 *
+	 * @param informationTable the data
+	 * @param foldsCount number of cross-validation folds
+	 * @return estimated cost (in arbitrary units)
+	 */
+	static double estimateCost(InformationTable informationTable, int foldsCount) {
+		double trainObjectsCount = informationTable.getNumberOfObjects() * (foldsCount - 1.0) / foldsCount;
+		int conditionAttributesCount = 0;
+		for (int attributeIndex = 0; attributeIndex < informationTable.getNumberOfAttributes(); attributeIndex++) {
+			if (informationTable.getAttribute(attributeIndex) instanceof EvaluationAttribute && informationTable.getAttribute(attributeIndex).isActive()
+					&& ((EvaluationAttribute)informationTable.getAttribute(attributeIndex)).getType() == AttributeType.CONDITION) {
+				conditionAttributesCount++;
+			}
+		}
+		return foldsCount * trainObjectsCount * trainObjectsCount * Math.max(conditionAttributesCount, 1);
+	}
+
+	/**
+	 * Performs cross-validation for given job. Rules induced in each fold are filtered by each pending rule filter, and classify test data of the fold.
+	 * Each rule filter yields a cell of the grid, written to the checkpoint.
+	 *
+	 * @param job job to evaluate
+	 */
+	void evaluate(Job job) {
+		long startTime = System.currentTimeMillis();
+		Dataset dataset = job.dataset;
+
+		int[] foldAssignment = CrossValidationEngine.assignStratifiedFolds(dataset.informationTable, job.seed, foldsCount); //split data in foldsCount folds
+
+		RuleFilter[] ruleFilters = job.ruleFilters.stream().map(ExperimentGridRunner::createRuleFilter).toArray(RuleFilter[]::new);
+		OrdinalMisclassificationMatrix[][] foldMatrices = new OrdinalMisclassificationMatrix[ruleFilters.length][foldsCount];
+
+		for (int i = 0; i < foldsCount; i++) {
+			CrossValidationEngine.Fold fold = new CrossValidationEngine.Fold(job.seed, 0, i+1, foldsCount, dataset.informationTable, foldAssignment); //data of a single fold exist at a time
+			InformationTable trainData = fold.getTrainData();
+			InformationTable testData = fold.getTestData();
+			RuleSetWithComputableCharacteristics ruleSetWithCharacteristics = ruleInductionCache.induceRulesWithCharacteristics(trainData, job.consistencyThreshold); //read from cache, or induced by VCDomLEM
+
+			for (int filterIndex = 0; filterIndex < ruleFilters.length; filterIndex++) {
+				foldMatrices[filterIndex][i] = classify(ruleSetWithCharacteristics.filter(ruleFilters[filterIndex]), testData, dataset.defaultClassificationResult);
+			}
+		}
+
+		Decision[] orderOfDecisions = dataset.informationTable.getOrderedUniqueFullyDeterminedDecisions();
+		long duration = System.currentTimeMillis() - startTime;
+
+		for (int filterIndex = 0; filterIndex < ruleFilters.length; filterIndex++) {
+			OrdinalMisclassificationMatrix matrix = new OrdinalMisclassificationMatrix(true, orderOfDecisions, foldMatrices[filterIndex]); //accumulated misclassification matrix
+			try {
+				checkpoint(dataset.name, job.consistencyThreshold, job.ruleFilters.get(filterIndex), job.seed, matrix, duration);
+			} catch (IOException exception) {
+				throw new IllegalStateException("Cannot write checkpoint "+checkpointPath+".", exception);
+			}
+			reportSink.message("Cell done: data="+dataset.name+", threshold="+job.consistencyThreshold+", filter="+job.ruleFilters.get(filterIndex)
+					+", seed="+job.seed+", accuracy="+matrix.getAccuracy()+" ("+duration+" ms for all filters).");
+		}
+	}
+
+	/**
+	 * Creates rule filter for given expression.
+	 *
+	 * @param ruleFilter expression accepted by {@link CompositeRuleCharacteristicsFilter#of(String)}, or {@link #ACCEPTING_RULE_FILTER}
+	 * @return rule filter
+	 */
+	static RuleFilter createRuleFilter(String ruleFilter) {
+		return ACCEPTING_RULE_FILTER.equals(ruleFilter) ? new AcceptingRuleFilter() : CompositeRuleCharacteristicsFilter.of(ruleFilter);
+	}
+
+	/**
+	 * Applies rules to the test data, using given default classification result.
+	 *
+	 * @param ruleSetWithCharacteristics rules used to classify objects from the test data
+	 * @param testData test data
+	 * @param defaultClassificationResult default classification result
+	 *
+	 * @return ordinal misclassification matrix summarizing classification of test objects by rules
+	 */
+	OrdinalMisclassificationMatrix classify(RuleSetWithComputableCharacteristics ruleSetWithCharacteristics, InformationTable testData, SimpleClassificationResult defaultClassificationResult) {
+		//it is assumed that testData contains at least one object
+		Decision[] orderOfDecisions = testData.getOrderedUniqueFullyDeterminedDecisions();
+		Decision[] originalDecisions = testData.getDecisions(true);
+		SimpleDecision[] assignedDecisions = (new BatchClassifier(ruleSetWithCharacteristics, defaultClassificationResult)).classify(testData);
+
+		return new OrdinalMisclassificationMatrix(orderOfDecisions, originalDecisions, assignedDecisions);
+	}
+
+	/**
+	 * Gets key identifying a cell of the grid.
+	 *
+	 * @param datasetName name of data set
+	 * @param consistencyThreshold consistency threshold
+	 * @param ruleFilter rule filter expression
+	 * @param seed random generator seed
+	 * @param foldAssignmentVersion version of assignment of objects to folds (see {@link CrossValidationEngine#FOLD_ASSIGNMENT_VERSION})
+	 * @return key of the cell
+	 */
+	static String getCellKey(String datasetName, double consistencyThreshold, String ruleFilter, long seed, int foldAssignmentVersion) {
+		return datasetName+"\u0000"+consistencyThreshold+"\u0000"+ruleFilter+"\u0000"+seed+"\u0000"+foldAssignmentVersion;
+	}
+
+	/**
+	 * Appends a finished cell to the checkpoint file. Each cell is written as a single JSON line, and flushed to disk, so it survives interruption of the run.
+	 *
+	 * @param datasetName name of data set
+	 * @param consistencyThreshold consistency threshold
+	 * @param ruleFilter rule filter expression
+	 * @param seed random generator seed
+	 * @param matrix accumulated misclassification matrix of cross-validation
+	 * @param duration duration of the job that computed the cell [ms]
+	 *
+	 * @throws IOException if checkpoint cannot be written
+	 */
+	synchronized void checkpoint(String datasetName, double consistencyThreshold, String ruleFilter, long seed, OrdinalMisclassificationMatrix matrix, long duration) throws IOException {
+		String line = "{\"dataset\": "+quote(datasetName)+", \"consistencyThreshold\": "+consistencyThreshold+", \"ruleFilter\": "+quote(ruleFilter)+", \"seed\": "+seed
+				+", \"foldAssignmentVersion\": "+CrossValidationEngine.FOLD_ASSIGNMENT_VERSION
+				+", \"accuracy\": "+toJSON(matrix.getAccuracy())+", \"mae\": "+toJSON(matrix.getMAE())+", \"rmse\": "+toJSON(matrix.getRMSE())+", \"gmean\": "+toJSON(matrix.getGmean())
+				+", \"durationMs\": "+duration+"}\n";
+
+		if (checkpointPath.getParent() != null) {
+			Files.createDirectories(checkpointPath.getParent());
+		}
+		try (Writer writer = new BufferedWriter(Files.newBufferedWriter(checkpointPath, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND,
+				StandardOpenOption.SYNC))) {
+			writer.write(line);
+		}
+	}
+
+	private static String quote(String text) {
+		return "\"" + ConvertCsv2Json.escape(text) + "\"";
+	}
+
+	private static String toJSON(double value) {
+		return Double.isFinite(value) ? String.valueOf(value) : "null";
+	}
+
+	/**
+	 * Reads cells from the checkpoint file. Malformed lines (e.g., the last line written when the run was interrupted) are ignored, and their number is reported.
+	 *
+	 * @return map from cell key to cell fields, in the order of the checkpoint
+	 * @throws IOException if checkpoint exists, but cannot be read
+	 */
+	@SuppressWarnings("unchecked")
+	synchronized Map<String, Map<String, Object>> readCheckpoint() throws IOException {
+		Map<String, Map<String, Object>> cells = new LinkedHashMap<>();
+		if (!Files.isRegularFile(checkpointPath)) {
+			return cells;
+		}
+
+		int malformedLinesCount = 0;
+		for (String line : Files.readAllLines(checkpointPath, StandardCharsets.UTF_8)) {
+			try {
+				Map<String, Object> cell = (Map<String, Object>)(new JSONParser(line)).parse();
+				cells.put(getCellKey((String)cell.get("dataset"), ((BigDecimal)cell.get("consistencyThreshold")).doubleValue(), (String)cell.get("ruleFilter"),
+						((BigDecimal)cell.get("seed")).longValueExact(),
+						cell.containsKey("foldAssignmentVersion") ? ((BigDecimal)cell.get("foldAssignmentVersion")).intValueExact() : 1), cell); //cells without version come from CrossValidator
+			} catch (IllegalArgumentException | ClassCastException | NullPointerException | ArithmeticException exception) {
+				malformedLinesCount++; //incomplete line
+			}
+		}
+		if (malformedLinesCount > 0) {
+			reportSink.message("Ignored "+malformedLinesCount+" malformed line(s) of checkpoint "+checkpointPath+"."); //!
+		}
+		return cells;
+	}
+
+	/**
+	 * Prints, for each data set, threshold, and rule filter of the grid, accuracy averaged over seeds.
+	 *
+	 * @param cells all computed cells, by key
+	 */
+	void printSummary(Map<String, Map<String, Object>> cells) {
+		reportSink.message("");
+		reportSink.message("-- Grid summary (accuracy averaged over seeds):"); //!
+		reportSink.message("dataset\tthreshold\tfilter\tseeds\taccuracy"); //!
+
+		for (Dataset dataset : datasets) {
+			for (double consistencyThreshold : consistencyThresholds) {
+				for (String ruleFilter : ruleFilters) {
+					double accuracySum = 0.0;
+					int count = 0;
+					for (long seed : seeds) {
+						Map<String, Object> cell = cells.get(getCellKey(dataset.name, consistencyThreshold, ruleFilter, seed, CrossValidationEngine.FOLD_ASSIGNMENT_VERSION));
+						if (cell != null && cell.get("accuracy") instanceof BigDecimal) {
+							accuracySum += ((BigDecimal)cell.get("accuracy")).doubleValue();
+							count++;
+						}
+					}
+					reportSink.message(dataset.name+"\t"+consistencyThreshold+"\t"+ruleFilter+"\t"+count+"\t"+(count > 0 ? accuracySum / count : Double.NaN)); //!
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,158 @@
+/**
+ * Copyright (C) Jerzy Błaszczyński, Marcin Szeląg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rulelearn.usecases;
+
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.rulelearn.classification.SimpleClassificationResult;
+import org.rulelearn.classification.SimpleOptimizingRuleClassifier;
+import org.rulelearn.classification.SimpleRuleClassifier;
+import org.rulelearn.data.InformationTable;
+import org.rulelearn.rules.Rule;
+import org.rulelearn.rules.RuleCharacteristics;
+import org.rulelearn.rules.RuleSetWithCharacteristics;
+
+/**
+ * Rule classifier that evaluates only rules found by a {@link RuleSetIndex rule set index} (covering rules of each object), instead of checking all rules for each object.
+ * <br>
+ * The index reads objects from a {@link ColumnarInformationTable columnar view} of classified information table. The view can be passed directly
+ * (e.g., built once and shared by classifiers of several threads, see {@link BatchClassifier}); otherwise, the view of the most recently classified table is kept.
+ * <br>
+ * Found rules keep their original order and characteristics, and are passed to a {@link SimpleOptimizingRuleClassifier}, which checks their coverage
+ * and resolves conflicts among covering rules. Hence, classification results are identical to the ones of {@link SimpleOptimizingRuleClassifier} using all rules.
+ * Classifiers of found rules are cached, as many objects are covered by the same rules. When the cache is full, the least recently used classifier is evicted,
+ * so classifiers of frequent sets of rules are kept even if many objects have distinct ones.
+ * <br>
+ * This classifier is not thread-safe, but different instances can share the same index (see {@link BatchClassifier}).
+ *
+ * @author Marcin Szeląg (<a href="mailto:marcin.szelag@cs.put.poznan.pl">marcin.szelag@cs.put.poznan.pl</a>)
+ */
+public class IndexedRuleClassifier extends SimpleRuleClassifier {
+
+	/**
+	 * Default maximum number of cached classifiers of candidate rules.
+	 */
+	public static final int DEFAULT_CACHE_SIZE = 4096;
+
+	final RuleSetIndex ruleSetIndex;
+	final RuleSetWithCharacteristics ruleSetWithCharacteristics;
+	final SimpleClassificationResult defaultClassificationResult;
+	final int cacheSize;
+	final Map<BitSet, SimpleRuleClassifier> candidateRulesClassifiers; //in access order, from the least recently used one
+	ColumnarInformationTable columnarInformationTable = null; //view of the most recently classified table
+
+	/**
+	 * Constructs this classifier, compiling index of given rules.
+	 *
+	 * @param ruleSetWithCharacteristics rules used to classify objects
+	 * @param defaultClassificationResult default classification result
+	 */
+	public IndexedRuleClassifier(RuleSetWithCharacteristics ruleSetWithCharacteristics, SimpleClassificationResult defaultClassificationResult) {
+		this(RuleSetIndex.of(ruleSetWithCharacteristics), ruleSetWithCharacteristics, defaultClassificationResult, DEFAULT_CACHE_SIZE);
+	}
+
+	/**
+	 * Constructs this classifier.
+	 *
+	 * @param ruleSetIndex index of given rules
+	 * @param ruleSetWithCharacteristics rules used to classify objects
+	 * @param defaultClassificationResult default classification result
+	 * @param cacheSize maximum number of cached classifiers of candidate rules
+	 */
+	public IndexedRuleClassifier(RuleSetIndex ruleSetIndex, RuleSetWithCharacteristics ruleSetWithCharacteristics, SimpleClassificationResult defaultClassificationResult, int cacheSize) {
+		super(ruleSetWithCharacteristics, defaultClassificationResult);
+		this.ruleSetIndex = ruleSetIndex;
+		this.ruleSetWithCharacteristics = ruleSetWithCharacteristics;
+		this.defaultClassificationResult = defaultClassificationResult;
+		this.cacheSize = cacheSize;
+		this.candidateRulesClassifiers = new LinkedHashMap<BitSet, SimpleRuleClassifier>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<BitSet, SimpleRuleClassifier> eldest) {
+				return size() > IndexedRuleClassifier.this.cacheSize;
+			}
+		};
+	}
+
+	/**
+	 * Classifies an object from given information table.
+	 *
+	 * @param objectIndex index of an object
+	 * @param informationTable information table containing the object
+	 * @return classification result, identical to the one of {@link SimpleOptimizingRuleClassifier} using all rules
+	 */
+	@Override
+	public SimpleClassificationResult classify(int objectIndex, InformationTable informationTable) {
+		if (columnarInformationTable == null || columnarInformationTable.getInformationTable() != informationTable) {
+			columnarInformationTable = ColumnarInformationTable.of(informationTable);
+		}
+		return classify(objectIndex, columnarInformationTable);
+	}
+
+	/**
+	 * Classifies an object from an information table, given by its columnar view.
+	 *
+	 * @param objectIndex index of an object
+	 * @param columnarInformationTable columnar view of an information table containing the object
+	 * @return classification result, identical to the one of {@link SimpleOptimizingRuleClassifier} using all rules
+	 */
+	public SimpleClassificationResult classify(int objectIndex, ColumnarInformationTable columnarInformationTable) {
+		return classify(objectIndex, columnarInformationTable.getInformationTable(), ruleSetIndex.getCoveringRules(objectIndex, columnarInformationTable));
+	}
+
+	/**
+	 * Classifies an object from given information table, using candidate rules already found by the index (e.g., covering rules, to report them along with the result).
+	 *
+	 * @param objectIndex index of an object
+	 * @param informationTable information table containing the object
+	 * @param candidateRules candidate rules for the object, including all covering rules; should not be modified afterwards
+	 * @return classification result, identical to the one of {@link SimpleOptimizingRuleClassifier} using all rules
+	 */
+	public SimpleClassificationResult classify(int objectIndex, InformationTable informationTable, BitSet candidateRules) {
+		SimpleRuleClassifier classifier = candidateRulesClassifiers.get(candidateRules);
+
+		if (classifier == null) {
+			classifier = new SimpleOptimizingRuleClassifier(select(candidateRules), defaultClassificationResult);
+			candidateRulesClassifiers.put(candidateRules, classifier);
+		}
+
+		return classifier.classify(objectIndex, informationTable);
+	}
+
+	/**
+	 * Selects given rules, together with their characteristics, preserving their order.
+	 *
+	 * @param ruleIndices indices of selected rules
+	 * @return rule set with selected rules
+	 */
+	RuleSetWithCharacteristics select(BitSet ruleIndices) {
+		Rule[] rules = new Rule[ruleIndices.cardinality()];
+		RuleCharacteristics[] ruleCharacteristics = new RuleCharacteristics[rules.length];
+		int i = 0;
+
+		for (int ruleIndex = ruleIndices.nextSetBit(0); ruleIndex >= 0; ruleIndex = ruleIndices.nextSetBit(ruleIndex + 1)) {
+			rules[i] = ruleSetWithCharacteristics.getRule(ruleIndex);
+			ruleCharacteristics[i] = ruleSetWithCharacteristics.getRuleCharacteristics(ruleIndex);
+			i++;
+		}
+
+		return new RuleSetWithCharacteristics(rules, ruleCharacteristics);
+	}
+
+}
@@ -0,0 +1,726 @@
+/**
+ * Copyright (C) Jerzy Błaszczyński, Marcin Szeląg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rulelearn.usecases;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.rulelearn.data.Attribute;
+import org.rulelearn.data.AttributePreferenceType;
+import org.rulelearn.data.EvaluationAttribute;
+import org.rulelearn.data.IdentificationAttribute;
+import org.rulelearn.data.InformationTable;
+import org.rulelearn.data.InformationTableBuilder;
+import org.rulelearn.data.ObjectParseException;
+import org.rulelearn.data.json.AttributeParser;
+import org.rulelearn.types.ElementList;
+import org.rulelearn.types.EnumerationField;
+import org.rulelearn.types.EnumerationFieldFactory;
+import org.rulelearn.types.Field;
+import org.rulelearn.types.IntegerField;
+import org.rulelearn.types.IntegerFieldFactory;
+import org.rulelearn.types.RealField;
+import org.rulelearn.types.RealFieldFactory;
+import org.rulelearn.types.TextIdentificationField;
+import org.rulelearn.types.UUIDIdentificationField;
+import org.rulelearn.types.UnknownSimpleField;
+
+/**
+ * Binary, columnar snapshot of an {@link InformationTable information table} built from JSON files.
+ * Snapshot is keyed by a SHA-256 hash of the contents of metadata and data files, so it is used only as long as both files remain unchanged.
+ * Each column is stored as a primitive array (codes of enumerations, integer or real values, or identifiers), accompanied by a bitmap of missing values,
+ * and is read back using memory-mapped I/O.
+ *
+ * @author Marcin Szeląg (<a href="mailto:marcin.szelag@cs.put.poznan.pl">marcin.szelag@cs.put.poznan.pl</a>)
+ */
+public class InformationTableSnapshot {
+
+	static final int MAGIC = 0x524C5453; //"RLTS"
+	static final int FORMAT_VERSION = 1;
+	static final String SNAPSHOT_FILE_EXTENSION = ".snapshot";
+
+	static final byte INTEGER_COLUMN = 0;
+	static final byte REAL_COLUMN = 1;
+	static final byte ENUMERATION_COLUMN = 2;
+	static final byte TEXT_IDENTIFIER_COLUMN = 3;
+	static final byte UUID_IDENTIFIER_COLUMN = 4;
+
+	static final int WRITE_BUFFER_SIZE = 1 << 20;
+
+	/**
+	 * Builds information table from JSON files, using snapshot stored in given directory whenever it matches current contents of these files.
+	 * If there is no matching snapshot, information table is built by {@link InformationTableBuilder#safelyBuildFromJSONFile(String, String)},
+	 * and its snapshot is stored for subsequent runs. Any problem with reading or writing a snapshot results in falling back to JSON files.
+	 *
+	 * @param metadataPath path to JSON file with metadata (attributes)
+	 * @param dataPath path to JSON file with data (objects)
+	 * @param snapshotDirectoryPath path to directory with snapshots (created if it does not exist)
+	 *
+	 * @return information table built from given files, or {@code null} if it could not be built
+	 *
+	 * @throws IOException if metadata or data file cannot be read
+	 * @throws ObjectParseException if data file cannot be parsed
+	 */
+	public static InformationTable safelyBuildFromJSONFile(String metadataPath, String dataPath, String snapshotDirectoryPath) throws IOException, ObjectParseException {
+		String key = calculateKey(metadataPath, dataPath);
+		Path snapshotPath = Paths.get(snapshotDirectoryPath, Paths.get(dataPath).getFileName().toString() + "." + key.substring(0, 16) + SNAPSHOT_FILE_EXTENSION);
+
+		if (Files.isRegularFile(snapshotPath)) {
+			try {
+				InformationTable informationTable = read(readAttributes(metadataPath), snapshotPath, key);
+				if (informationTable != null) {
+					return informationTable;
+				}
+			} catch (IOException | RuntimeException exception) { //broken snapshot
+				System.out.println("Ignoring snapshot "+snapshotPath+": "+exception); //!
+			}
+		}
+
+		InformationTable informationTable = InformationTableBuilder.safelyBuildFromJSONFile(metadataPath, dataPath);
+
+		if (informationTable != null) {
+			try {
+				Files.createDirectories(snapshotPath.getParent());
+				deleteSnapshots(snapshotPath.getParent(), Paths.get(dataPath).getFileName().toString()); //remove snapshots of previous versions of the data
+				if (!write(informationTable, snapshotPath, key)) {
+					System.out.println("Snapshot not written, as data contain unsupported type of fields."); //!
+				}
+			} catch (IOException exception) {
+				exception.printStackTrace();
+			}
+		}
+
+		return informationTable;
+	}
+
+	/**
+	 * Reads information table from a snapshot file written without JSON data file (e.g., by {@link ObjectStreamWriter}), i.e., accepting any key stored in the snapshot.
+	 *
+	 * @param metadataPath path to JSON file with metadata (attributes)
+	 * @param snapshotPath path to snapshot file
+	 * @return information table read from snapshot, or {@code null} if snapshot does not match attributes
+	 *
+	 * @throws IOException if metadata file or snapshot cannot be read
+	 */
+	public static InformationTable readSnapshot(String metadataPath, String snapshotPath) throws IOException {
+		String key;
+		try (FileChannel channel = FileChannel.open(Paths.get(snapshotPath), StandardOpenOption.READ)) {
+			ByteBuffer header = ByteBuffer.allocate(3 * Integer.BYTES);
+			while (header.hasRemaining() && channel.read(header) >= 0) {
+			}
+			header.flip();
+			if (header.remaining() < 3 * Integer.BYTES || header.getInt() != MAGIC || header.getInt() != FORMAT_VERSION) {
+				throw new IOException("File "+snapshotPath+" is not a snapshot of an information table.");
+			}
+			ByteBuffer keyBytes = ByteBuffer.allocate(header.getInt());
+			while (keyBytes.hasRemaining() && channel.read(keyBytes) >= 0) {
+			}
+			key = new String(keyBytes.array(), 0, keyBytes.position(), StandardCharsets.US_ASCII);
+		}
+		return read(readAttributes(metadataPath), Paths.get(snapshotPath), key);
+	}
+
+	/**
+	 * Reads attributes from JSON file with metadata.
+	 *
+	 * @param metadataPath path to JSON file with metadata (attributes)
+	 * @return array of read attributes
+	 *
+	 * @throws IOException if metadata file cannot be read or parsed
+	 */
+	static Attribute[] readAttributes(String metadataPath) throws IOException {
+		Attribute[] attributes;
+		try (FileReader attributeReader = new FileReader(metadataPath)) {
+			attributes = (new AttributeParser()).parseAttributes(attributeReader);
+		}
+		if (attributes == null) {
+			throw new IOException("Unable to load JSON file with meta-data "+metadataPath+".");
+		}
+		return attributes;
+	}
+
+	/**
+	 * Calculates hexadecimal SHA-256 hash of snapshot format version and contents of given files.
+	 *
+	 * @param metadataPath path to metadata file
+	 * @param dataPath path to data file
+	 * @return key identifying contents of both files
+	 *
+	 * @throws IOException if any of the files cannot be read
+	 */
+	static String calculateKey(String metadataPath, String dataPath) throws IOException {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException exception) {
+			throw new IllegalStateException(exception);
+		}
+
+		digest.update((byte)FORMAT_VERSION);
+		ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+		for (String path : new String[] {metadataPath, dataPath}) {
+			try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+				while (channel.read(buffer) >= 0) {
+					buffer.flip();
+					digest.update(buffer);
+					buffer.clear();
+				}
+			}
+			digest.update((byte)0); //separate files
+		}
+
+		StringBuilder key = new StringBuilder(64);
+		for (byte b : digest.digest()) {
+			key.append(String.format("%02X", b));
+		}
+		return key.toString();
+	}
+
+	/**
+	 * Deletes all snapshots of given data file found in given directory.
+	 *
+	 * @param snapshotDirectory directory with snapshots
+	 * @param dataFileName name of data file
+	 * @throws IOException if directory cannot be listed
+	 */
+	static void deleteSnapshots(Path snapshotDirectory, String dataFileName) throws IOException {
+		try (DirectoryStream<Path> snapshots = Files.newDirectoryStream(snapshotDirectory, path -> {
+			String fileName = path.getFileName().toString();
+			return fileName.startsWith(dataFileName + ".") && fileName.endsWith(SNAPSHOT_FILE_EXTENSION);
+		})) {
+			for (Path snapshot : snapshots) {
+				Files.deleteIfExists(snapshot);
+			}
+		}
+	}
+
+	/**
+	 * Determines type of column for given attribute.
+	 *
+	 * @param attribute attribute
+	 * @param sampleField any non-missing field of given attribute (may be {@code null})
+	 * @return type of column, or -1 if attribute cannot be stored in a snapshot
+	 */
+	static byte getColumnType(Attribute attribute, Field sampleField) {
+		if (attribute instanceof EvaluationAttribute) {
+			Field valueType = ((EvaluationAttribute)attribute).getValueType();
+			if (valueType instanceof IntegerField) {
+				return INTEGER_COLUMN;
+			} else if (valueType instanceof RealField) {
+				return REAL_COLUMN;
+			} else if (valueType instanceof EnumerationField) {
+				return ENUMERATION_COLUMN;
+			}
+		} else if (attribute instanceof IdentificationAttribute) {
+			Field valueType = sampleField != null ? sampleField : ((IdentificationAttribute)attribute).getValueType();
+			if (valueType instanceof TextIdentificationField) {
+				return TEXT_IDENTIFIER_COLUMN;
+			} else if (valueType instanceof UUIDIdentificationField) {
+				return UUID_IDENTIFIER_COLUMN;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Writes snapshot of given information table. Snapshot is first written to a temporary file, which is then moved to its final location.
+	 *
+	 * @param informationTable information table to store
+	 * @param snapshotPath path of snapshot file
+	 * @param key key identifying contents of metadata and data files
+	 * @return {@code true} if snapshot has been written, {@code false} if information table contains unsupported fields
+	 *
+	 * @throws IOException if snapshot cannot be written
+	 */
+	static boolean write(InformationTable informationTable, Path snapshotPath, String key) throws IOException {
+		int objectsCount = informationTable.getNumberOfObjects();
+		Attribute[] attributes = informationTable.getAttributes();
+		int attributesCount = attributes.length;
+		byte[] columnTypes = new byte[attributesCount];
+
+		for (int attributeIndex = 0; attributeIndex < attributesCount; attributeIndex++) {
+			columnTypes[attributeIndex] = getColumnType(attributes[attributeIndex], objectsCount > 0 ? informationTable.getField(0, attributeIndex) : null);
+			if (columnTypes[attributeIndex] < 0) {
+				return false;
+			}
+		}
+
+		Path temporaryPath = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp");
+		byte[] keyBytes = key.getBytes(StandardCharsets.US_ASCII);
+		int headerSize = 5 * Integer.BYTES + keyBytes.length + attributesCount * (1 + 2 * Long.BYTES);
+		long[] columnOffsets = new long[attributesCount];
+		long[] columnLengths = new long[attributesCount];
+
+		try (FileChannel channel = FileChannel.open(temporaryPath, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+			channel.position(headerSize); //header is written at the end, once column offsets are known
+
+			for (int attributeIndex = 0; attributeIndex < attributesCount; attributeIndex++) {
+				columnOffsets[attributeIndex] = channel.position() + buffer.position();
+
+				//bitmap of missing values
+				long word = 0L;
+				for (int objectIndex = 0; objectIndex < objectsCount; objectIndex++) {
+					if (informationTable.getField(objectIndex, attributeIndex) instanceof UnknownSimpleField) {
+						word |= 1L << (objectIndex & 63);
+					}
+					if ((objectIndex & 63) == 63 || objectIndex == objectsCount - 1) {
+						ensureRemaining(channel, buffer, Long.BYTES);
+						buffer.putLong(word);
+						word = 0L;
+					}
+				}
+
+				//values
+				Field field;
+				for (int objectIndex = 0; objectIndex < objectsCount; objectIndex++) {
+					field = informationTable.getField(objectIndex, attributeIndex);
+					switch (columnTypes[attributeIndex]) {
+					case INTEGER_COLUMN:
+						ensureRemaining(channel, buffer, Integer.BYTES);
+						buffer.putInt(field instanceof IntegerField ? ((IntegerField)field).getValue() : 0);
+						break;
+					case REAL_COLUMN:
+						ensureRemaining(channel, buffer, Double.BYTES);
+						buffer.putDouble(field instanceof RealField ? ((RealField)field).getValue() : 0.0);
+						break;
+					case ENUMERATION_COLUMN:
+						ensureRemaining(channel, buffer, Integer.BYTES);
+						buffer.putInt(field instanceof EnumerationField ? ((EnumerationField)field).getValue() : -1);
+						break;
+					case TEXT_IDENTIFIER_COLUMN:
+						byte[] text = ((TextIdentificationField)field).getValue().getBytes(StandardCharsets.UTF_8);
+						ensureRemaining(channel, buffer, Integer.BYTES);
+						buffer.putInt(text.length);
+						for (int offset = 0; offset < text.length; ) { //text may be longer than buffer
+							ensureRemaining(channel, buffer, 1);
+							int chunk = Math.min(buffer.remaining(), text.length - offset);
+							buffer.put(text, offset, chunk);
+							offset += chunk;
+						}
+						break;
+					case UUID_IDENTIFIER_COLUMN:
+						UUID uuid = ((UUIDIdentificationField)field).getValue();
+						ensureRemaining(channel, buffer, 2 * Long.BYTES);
+						buffer.putLong(uuid.getMostSignificantBits()).putLong(uuid.getLeastSignificantBits());
+						break;
+					}
+				}
+
+				columnLengths[attributeIndex] = channel.position() + buffer.position() - columnOffsets[attributeIndex];
+			}
+			flush(channel, buffer);
+
+			buffer.clear();
+			buffer.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(keyBytes.length).put(keyBytes).putInt(objectsCount).putInt(attributesCount);
+			for (int attributeIndex = 0; attributeIndex < attributesCount; attributeIndex++) {
+				buffer.put(columnTypes[attributeIndex]).putLong(columnOffsets[attributeIndex]).putLong(columnLengths[attributeIndex]);
+			}
+			buffer.flip();
+			channel.position(0);
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		}
+
+		Files.move(temporaryPath, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		return true;
+	}
+
+	private static void ensureRemaining(FileChannel channel, ByteBuffer buffer, int bytesCount) throws IOException {
+		if (buffer.remaining() < bytesCount) {
+			flush(channel, buffer);
+		}
+	}
+
+	private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	/**
+	 * Reads information table from snapshot, using memory-mapped I/O.
+	 *
+	 * @param attributes attributes read from metadata file
+	 * @param snapshotPath path of snapshot file
+	 * @param key expected key identifying contents of metadata and data files
+	 * @return information table read from snapshot, or {@code null} if snapshot does not match given key or attributes
+	 *
+	 * @throws IOException if snapshot cannot be read
+	 * @throws BufferUnderflowException if snapshot is truncated
+	 */
+	static InformationTable read(Attribute[] attributes, Path snapshotPath, String key) throws IOException {
+		try (FileChannel channel = FileChannel.open(snapshotPath, StandardOpenOption.READ)) {
+			MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(channel.size(), 5 * Integer.BYTES + key.length() + attributes.length * (1 + 2 * Long.BYTES)));
+			if (header.getInt() != MAGIC || header.getInt() != FORMAT_VERSION) {
+				return null;
+			}
+			byte[] keyBytes = new byte[header.getInt()];
+			header.get(keyBytes);
+			if (!key.equals(new String(keyBytes, StandardCharsets.US_ASCII))) {
+				return null;
+			}
+			int objectsCount = header.getInt();
+			if (header.getInt() != attributes.length) {
+				return null;
+			}
+
+			byte[] columnTypes = new byte[attributes.length];
+			long[] columnOffsets = new long[attributes.length];
+			long[] columnLengths = new long[attributes.length];
+			for (int attributeIndex = 0; attributeIndex < attributes.length; attributeIndex++) {
+				columnTypes[attributeIndex] = header.get();
+				columnOffsets[attributeIndex] = header.getLong();
+				columnLengths[attributeIndex] = header.getLong();
+			}
+
+			List<Field[]> listOfFields = new ArrayList<>(objectsCount);
+			for (int objectIndex = 0; objectIndex < objectsCount; objectIndex++) {
+				listOfFields.add(new Field[attributes.length]);
+			}
+
+			for (int attributeIndex = 0; attributeIndex < attributes.length; attributeIndex++) {
+				if (columnLengths[attributeIndex] > Integer.MAX_VALUE) {
+					throw new IOException("Column "+attributeIndex+" of snapshot is too large to be mapped.");
+				}
+				MappedByteBuffer column = channel.map(FileChannel.MapMode.READ_ONLY, columnOffsets[attributeIndex], columnLengths[attributeIndex]);
+				if (!readColumn(column, columnTypes[attributeIndex], attributes[attributeIndex], attributeIndex, listOfFields)) {
+					return null;
+				}
+			}
+
+			return new InformationTable(attributes, listOfFields);
+		}
+	}
+
+	/**
+	 * Reads single column of a snapshot, setting fields of given attribute in consecutive objects.
+	 * Fields of enumeration attributes are shared among objects having the same value.
+	 *
+	 * @param column buffer with column data
+	 * @param columnType type of the column
+	 * @param attribute attribute whose values are stored in the column
+	 * @param attributeIndex index of the attribute
+	 * @param listOfFields fields of consecutive objects
+	 * @return {@code false} if type of the column does not match attribute
+	 */
+	static boolean readColumn(ByteBuffer column, byte columnType, Attribute attribute, int attributeIndex, List<Field[]> listOfFields) {
+		int objectsCount = listOfFields.size();
+		if (getColumnType(attribute, null) != columnType && !(attribute instanceof IdentificationAttribute)) {
+			return false;
+		}
+
+		long[] missing = new long[(objectsCount + 63) >>> 6];
+		for (int i = 0; i < missing.length; i++) {
+			missing[i] = column.getLong();
+		}
+
+		AttributePreferenceType preferenceType = null;
+		UnknownSimpleField missingValue = null;
+		ElementList elementList = null;
+		Field[] enumerationFields = null;
+		if (attribute instanceof EvaluationAttribute) {
+			preferenceType = ((EvaluationAttribute)attribute).getPreferenceType();
+			missingValue = ((EvaluationAttribute)attribute).getMissingValueType();
+			if (columnType == ENUMERATION_COLUMN) {
+				elementList = ((EnumerationField)((EvaluationAttribute)attribute).getValueType()).getElementList();
+				enumerationFields = new Field[elementList.getSize()];
+			}
+		}
+
+		Field field;
+		for (int objectIndex = 0; objectIndex < objectsCount; objectIndex++) {
+			boolean isMissing = (missing[objectIndex >>> 6] & (1L << (objectIndex & 63))) != 0L;
+			switch (columnType) {
+			case INTEGER_COLUMN:
+				int integerValue = column.getInt();
+				field = isMissing ? missingValue : IntegerFieldFactory.getInstance().create(integerValue, preferenceType);
+				break;
+			case REAL_COLUMN:
+				double realValue = column.getDouble();
+				field = isMissing ? missingValue : RealFieldFactory.getInstance().create(realValue, preferenceType);
+				break;
+			case ENUMERATION_COLUMN:
+				int code = column.getInt();
+				if (isMissing) {
+					field = missingValue;
+				} else {
+					if (enumerationFields[code] == null) {
+						enumerationFields[code] = EnumerationFieldFactory.getInstance().create(elementList, code, preferenceType);
+					}
+					field = enumerationFields[code];
+				}
+				break;
+			case TEXT_IDENTIFIER_COLUMN:
+				byte[] text = new byte[column.getInt()];
+				column.get(text);
+				field = new TextIdentificationField(new String(text, StandardCharsets.UTF_8));
+				break;
+			case UUID_IDENTIFIER_COLUMN:
+				field = new UUIDIdentificationField(new UUID(column.getLong(), column.getLong()));
+				break;
+			default:
+				return false;
+			}
+			listOfFields.get(objectIndex)[attributeIndex] = field;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Writes snapshot of objects supplied one by one, so objects do not have to be kept in memory.
+	 * Since snapshot is columnar, each column (bitmap of missing values and values) is first appended to its own temporary file.
+	 * When writer is closed, these files are concatenated after the header, in the layout of {@link InformationTableSnapshot#write(InformationTable, Path, String)},
+	 * and resulting file is moved to its final location.
+	 */
+	static final class ObjectStreamWriter implements AutoCloseable {
+		final Attribute[] attributes;
+		final Path snapshotPath;
+		final String key;
+		final byte[] columnTypes;
+		final ElementList[] elementLists;
+		final Path[] missingPaths;
+		final Path[] valuePaths;
+		final FileChannel[] missingChannels;
+		final FileChannel[] valueChannels;
+		final ByteBuffer[] missingBuffers;
+		final ByteBuffer[] valueBuffers;
+		final long[] missingWords;
+		int objectsCount = 0;
+		boolean closed = false;
+
+		/**
+		 * Constructs this writer.
+		 *
+		 * @param attributes attributes of written objects
+		 * @param snapshotPath path of snapshot file
+		 * @param key key stored in the snapshot
+		 *
+		 * @throws IOException if temporary files cannot be created
+		 * @throws IllegalArgumentException if some attribute cannot be stored in a snapshot
+		 */
+		ObjectStreamWriter(Attribute[] attributes, Path snapshotPath, String key) throws IOException {
+			int attributesCount = attributes.length;
+			this.attributes = attributes;
+			this.snapshotPath = snapshotPath;
+			this.key = key;
+			this.columnTypes = new byte[attributesCount];
+			this.elementLists = new ElementList[attributesCount];
+			this.missingPaths = new Path[attributesCount];
+			this.valuePaths = new Path[attributesCount];
+			this.missingChannels = new FileChannel[attributesCount];
+			this.valueChannels = new FileChannel[attributesCount];
+			this.missingBuffers = new ByteBuffer[attributesCount];
+			this.valueBuffers = new ByteBuffer[attributesCount];
+			this.missingWords = new long[attributesCount];
+
+			for (int attributeIndex = 0; attributeIndex < attributesCount; attributeIndex++) {
+				columnTypes[attributeIndex] = getColumnType(attributes[attributeIndex], null);
+				if (columnTypes[attributeIndex] < 0) {
+					throw new IllegalArgumentException("Attribute "+attributes[attributeIndex].getName()+" cannot be stored in a snapshot.");
+				}
+				if (columnTypes[attributeIndex] == ENUMERATION_COLUMN) {
+					elementLists[attributeIndex] = ((EnumerationField)((EvaluationAttribute)attributes[attributeIndex]).getValueType()).getElementList();
+				}
+			}
+
+			try {
+				for (int attributeIndex = 0; attributeIndex < attributesCount; attributeIndex++) {
+					missingPaths[attributeIndex] = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".missing" + attributeIndex + ".tmp");
+					valuePaths[attributeIndex] = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".values" + attributeIndex + ".tmp");
+					missingChannels[attributeIndex] = FileChannel.open(missingPaths[attributeIndex], StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE, StandardOpenOption.READ);
+					valueChannels[attributeIndex] = FileChannel.open(valuePaths[attributeIndex], StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE, StandardOpenOption.READ);
+					missingBuffers[attributeIndex] = ByteBuffer.allocateDirect(Math.max(WRITE_BUFFER_SIZE >>> 4, Long.BYTES));
+					valueBuffers[attributeIndex] = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE >>> 2);
+				}
+			} catch (IOException exception) {
+				deleteTemporaryFiles();
+				throw exception;
+			}
+		}
+
+		/**
+		 * Appends single object.
+		 *
+		 * @param values evaluations of the object, in the order of attributes ({@code null} or {@link ConvertCsv2Json#MISSING_VALUE_STRING} for missing ones)
+		 *
+		 * @throws IOException if object cannot be written
+		 * @throws IllegalArgumentException if some evaluation does not match type of its attribute
+		 */
+		void addObject(String[] values) throws IOException {
+			int bit = objectsCount & 63;
+			for (int attributeIndex = 0; attributeIndex < attributes.length; attributeIndex++) {
+				String value = values[attributeIndex];
+				boolean isMissing = value == null || ConvertCsv2Json.MISSING_VALUE_STRING.equals(value);
+				if (isMissing) {
+					missingWords[attributeIndex] |= 1L << bit;
+				}
+
+				FileChannel channel = valueChannels[attributeIndex];
+				ByteBuffer buffer = valueBuffers[attributeIndex];
+				try {
+					switch (columnTypes[attributeIndex]) {
+					case INTEGER_COLUMN:
+						ensureRemaining(channel, buffer, Integer.BYTES);
+						buffer.putInt(isMissing ? 0 : Integer.parseInt(value));
+						break;
+					case REAL_COLUMN:
+						ensureRemaining(channel, buffer, Double.BYTES);
+						buffer.putDouble(isMissing ? 0.0 : Double.parseDouble(value));
+						break;
+					case ENUMERATION_COLUMN:
+						int code = isMissing ? -1 : elementLists[attributeIndex].getIndex(value);
+						if (!isMissing && code < 0) {
+							throw new IllegalArgumentException("Value "+value+" does not belong to the domain of attribute "+attributes[attributeIndex].getName()+".");
+						}
+						ensureRemaining(channel, buffer, Integer.BYTES);
+						buffer.putInt(code);
+						break;
+					case TEXT_IDENTIFIER_COLUMN:
+						byte[] text = (isMissing ? "" : value).getBytes(StandardCharsets.UTF_8);
+						ensureRemaining(channel, buffer, Integer.BYTES);
+						buffer.putInt(text.length);
+						for (int offset = 0; offset < text.length; ) { //text may be longer than buffer
+							ensureRemaining(channel, buffer, 1);
+							int chunk = Math.min(buffer.remaining(), text.length - offset);
+							buffer.put(text, offset, chunk);
+							offset += chunk;
+						}
+						break;
+					case UUID_IDENTIFIER_COLUMN:
+						UUID uuid = isMissing ? new UUID(0L, 0L) : UUID.fromString(value);
+						ensureRemaining(channel, buffer, 2 * Long.BYTES);
+						buffer.putLong(uuid.getMostSignificantBits()).putLong(uuid.getLeastSignificantBits());
+						break;
+					}
+				} catch (NumberFormatException exception) {
+					throw new IllegalArgumentException("Value "+value+" does not match type of attribute "+attributes[attributeIndex].getName()+".", exception);
+				}
+
+				if (bit == 63) {
+					flushMissingWord(attributeIndex);
+				}
+			}
+			objectsCount++;
+		}
+
+		private void flushMissingWord(int attributeIndex) throws IOException {
+			ensureRemaining(missingChannels[attributeIndex], missingBuffers[attributeIndex], Long.BYTES);
+			missingBuffers[attributeIndex].putLong(missingWords[attributeIndex]);
+			missingWords[attributeIndex] = 0L;
+		}
+
+		/**
+		 * Gets number of objects written so far.
+		 *
+		 * @return number of written objects
+		 */
+		int getNumberOfObjects() {
+			return objectsCount;
+		}
+
+		/**
+		 * Completes snapshot file, and deletes temporary files.
+		 *
+		 * @throws IOException if snapshot cannot be written
+		 */
+		@Override
+		public void close() throws IOException {
+			if (closed) {
+				return;
+			}
+			closed = true;
+
+			int attributesCount = attributes.length;
+			Path temporaryPath = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp");
+			byte[] keyBytes = key.getBytes(StandardCharsets.US_ASCII);
+			int headerSize = 5 * Integer.BYTES + keyBytes.length + attributesCount * (1 + 2 * Long.BYTES);
+
+			try (FileChannel channel = FileChannel.open(temporaryPath, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+				ByteBuffer header = ByteBuffer.allocate(headerSize);
+				header.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(keyBytes.length).put(keyBytes).putInt(objectsCount).putInt(attributesCount);
+				long offset = headerSize;
+
+				for (int attributeIndex = 0; attributeIndex < attributesCount; attributeIndex++) {
+					if ((objectsCount & 63) != 0) {
+						flushMissingWord(attributeIndex); //last, incomplete word
+					}
+					flush(missingChannels[attributeIndex], missingBuffers[attributeIndex]);
+					flush(valueChannels[attributeIndex], valueBuffers[attributeIndex]);
+					long length = missingChannels[attributeIndex].size() + valueChannels[attributeIndex].size();
+					header.put(columnTypes[attributeIndex]).putLong(offset).putLong(length);
+					offset += length;
+				}
+
+				header.flip();
+				while (header.hasRemaining()) {
+					channel.write(header);
+				}
+				for (int attributeIndex = 0; attributeIndex < attributesCount; attributeIndex++) {
+					transfer(missingChannels[attributeIndex], channel);
+					transfer(valueChannels[attributeIndex], channel);
+				}
+			} finally {
+				deleteTemporaryFiles();
+			}
+
+			Files.move(temporaryPath, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+
+		private static void transfer(FileChannel source, FileChannel target) throws IOException {
+			long size = source.size();
+			for (long position = 0; position < size; ) {
+				position += source.transferTo(position, size - position, target);
+			}
+		}
+
+		private void deleteTemporaryFiles() throws IOException {
+			for (int attributeIndex = 0; attributeIndex < attributes.length; attributeIndex++) {
+				for (FileChannel channel : new FileChannel[] {missingChannels[attributeIndex], valueChannels[attributeIndex]}) {
+					if (channel != null) {
+						channel.close();
+					}
+				}
+				for (Path path : new Path[] {missingPaths[attributeIndex], valuePaths[attributeIndex]}) {
+					if (path != null) {
+						Files.deleteIfExists(path);
+					}
+				}
+			}
+		}
+	}
+
+}
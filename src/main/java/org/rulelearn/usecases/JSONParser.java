@@ -0,0 +1,200 @@
+/**
+ * Copyright (C) Jerzy Błaszczyński, Marcin Szeląg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rulelearn.usecases;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal parser of JSON documents. Objects are parsed to {@link LinkedHashMap} maps, arrays to {@link List} lists, strings to {@link String} strings,
+ * numbers to {@link BigDecimal} numbers (so long seeds are not rounded), literals to {@link Boolean} values and {@code null}.
+ *
+ * @author Marcin Szeląg (<a href="mailto:marcin.szelag@cs.put.poznan.pl">marcin.szelag@cs.put.poznan.pl</a>)
+ */
+final class JSONParser {
+	final String text;
+	int position = 0;
+
+	JSONParser(String text) {
+		this.text = text;
+	}
+
+	/**
+	 * Parses whole text as a single JSON value.
+	 *
+	 * @return parsed value
+	 * @throws IllegalArgumentException if text is not a valid JSON document
+	 */
+	Object parse() {
+		Object value = parseValue();
+		skipWhitespace();
+		if (position < text.length()) {
+			throw error("Unexpected content after JSON value");
+		}
+		return value;
+	}
+
+	Object parseValue() {
+		skipWhitespace();
+		if (position >= text.length()) {
+			throw error("Unexpected end of JSON document");
+		}
+		char c = text.charAt(position);
+		switch (c) {
+		case '{':
+			return parseObject();
+		case '[':
+			return parseArray();
+		case '"':
+			return parseString();
+		case 't':
+			return parseLiteral("true", Boolean.TRUE);
+		case 'f':
+			return parseLiteral("false", Boolean.FALSE);
+		case 'n':
+			return parseLiteral("null", null);
+		default:
+			return parseNumber();
+		}
+	}
+
+	Map<String, Object> parseObject() {
+		Map<String, Object> object = new LinkedHashMap<>();
+		position++; //skip {
+		skipWhitespace();
+		if (peek() == '}') {
+			position++;
+			return object;
+		}
+		while (true) {
+			skipWhitespace();
+			if (peek() != '"') {
+				throw error("Expected name of object member");
+			}
+			String name = parseString();
+			skipWhitespace();
+			expect(':');
+			object.put(name, parseValue());
+			skipWhitespace();
+			if (peek() == ',') {
+				position++;
+			} else {
+				expect('}');
+				return object;
+			}
+		}
+	}
+
+	List<Object> parseArray() {
+		List<Object> array = new ArrayList<>();
+		position++; //skip [
+		skipWhitespace();
+		if (peek() == ']') {
+			position++;
+			return array;
+		}
+		while (true) {
+			array.add(parseValue());
+			skipWhitespace();
+			if (peek() == ',') {
+				position++;
+			} else {
+				expect(']');
+				return array;
+			}
+		}
+	}
+
+	String parseString() {
+		StringBuilder builder = new StringBuilder();
+		position++; //skip opening quote
+		while (true) {
+			if (position >= text.length()) {
+				throw error("Unterminated string");
+			}
+			char c = text.charAt(position++);
+			if (c == '"') {
+				return builder.toString();
+			} else if (c == '\\') {
+				if (position >= text.length()) {
+					throw error("Unterminated string");
+				}
+				char escaped = text.charAt(position++);
+				switch (escaped) {
+				case 'b': builder.append('\b'); break;
+				case 'f': builder.append('\f'); break;
+				case 'n': builder.append('\n'); break;
+				case 'r': builder.append('\r'); break;
+				case 't': builder.append('\t'); break;
+				case 'u':
+					if (position + 4 > text.length()) {
+						throw error("Invalid unicode escape");
+					}
+					builder.append((char)Integer.parseInt(text.substring(position, position + 4), 16));
+					position += 4;
+					break;
+				default: builder.append(escaped); //", \, /
+				}
+			} else {
+				builder.append(c);
+			}
+		}
+	}
+
+	Object parseLiteral(String literal, Object value) {
+		if (!text.startsWith(literal, position)) {
+			throw error("Unexpected character");
+		}
+		position += literal.length();
+		return value;
+	}
+
+	BigDecimal parseNumber() {
+		int start = position;
+		while (position < text.length() && "+-0123456789.eE".indexOf(text.charAt(position)) >= 0) {
+			position++;
+		}
+		try {
+			return new BigDecimal(text.substring(start, position));
+		} catch (NumberFormatException exception) {
+			throw error("Invalid number");
+		}
+	}
+
+	void skipWhitespace() {
+		while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+			position++;
+		}
+	}
+
+	char peek() {
+		return position < text.length() ? text.charAt(position) : '\0';
+	}
+
+	void expect(char c) {
+		if (peek() != c) {
+			throw error("Expected '"+c+"'");
+		}
+		position++;
+	}
+
+	IllegalArgumentException error(String message) {
+		return new IllegalArgumentException(message+" at position "+position+".");
+	}
+}
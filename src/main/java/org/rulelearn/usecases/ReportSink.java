@@ -0,0 +1,487 @@
+/**
+ * Copyright (C) Jerzy Błaszczyński, Marcin Szeląg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rulelearn.usecases;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.rulelearn.data.Decision;
+import org.rulelearn.validation.OrdinalMisclassificationMatrix;
+
+/**
+ * Asynchronous sink of reports of an analysis. Threads performing calculations (e.g., processing cross-validation folds) only enqueue structured events,
+ * which are rendered by a single daemon thread, in the order of submission, and written in batches. Each event is written to the console as text,
+ * and structured events (fold started, rules generated, misclassification matrix calculated) are also written to optional result files in CSV and JSON Lines format.
+ * <br>
+ * Any code writing directly to the system output, after submitting events to this sink, should first call {@link #flush()}, so the output is not interleaved.
+ *
+ * @author Marcin Szeląg (<a href="mailto:marcin.szelag@cs.put.poznan.pl">marcin.szelag@cs.put.poznan.pl</a>)
+ */
+public class ReportSink implements AutoCloseable {
+
+	/**
+	 * Columns of CSV result file, being also the keys of fields of structured events.
+	 */
+	static final String[] CSV_COLUMNS = {"time", "event", "label", "seed", "fold", "foldsCount", "trainObjects", "testObjects",
+			"rules", "durationMs", "accuracy", "mae", "rmse", "gmean", "correct", "incorrect"};
+	static final char CSV_SEPARATOR = ';';
+	static final int BATCH_SIZE = 1024;
+	static final int BUFFER_SIZE = 1 << 16;
+
+	/**
+	 * Event reported to this sink.
+	 */
+	abstract static class Event {
+		final long time = System.currentTimeMillis();
+
+		/**
+		 * Writes this event to the console.
+		 *
+		 * @param console console writer
+		 * @throws IOException if event cannot be written
+		 */
+		abstract void writeText(Writer console) throws IOException;
+
+		/**
+		 * Gets fields of this event, written to result files.
+		 *
+		 * @return map from column name to value, or {@code null} if this event is not written to result files
+		 */
+		Map<String, Object> getFields() {
+			return null;
+		}
+
+		Map<String, Object> createFields(String event) {
+			Map<String, Object> fields = new LinkedHashMap<>();
+			fields.put("time", time);
+			fields.put("event", event);
+			return fields;
+		}
+	}
+
+	static final class MessageEvent extends Event {
+		final String message;
+
+		MessageEvent(String message) {
+			this.message = message;
+		}
+
+		@Override
+		void writeText(Writer console) throws IOException {
+			console.write(message);
+			console.write(System.lineSeparator());
+		}
+	}
+
+	static final class FoldStartedEvent extends Event {
+		final long seed;
+		final int foldIndex;
+		final int foldsCount;
+		final int trainObjects;
+		final int testObjects;
+
+		FoldStartedEvent(long seed, int foldIndex, int foldsCount, int trainObjects, int testObjects) {
+			this.seed = seed;
+			this.foldIndex = foldIndex;
+			this.foldsCount = foldsCount;
+			this.trainObjects = trainObjects;
+			this.testObjects = testObjects;
+		}
+
+		@Override
+		void writeText(Writer console) throws IOException {
+			console.write("Starting fold "+foldIndex+"/"+foldsCount+" (seed="+seed+"): train="+trainObjects+", test="+testObjects+" objects.");
+			console.write(System.lineSeparator());
+		}
+
+		@Override
+		Map<String, Object> getFields() {
+			Map<String, Object> fields = createFields("fold-started");
+			fields.put("seed", seed);
+			fields.put("fold", foldIndex);
+			fields.put("foldsCount", foldsCount);
+			fields.put("trainObjects", trainObjects);
+			fields.put("testObjects", testObjects);
+			return fields;
+		}
+	}
+
+	static final class RulesGeneratedEvent extends Event {
+		final String comment;
+		final int rulesCount;
+		final long duration;
+
+		RulesGeneratedEvent(String comment, int rulesCount, long duration) {
+			this.comment = comment;
+			this.rulesCount = rulesCount;
+			this.duration = duration;
+		}
+
+		@Override
+		void writeText(Writer console) throws IOException {
+			console.write(comment+"Rules' generation time [ms]: "+duration);
+			console.write(System.lineSeparator());
+		}
+
+		@Override
+		Map<String, Object> getFields() {
+			Map<String, Object> fields = createFields("rules-generated");
+			fields.put("label", comment.trim());
+			fields.put("rules", rulesCount);
+			fields.put("durationMs", duration);
+			return fields;
+		}
+	}
+
+	static final class MatrixCalculatedEvent extends Event {
+		final String label;
+		final OrdinalMisclassificationMatrix misclassificationMatrix;
+		final Decision[] orderOfDecisions;
+		final int decisionAttributeIndex;
+
+		MatrixCalculatedEvent(String label, OrdinalMisclassificationMatrix misclassificationMatrix, Decision[] orderOfDecisions, int decisionAttributeIndex) {
+			this.label = label;
+			this.misclassificationMatrix = misclassificationMatrix;
+			this.orderOfDecisions = orderOfDecisions;
+			this.decisionAttributeIndex = decisionAttributeIndex;
+		}
+
+		@Override
+		void writeText(Writer console) throws IOException {
+			StringBuilder text = new StringBuilder(256 + 96 * orderOfDecisions.length * orderOfDecisions.length);
+			String lineSeparator = System.lineSeparator();
+
+			text.append("Accuracy: ").append(misclassificationMatrix.getAccuracy()).append(lineSeparator);
+			text.append("MAE: ").append(misclassificationMatrix.getMAE()).append(lineSeparator);
+			text.append("RMSE: ").append(misclassificationMatrix.getRMSE()).append(lineSeparator);
+			text.append("GMean: ").append(misclassificationMatrix.getGmean()).append(lineSeparator);
+			text.append("Number of correct assignments: ").append(misclassificationMatrix.getNumberOfCorrectAssignments()).append(lineSeparator);
+			text.append("Number of incorrect assignments: ").append(misclassificationMatrix.getNumberOfIncorrectAssignments()).append(lineSeparator);
+			text.append("Number of objects with assigned decision: ").append(misclassificationMatrix.getNumberObjectsWithAssignedDecision()).append(lineSeparator);
+
+			for (int i = 0; i < orderOfDecisions.length; i++) {
+				for (int j = 0; j < orderOfDecisions.length; j++) {
+					text.append("Misclassification matrix cell for row '").append(orderOfDecisions[i].getEvaluation(decisionAttributeIndex))
+						.append("' and column '").append(orderOfDecisions[j].getEvaluation(decisionAttributeIndex)).append("': ")
+						.append(misclassificationMatrix.getValue(orderOfDecisions[i], orderOfDecisions[j])).append(lineSeparator);
+				}
+			}
+			console.append(text);
+		}
+
+		@Override
+		Map<String, Object> getFields() {
+			Map<String, Object> fields = createFields("matrix-calculated");
+			fields.put("label", label);
+			fields.put("accuracy", misclassificationMatrix.getAccuracy());
+			fields.put("mae", misclassificationMatrix.getMAE());
+			fields.put("rmse", misclassificationMatrix.getRMSE());
+			fields.put("gmean", misclassificationMatrix.getGmean());
+			fields.put("correct", misclassificationMatrix.getNumberOfCorrectAssignments());
+			fields.put("incorrect", misclassificationMatrix.getNumberOfIncorrectAssignments());
+			return fields;
+		}
+	}
+
+	/**
+	 * Event ending the writing thread.
+	 */
+	static final class CloseEvent extends Event {
+		@Override
+		void writeText(Writer console) {
+			//nothing to write
+		}
+	}
+
+	/**
+	 * Event requesting that all previous events are written, and that waiting threads are notified.
+	 */
+	static final class FlushEvent extends Event {
+		final CountDownLatch written = new CountDownLatch(1);
+
+		@Override
+		void writeText(Writer console) {
+			//nothing to write
+		}
+	}
+
+	final BlockingQueue<Event> events = new LinkedBlockingQueue<>();
+	final Writer console;
+	final Writer csvWriter;
+	final Writer jsonWriter;
+	Thread writerThread = null;
+	boolean closed = false;
+
+	/**
+	 * Constructs sink writing only to the console.
+	 */
+	public ReportSink() {
+		this((Writer)null, (Writer)null);
+	}
+
+	/**
+	 * Constructs sink writing to the console, and to given result files (overwritten if they exist).
+	 *
+	 * @param csvFilePath path to CSV result file, or {@code null} if results should not be written in CSV format
+	 * @param jsonFilePath path to JSON Lines result file, or {@code null} if results should not be written in JSON format
+	 *
+	 * @throws IOException if any result file cannot be created
+	 */
+	public ReportSink(String csvFilePath, String jsonFilePath) throws IOException {
+		this(csvFilePath != null ? openResultFile(csvFilePath) : null, jsonFilePath != null ? openResultFile(jsonFilePath) : null);
+
+		if (csvWriter != null) {
+			csvWriter.write(String.join(String.valueOf(CSV_SEPARATOR), CSV_COLUMNS));
+			csvWriter.write('\n');
+		}
+	}
+
+	/**
+	 * Constructs sink writing to the console, and to given result writers.
+	 *
+	 * @param csvWriter writer of CSV results, or {@code null}
+	 * @param jsonWriter writer of JSON Lines results, or {@code null}
+	 */
+	ReportSink(Writer csvWriter, Writer jsonWriter) {
+		this.console = new BufferedWriter(new OutputStreamWriter(System.out), BUFFER_SIZE); //not closed, as it would close System.out
+		this.csvWriter = csvWriter;
+		this.jsonWriter = jsonWriter;
+	}
+
+	private static Writer openResultFile(String filePath) throws IOException {
+		Path path = Paths.get(filePath);
+		if (path.getParent() != null) {
+			Files.createDirectories(path.getParent());
+		}
+		return Files.newBufferedWriter(path, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Reports a line of text, written only to the console.
+	 *
+	 * @param message line of text
+	 */
+	public void message(String message) {
+		report(new MessageEvent(message));
+	}
+
+	/**
+	 * Reports start of processing of a cross-validation fold.
+	 *
+	 * @param seed random generator seed of the cross-validation
+	 * @param foldIndex index of the fold (starting from 1)
+	 * @param foldsCount number of folds
+	 * @param trainObjects number of objects in train data
+	 * @param testObjects number of objects in test data
+	 */
+	public void foldStarted(long seed, int foldIndex, int foldsCount, int trainObjects, int testObjects) {
+		report(new FoldStartedEvent(seed, foldIndex, foldsCount, trainObjects, testObjects));
+	}
+
+	/**
+	 * Reports generation of rules.
+	 *
+	 * @param comment introductory comment concerning the run of rule generation algorithm
+	 * @param rulesCount number of generated rules
+	 * @param duration duration of rule generation [ms]
+	 */
+	public void rulesGenerated(String comment, int rulesCount, long duration) {
+		report(new RulesGeneratedEvent(comment, rulesCount, duration));
+	}
+
+	/**
+	 * Reports calculation of a misclassification matrix. Matrix is rendered by the writing thread, so it should not be modified afterwards.
+	 *
+	 * @param label label of the matrix (e.g., "reclassification")
+	 * @param misclassificationMatrix misclassification matrix
+	 * @param orderOfDecisions order of decisions (and thus order of rows and columns of the matrix)
+	 * @param decisionAttributeIndex index of decision attribute, used to print decisions
+	 */
+	public void matrixCalculated(String label, OrdinalMisclassificationMatrix misclassificationMatrix, Decision[] orderOfDecisions, int decisionAttributeIndex) {
+		report(new MatrixCalculatedEvent(label, misclassificationMatrix, orderOfDecisions, decisionAttributeIndex));
+	}
+
+	/**
+	 * Enqueues given event, starting writing thread if necessary. Does not wait for the event to be written.
+	 *
+	 * @param event reported event
+	 * @throws IllegalStateException if this sink has been closed
+	 */
+	synchronized void report(Event event) {
+		if (closed) {
+			throw new IllegalStateException("Report sink has been closed.");
+		}
+		if (writerThread == null) {
+			writerThread = new Thread(this::writeEvents, "report-sink");
+			writerThread.setDaemon(true);
+			writerThread.start();
+		}
+		events.add(event);
+	}
+
+	/**
+	 * Waits until all events reported so far are written.
+	 */
+	public void flush() {
+		FlushEvent flushEvent = new FlushEvent();
+		synchronized (this) {
+			if (closed || writerThread == null) {
+				return;
+			}
+			report(flushEvent);
+		}
+		try {
+			flushEvent.written.await();
+		} catch (InterruptedException exception) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Writes all reported events, and closes result files. No events can be reported afterwards.
+	 *
+	 * @throws IOException if result files cannot be closed
+	 */
+	@Override
+	public void close() throws IOException {
+		Thread thread;
+		synchronized (this) {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			thread = writerThread;
+			if (thread != null) {
+				events.add(new CloseEvent()); //last event, as no events can be reported after closing
+			}
+		}
+		if (thread != null) {
+			try {
+				thread.join();
+			} catch (InterruptedException exception) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		if (csvWriter != null) {
+			csvWriter.close();
+		}
+		if (jsonWriter != null) {
+			jsonWriter.close();
+		}
+	}
+
+	/**
+	 * Main loop of writing thread. Takes available events in batches, and flushes all writers after each batch, until the sink is closed.
+	 */
+	void writeEvents() {
+		List<Event> batch = new ArrayList<>(BATCH_SIZE);
+		List<FlushEvent> flushEvents = new ArrayList<>();
+
+		boolean closing = false;
+
+		while (!closing) {
+			try {
+				batch.add(events.take());
+			} catch (InterruptedException exception) {
+				return;
+			}
+			events.drainTo(batch, BATCH_SIZE - 1);
+
+			try {
+				for (Event event : batch) {
+					if (event instanceof FlushEvent) {
+						flushEvents.add((FlushEvent)event);
+					} else if (event instanceof CloseEvent) {
+						closing = true;
+					} else {
+						write(event);
+					}
+				}
+				console.flush();
+				if (csvWriter != null) {
+					csvWriter.flush();
+				}
+				if (jsonWriter != null) {
+					jsonWriter.flush();
+				}
+			} catch (IOException | RuntimeException exception) {
+				exception.printStackTrace();
+			}
+
+			for (FlushEvent flushEvent : flushEvents) {
+				flushEvent.written.countDown();
+			}
+			batch.clear();
+			flushEvents.clear();
+		}
+	}
+
+	void write(Event event) throws IOException {
+		event.writeText(console);
+
+		Map<String, Object> fields = event.getFields();
+		if (fields == null) {
+			return;
+		}
+
+		if (csvWriter != null) {
+			for (int i = 0; i < CSV_COLUMNS.length; i++) {
+				Object value = fields.get(CSV_COLUMNS[i]);
+				if (i > 0) {
+					csvWriter.write(CSV_SEPARATOR);
+				}
+				if (value instanceof String) {
+					csvWriter.write('"' + ((String)value).replace("\"", "\"\"") + '"');
+				} else if (value != null) {
+					csvWriter.write(value.toString());
+				}
+			}
+			csvWriter.write('\n');
+		}
+
+		if (jsonWriter != null) {
+			StringBuilder json = new StringBuilder(256).append('{');
+			for (Map.Entry<String, Object> field : fields.entrySet()) {
+				if (json.length() > 1) {
+					json.append(", ");
+				}
+				json.append('"').append(field.getKey()).append("\": ");
+				if (field.getValue() instanceof String) {
+					json.append('"').append(ConvertCsv2Json.escape((String)field.getValue())).append('"'); //also control characters, e.g., line breaks in messages
+				} else if (field.getValue() instanceof Double && !Double.isFinite((Double)field.getValue())) {
+					json.append("null");
+				} else {
+					json.append(field.getValue());
+				}
+			}
+			jsonWriter.write(json.append("}\n").toString());
+		}
+	}
+
+}
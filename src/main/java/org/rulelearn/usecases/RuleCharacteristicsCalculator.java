@@ -0,0 +1,94 @@
+/**
+ * Copyright (C) Jerzy Błaszczyński, Marcin Szeląg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rulelearn.usecases;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import org.rulelearn.approximations.ClassicalDominanceBasedRoughSetCalculator;
+import org.rulelearn.approximations.Union;
+import org.rulelearn.approximations.Union.UnionType;
+import org.rulelearn.approximations.UnionsWithSingleLimitingDecision;
+import org.rulelearn.approximations.VCDominanceBasedRoughSetCalculator;
+import org.rulelearn.data.InformationTableWithDecisionDistributions;
+import org.rulelearn.data.SimpleDecision;
+import org.rulelearn.measures.dominance.EpsilonConsistencyMeasure;
+import org.rulelearn.rules.Rule;
+import org.rulelearn.rules.RuleCoverageInformation;
+import org.rulelearn.rules.RuleSemantics;
+import org.rulelearn.rules.RuleSet;
+import org.rulelearn.rules.RuleSetWithComputableCharacteristics;
+
+/**
+ * Calculates characteristics of rules of a {@link RuleSet rule set} (e.g., read from a RuleML file), with respect to a learning information table.
+ * Each union of decision classes that is a decision part of some rule is looked up only once, and then shared by all rules concerning that union.
+ * Coverage information and characteristics of different rules are calculated in parallel, as they are independent of each other.
+ *
+ * @author Marcin Szeląg (<a href="mailto:marcin.szelag@cs.put.poznan.pl">marcin.szelag@cs.put.poznan.pl</a>)
+ */
+public class RuleCharacteristicsCalculator {
+
+	/**
+	 * Transforms given rule set to rule set with computable characteristics.
+	 *
+	 * @param informationTableWithDecisionDistributions learning information table
+	 * @param ruleSet rule set (possibly without characteristics)
+	 * @param consistencyThreshold consistency threshold for which rules have been induced
+	 * @param calculateAllCharacteristics tells if all characteristics should be calculated immediately (otherwise, they are calculated when first requested)
+	 *
+	 * @return rule set with computable characteristics, with learning information table hash copied from given rule set
+	 */
+	public static RuleSetWithComputableCharacteristics calculate(InformationTableWithDecisionDistributions informationTableWithDecisionDistributions, RuleSet ruleSet,
+			double consistencyThreshold, boolean calculateAllCharacteristics) {
+		UnionsWithSingleLimitingDecision unions = new UnionsWithSingleLimitingDecision(informationTableWithDecisionDistributions,
+				consistencyThreshold == 0.0 ?
+						new ClassicalDominanceBasedRoughSetCalculator() :
+						new VCDominanceBasedRoughSetCalculator(EpsilonConsistencyMeasure.getInstance(), consistencyThreshold));
+
+		int rulesCount = ruleSet.size();
+		Rule[] rules = new Rule[rulesCount];
+		Union[] ruleUnions = new Union[rulesCount];
+		Map<UnionType, Map<SimpleDecision, Union>> unionCache = new EnumMap<>(UnionType.class); //only a few unions, so they are looked up sequentially
+		UnionType unionType;
+
+		for (int i = 0; i < rulesCount; i++) {
+			rules[i] = ruleSet.getRule(i);
+			unionType = (rules[i].getSemantics() == RuleSemantics.AT_LEAST ? UnionType.AT_LEAST : UnionType.AT_MOST);
+			SimpleDecision limitingDecision = new SimpleDecision(rules[i].getDecision().getLimitingEvaluation(), rules[i].getDecision().getAttributeWithContext().getAttributeIndex());
+			final UnionType ruleUnionType = unionType;
+
+			ruleUnions[i] = unionCache.computeIfAbsent(unionType, type -> new HashMap<>())
+					.computeIfAbsent(limitingDecision, decision -> unions.getUnion(ruleUnionType, decision));
+		}
+
+		RuleCoverageInformation[] ruleCoverageInformationArray = new RuleCoverageInformation[rulesCount];
+		IntStream.range(0, rulesCount).parallel().forEach(i ->
+				ruleCoverageInformationArray[i] = new RuleCoverageInformation(rules[i], informationTableWithDecisionDistributions, ruleUnions[i]));
+
+		RuleSetWithComputableCharacteristics ruleSetWithComputableCharacteristics = new RuleSetWithComputableCharacteristics(rules, ruleCoverageInformationArray);
+
+		if (calculateAllCharacteristics) {
+			//characteristics of each rule are created on first request and stored under rule's index, so different rules can be processed by different threads
+			IntStream.range(0, rulesCount).parallel().forEach(i -> ruleSetWithComputableCharacteristics.getRuleCharacteristics(i).calculateAllCharacteristics());
+		}
+		ruleSetWithComputableCharacteristics.setLearningInformationTableHash(ruleSet.getLearningInformationTableHash()); //copy learning information table hash!
+
+		return ruleSetWithComputableCharacteristics;
+	}
+
+}
@@ -0,0 +1,223 @@
+/**
+ * Copyright (C) Jerzy Błaszczyński, Marcin Szeląg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rulelearn.usecases;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.stream.IntStream;
+
+import org.rulelearn.data.InformationTable;
+import org.rulelearn.rules.RuleSet;
+
+/**
+ * Index of objects covered by each rule of a {@link RuleSet rule set}. Coverage of each rule is stored as a bitset indexed by object index,
+ * and is calculated only once: rules covering each object are found in parallel by a {@link RuleSetIndex rule set index} evaluating
+ * {@link ColumnarInformationTable columnar view} of the information table, and are then transposed into coverage of each rule, in parallel for different rules.
+ * Covering counts, objects covered by exactly one rule, and the matrix of covering rules are then derived using bitwise operations.
+ *
+ * @author Marcin Szeląg (<a href="mailto:marcin.szelag@cs.put.poznan.pl">marcin.szelag@cs.put.poznan.pl</a>)
+ */
+public class RuleCoverageIndex {
+
+	final int objectsCount;
+	final BitSet[] coveredObjects; //indexed by rule index
+
+	/**
+	 * Character denoting that an object is covered by a rule, in exported matrix.
+	 */
+	static final char COVERED = 'T';
+
+	/**
+	 * Character ending each cell of exported matrix.
+	 */
+	static final char CELL_SEPARATOR = ';';
+
+	/**
+	 * Constructs this index for given bitsets.
+	 *
+	 * @param objectsCount number of objects in the indexed information table
+	 * @param coveredObjects bitsets of objects covered by consecutive rules
+	 */
+	RuleCoverageIndex(int objectsCount, BitSet[] coveredObjects) {
+		this.objectsCount = objectsCount;
+		this.coveredObjects = coveredObjects;
+	}
+
+	/**
+	 * Calculates coverage of all rules from given rule set, in parallel.
+	 *
+	 * @param ruleSet rule set
+	 * @param informationTable information table containing objects to be covered by rules
+	 * @return coverage index
+	 */
+	public static RuleCoverageIndex of(RuleSet ruleSet, InformationTable informationTable) {
+		int objectsCount = informationTable.getNumberOfObjects();
+		BitSet[] coveredObjects = new BitSet[ruleSet.size()];
+		RuleSetIndex ruleSetIndex = RuleSetIndex.of(ruleSet);
+		ColumnarInformationTable columnarInformationTable = ColumnarInformationTable.of(informationTable);
+		BitSet[] coveringRules = new BitSet[objectsCount]; //indexed by object index
+
+		IntStream.range(0, objectsCount).parallel().forEach(objectIndex -> coveringRules[objectIndex] = ruleSetIndex.getCoveringRules(objectIndex, columnarInformationTable));
+		IntStream.range(0, coveredObjects.length).parallel().forEach(ruleIndex -> {
+			BitSet covered = new BitSet(objectsCount);
+			for (int objectIndex = 0; objectIndex < objectsCount; objectIndex++) {
+				if (coveringRules[objectIndex].get(ruleIndex)) {
+					covered.set(objectIndex);
+				}
+			}
+			coveredObjects[ruleIndex] = covered;
+		});
+
+		return new RuleCoverageIndex(objectsCount, coveredObjects);
+	}
+
+	/**
+	 * Gets number of indexed objects.
+	 *
+	 * @return number of indexed objects
+	 */
+	public int getObjectsCount() {
+		return objectsCount;
+	}
+
+	/**
+	 * Gets number of indexed rules.
+	 *
+	 * @return number of indexed rules
+	 */
+	public int getRulesCount() {
+		return coveredObjects.length;
+	}
+
+	/**
+	 * Gets objects covered by rule with given index. Returned bitset should not be modified.
+	 *
+	 * @param ruleIndex index of a rule
+	 * @return bitset of indices of objects covered by the rule
+	 */
+	public BitSet getCoveredObjects(int ruleIndex) {
+		return coveredObjects[ruleIndex];
+	}
+
+	/**
+	 * Tells if given object is covered by given rule.
+	 *
+	 * @param ruleIndex index of a rule
+	 * @param objectIndex index of an object
+	 * @return {@code true} if the object is covered by the rule
+	 */
+	public boolean covers(int ruleIndex, int objectIndex) {
+		return coveredObjects[ruleIndex].get(objectIndex);
+	}
+
+	/**
+	 * Gets number of objects covered by given rule.
+	 *
+	 * @param ruleIndex index of a rule
+	 * @return number of objects covered by the rule
+	 */
+	public int getCoveredObjectsCount(int ruleIndex) {
+		return coveredObjects[ruleIndex].cardinality();
+	}
+
+	/**
+	 * Calculates, for each object, the number of rules covering it.
+	 *
+	 * @return array of covering rules counts, indexed by object index
+	 */
+	public int[] getCoveringRulesCounts() {
+		int[] coveringRulesCounts = new int[objectsCount];
+		for (BitSet covered : coveredObjects) {
+			for (int objectIndex = covered.nextSetBit(0); objectIndex >= 0; objectIndex = covered.nextSetBit(objectIndex + 1)) {
+				coveringRulesCounts[objectIndex]++;
+			}
+		}
+		return coveringRulesCounts;
+	}
+
+	/**
+	 * Calculates objects covered by exactly one rule.
+	 *
+	 * @return bitset of indices of objects covered by exactly one rule
+	 */
+	public BitSet getObjectsCoveredByOneRule() {
+		BitSet coveredAtLeastOnce = new BitSet(objectsCount);
+		BitSet coveredAtLeastTwice = new BitSet(objectsCount);
+		BitSet coveredAgain;
+
+		for (BitSet covered : coveredObjects) {
+			coveredAgain = (BitSet)covered.clone();
+			coveredAgain.and(coveredAtLeastOnce);
+			coveredAtLeastTwice.or(coveredAgain);
+			coveredAtLeastOnce.or(covered);
+		}
+
+		coveredAtLeastOnce.andNot(coveredAtLeastTwice);
+		return coveredAtLeastOnce;
+	}
+
+	/**
+	 * Calculates, for each object covered by exactly one rule, the index of that rule.
+	 * Rules covering at least one object on their own are necessary to cover all objects covered by the whole rule set.
+	 *
+	 * @return array indexed by object index, containing index of the only rule covering an object, or -1 if object is covered by zero or several rules
+	 */
+	public int[] getSoleCoveringRules() {
+		BitSet objectsCoveredByOneRule = getObjectsCoveredByOneRule();
+		int[] soleCoveringRules = new int[objectsCount];
+		Arrays.fill(soleCoveringRules, -1);
+
+		if (!objectsCoveredByOneRule.isEmpty()) {
+			IntStream.range(0, coveredObjects.length).parallel().forEach(ruleIndex -> { //each object is written by at most one rule
+				BitSet covered = (BitSet)coveredObjects[ruleIndex].clone();
+				covered.and(objectsCoveredByOneRule);
+				for (int objectIndex = covered.nextSetBit(0); objectIndex >= 0; objectIndex = covered.nextSetBit(objectIndex + 1)) {
+					soleCoveringRules[objectIndex] = ruleIndex;
+				}
+			});
+		}
+
+		return soleCoveringRules;
+	}
+
+	/**
+	 * Writes a 2D matrix indexed by object index (rows) and rule index (columns), containing "T" if corresponding object is covered by corresponding rule.
+	 * Each cell is ended by ";", and each row by a line separator.
+	 *
+	 * @param writer destination of the matrix (should be buffered)
+	 * @throws IOException if matrix cannot be written
+	 */
+	public void writeCoverageMatrix(Writer writer) throws IOException {
+		int rulesCount = coveredObjects.length;
+		char[] row = new char[2 * rulesCount];
+		String lineSeparator = System.lineSeparator();
+
+		for (int objectIndex = 0; objectIndex < objectsCount; objectIndex++) {
+			int length = 0;
+			for (int ruleIndex = 0; ruleIndex < rulesCount; ruleIndex++) {
+				if (coveredObjects[ruleIndex].get(objectIndex)) {
+					row[length++] = COVERED;
+				}
+				row[length++] = CELL_SEPARATOR;
+			}
+			writer.write(row, 0, length);
+			writer.write(lineSeparator);
+		}
+	}
+
+}
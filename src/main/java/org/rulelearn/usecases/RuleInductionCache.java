@@ -0,0 +1,236 @@
+/**
+ * Copyright (C) Jerzy Błaszczyński, Marcin Szeląg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rulelearn.usecases;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.rulelearn.data.InformationTable;
+import org.rulelearn.data.InformationTableWithDecisionDistributions;
+import org.rulelearn.rules.RuleSet;
+import org.rulelearn.rules.RuleSetWithComputableCharacteristics;
+import org.rulelearn.wrappers.VCDomLEMWrapper;
+
+/**
+ * Disk cache of rules induced by {@link VCDomLEMWrapper}. Each entry is a gzipped RuleML file, keyed by a SHA-256 hash of the hash of the learning information table,
+ * the consistency threshold, and the version of ruleLearn library, so it is never used for different data, parameters, or algorithm implementation.
+ * On a cache hit, rules are read back, and their characteristics are calculated again for the learning information table, which is much cheaper than rule induction.
+ * Cache size is bounded; when it is exceeded, least recently used entries are deleted.
+ * <br>
+ * Cache can be used concurrently by several threads (e.g., processing different cross-validation folds), as entries are written to temporary files and then moved atomically.
+ *
+ * @author Marcin Szeląg (<a href="mailto:marcin.szelag@cs.put.poznan.pl">marcin.szelag@cs.put.poznan.pl</a>)
+ */
+public class RuleInductionCache {
+
+	/**
+	 * Default maximal total size of cache entries, in bytes.
+	 */
+	public static final long DEFAULT_MAX_SIZE = 256L << 20;
+
+	static final int FORMAT_VERSION = 1;
+	static final String ENTRY_FILE_EXTENSION = ".rules.xml" + RuleMLStreamWriter.GZIP_EXTENSION;
+	static final String TEMPORARY_FILE_EXTENSION = ".tmp";
+	static final int ACT_INDEX = 1;
+
+	static final String RULE_LEARN_VERSION = getRuleLearnVersion();
+
+	final Path cacheDirectory;
+	final long maxSize;
+
+	/**
+	 * Constructs this cache with default maximal size.
+	 *
+	 * @param cacheDirectoryPath path to directory where cache entries are stored; created if it does not exist
+	 */
+	public RuleInductionCache(String cacheDirectoryPath) {
+		this(cacheDirectoryPath, DEFAULT_MAX_SIZE);
+	}
+
+	/**
+	 * Constructs this cache.
+	 *
+	 * @param cacheDirectoryPath path to directory where cache entries are stored; created if it does not exist
+	 * @param maxSize maximal total size of cache entries, in bytes
+	 *
+	 * @throws IllegalArgumentException if maximal size is negative
+	 */
+	public RuleInductionCache(String cacheDirectoryPath, long maxSize) {
+		if (maxSize < 0) {
+			throw new IllegalArgumentException("Maximal size of cache cannot be negative.");
+		}
+		this.cacheDirectory = Paths.get(cacheDirectoryPath);
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * Gets rules with characteristics for given data and consistency threshold, either from this cache, or by inducing them with {@link VCDomLEMWrapper}
+	 * (and then storing in this cache). Returned rule set is stamped with the hash of given information table.
+	 * Problems with reading or writing cache entries are reported, but do not prevent rule induction.
+	 *
+	 * @param informationTable the data
+	 * @param consistencyThreshold threshold for measure epsilon
+	 * @return rule set with characteristics
+	 */
+	public RuleSetWithComputableCharacteristics induceRulesWithCharacteristics(InformationTable informationTable, double consistencyThreshold) {
+		String learningInformationTableHash = informationTable.getHash();
+		Path entryPath = cacheDirectory.resolve(calculateKey(learningInformationTableHash, consistencyThreshold) + ENTRY_FILE_EXTENSION);
+
+		if (Files.isRegularFile(entryPath)) {
+			try {
+				RuleSet ruleSet = (new RuleMLStreamReader(informationTable.getAttributes(), RuleMLStreamReader.DEFAULT_CHUNK_SIZE, 1)).read(entryPath.toString(), ACT_INDEX); //sequentially, as cache is read by parallel fold workers
+				if (ruleSet != null && learningInformationTableHash.equals(ruleSet.getLearningInformationTableHash())) {
+					Files.setLastModifiedTime(entryPath, FileTime.fromMillis(System.currentTimeMillis())); //mark entry as recently used
+					return RuleCharacteristicsCalculator.calculate(informationTable instanceof InformationTableWithDecisionDistributions ?
+							(InformationTableWithDecisionDistributions)informationTable : new InformationTableWithDecisionDistributions(informationTable, true), ruleSet, consistencyThreshold, false);
+				}
+			} catch (IOException | RuntimeException exception) { //broken entry, or entry deleted by another thread
+				System.out.println("Ignoring cached rules "+entryPath+": "+exception); //!
+			}
+		}
+
+		RuleSetWithComputableCharacteristics ruleSetWithCharacteristics = (new VCDomLEMWrapper()).induceRulesWithCharacteristics(informationTable, consistencyThreshold);
+		ruleSetWithCharacteristics.setLearningInformationTableHash(learningInformationTableHash);
+
+		try {
+			put(entryPath, ruleSetWithCharacteristics);
+			evict();
+		} catch (IOException exception) {
+			exception.printStackTrace();
+		}
+
+		return ruleSetWithCharacteristics;
+	}
+
+	/**
+	 * Writes given rules to a temporary file, and then moves it to given cache entry.
+	 *
+	 * @param entryPath path to cache entry
+	 * @param ruleSet rules to store
+	 *
+	 * @throws IOException if rules cannot be written
+	 */
+	void put(Path entryPath, RuleSet ruleSet) throws IOException {
+		Files.createDirectories(cacheDirectory);
+		Path temporaryPath = Files.createTempFile(cacheDirectory, entryPath.getFileName().toString(), TEMPORARY_FILE_EXTENSION);
+		try {
+			try (OutputStream outputStream = Files.newOutputStream(temporaryPath)) {
+				(new RuleMLStreamWriter()).write(ruleSet, ACT_INDEX, outputStream, true);
+			}
+			Files.move(temporaryPath, entryPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(temporaryPath);
+		}
+	}
+
+	/**
+	 * Deletes least recently used cache entries, until total size of remaining entries does not exceed maximal size of this cache.
+	 *
+	 * @throws IOException if cache directory cannot be listed
+	 */
+	synchronized void evict() throws IOException {
+		List<Path> entries = new ArrayList<>();
+		List<Long> lastUses = new ArrayList<>();
+		long totalSize = 0L;
+
+		try (DirectoryStream<Path> entryPaths = Files.newDirectoryStream(cacheDirectory, "*" + ENTRY_FILE_EXTENSION)) {
+			for (Path entryPath : entryPaths) {
+				try {
+					totalSize += Files.size(entryPath);
+					entries.add(entryPath);
+					lastUses.add(Files.getLastModifiedTime(entryPath).toMillis());
+				} catch (IOException exception) {
+					//entry deleted in the meantime
+				}
+			}
+		}
+
+		Integer[] order = new Integer[entries.size()];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, (i, j) -> Long.compare(lastUses.get(i), lastUses.get(j))); //least recently used first
+
+		for (int i = 0; i < order.length && totalSize > maxSize; i++) {
+			Path entryPath = entries.get(order[i]);
+			try {
+				long size = Files.size(entryPath);
+				Files.deleteIfExists(entryPath);
+				totalSize -= size;
+			} catch (IOException exception) {
+				//entry deleted in the meantime
+			}
+		}
+	}
+
+	/**
+	 * Calculates key of cache entry.
+	 *
+	 * @param learningInformationTableHash hash of learning information table
+	 * @param consistencyThreshold threshold for measure epsilon
+	 * @return hexadecimal SHA-256 hash
+	 */
+	static String calculateKey(String learningInformationTableHash, double consistencyThreshold) {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException exception) {
+			throw new IllegalStateException(exception);
+		}
+
+		digest.update((FORMAT_VERSION+"\n"+learningInformationTableHash+"\n"+Double.doubleToLongBits(consistencyThreshold)+"\n"+RULE_LEARN_VERSION).getBytes(StandardCharsets.UTF_8));
+
+		StringBuilder key = new StringBuilder(64);
+		for (byte b : digest.digest()) {
+			key.append(String.format("%02X", b));
+		}
+		return key.toString();
+	}
+
+	/**
+	 * Gets version of ruleLearn library, taken from the manifest of its jar, or from the name of that jar (e.g., rulelearn-0.25.0-rc.10.jar).
+	 *
+	 * @return version of ruleLearn library, or "unknown" if it cannot be determined
+	 */
+	static String getRuleLearnVersion() {
+		String version = VCDomLEMWrapper.class.getPackage() != null ? VCDomLEMWrapper.class.getPackage().getImplementationVersion() : null;
+		if (version != null) {
+			return version;
+		}
+
+		CodeSource codeSource = VCDomLEMWrapper.class.getProtectionDomain().getCodeSource();
+		if (codeSource != null && codeSource.getLocation() != null) {
+			String location = codeSource.getLocation().getPath();
+			return location.substring(location.lastIndexOf('/', location.length() - 2) + 1); //file name of jar (or class directory)
+		}
+
+		return "unknown";
+	}
+
+}
@@ -0,0 +1,366 @@
+/**
+ * Copyright (C) Jerzy Błaszczyński, Marcin Szeląg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rulelearn.usecases;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPInputStream;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.rulelearn.data.Attribute;
+import org.rulelearn.rules.Rule;
+import org.rulelearn.rules.RuleCharacteristics;
+import org.rulelearn.rules.RuleSetWithCharacteristics;
+import org.rulelearn.rules.ruleml.RuleParser;
+
+/**
+ * Reads rules (along with their characteristics) from a single act of a RuleML file, in a streaming fashion.
+ * File is scanned with a StAX parser; acts other than the selected one are skipped without decoding their rules.
+ * {@code <assert>} blocks of the selected act are grouped into chunks, which are decoded in parallel by {@link RuleParser}
+ * (so rules are decoded exactly as when reading the whole file), and then joined in their original order. Reader with a single thread decodes chunks in the calling thread,
+ * without creating a thread pool (e.g., when it is used by threads that already run in parallel).
+ * Files with names ending with ".gz" are decompressed on the fly.
+ *
+ * @author Marcin Szeląg (<a href="mailto:marcin.szelag@cs.put.poznan.pl">marcin.szelag@cs.put.poznan.pl</a>)
+ */
+public class RuleMLStreamReader {
+
+	/**
+	 * Default number of {@code <assert>} blocks decoded as a single chunk.
+	 */
+	public static final int DEFAULT_CHUNK_SIZE = 256;
+
+	static final String RULEML_NAMESPACE = "http://ruleml.org/spec";
+	static final String ACT_ELEMENT = "act";
+	static final String ASSERT_ELEMENT = "assert";
+	static final String INDEX_ATTRIBUTE = "index";
+	static final String HASH_ATTRIBUTE = "learningDataHash";
+	static final int BUFFER_SIZE = 1 << 16;
+
+	final Attribute[] attributes;
+	final int chunkSize;
+	final int threadsCount;
+
+	/**
+	 * Constructs this reader with default chunk size, using all available processors.
+	 *
+	 * @param attributes attributes used to decode rule conditions
+	 */
+	public RuleMLStreamReader(Attribute[] attributes) {
+		this(attributes, DEFAULT_CHUNK_SIZE, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Constructs this reader.
+	 *
+	 * @param attributes attributes used to decode rule conditions
+	 * @param chunkSize number of {@code <assert>} blocks decoded as a single chunk
+	 * @param threadsCount number of threads decoding chunks; 1 means that chunks are decoded sequentially, by the calling thread
+	 *
+	 * @throws IllegalArgumentException if chunk size or number of threads is not positive
+	 */
+	public RuleMLStreamReader(Attribute[] attributes, int chunkSize, int threadsCount) {
+		if (chunkSize < 1 || threadsCount < 1) {
+			throw new IllegalArgumentException("Chunk size and number of threads have to be positive.");
+		}
+		this.attributes = attributes;
+		this.chunkSize = chunkSize;
+		this.threadsCount = threadsCount;
+	}
+
+	/**
+	 * Reads rules from given act of a RuleML file.
+	 *
+	 * @param rulesFilePath path to RuleML file (possibly compressed with gzip, if its name ends with ".gz")
+	 * @param actIndex index of the act to read
+	 * @return rule set with characteristics, or {@code null} if there is no act with given index
+	 *
+	 * @throws IOException if file cannot be read or has invalid format
+	 */
+	public RuleSetWithCharacteristics read(String rulesFilePath, int actIndex) throws IOException {
+		InputStream inputStream = new BufferedInputStream(Files.newInputStream(Paths.get(rulesFilePath)), BUFFER_SIZE);
+		if (rulesFilePath.endsWith(RuleMLStreamWriter.GZIP_EXTENSION)) {
+			inputStream = new GZIPInputStream(inputStream, BUFFER_SIZE);
+		}
+
+		try (InputStream ruleMLStream = inputStream) {
+			return read(ruleMLStream, actIndex);
+		}
+	}
+
+	/**
+	 * Reads rules from given act of a RuleML document.
+	 *
+	 * @param inputStream input stream with RuleML document (not closed by this method)
+	 * @param actIndex index of the act to read
+	 * @return rule set with characteristics, or {@code null} if there is no act with given index
+	 *
+	 * @throws IOException if document cannot be read, has invalid format, or its rules cannot be decoded
+	 */
+	public RuleSetWithCharacteristics read(InputStream inputStream, int actIndex) throws IOException {
+		XMLInputFactory xmlInputFactory = XMLInputFactory.newInstance();
+		xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+
+		ExecutorService executor = threadsCount > 1 ? Executors.newFixedThreadPool(threadsCount, runnable -> {
+			Thread thread = new Thread(runnable, "ruleml-reader");
+			thread.setDaemon(true);
+			return thread;
+		}) : null; //chunks decoded by the calling thread
+
+		try {
+			XMLStreamReader reader = xmlInputFactory.createXMLStreamReader(inputStream);
+			try {
+				while (reader.hasNext()) {
+					if (reader.next() == XMLStreamConstants.START_ELEMENT && ACT_ELEMENT.equals(reader.getLocalName())) {
+						if (String.valueOf(actIndex).equals(reader.getAttributeValue(null, INDEX_ATTRIBUTE))) {
+							return readAct(reader, actIndex, reader.getAttributeValue(null, HASH_ATTRIBUTE), executor);
+						} else {
+							skipElement(reader); //do not decode rules from other acts
+						}
+					}
+				}
+				return null;
+			} finally {
+				reader.close();
+			}
+		} catch (XMLStreamException exception) {
+			throw new IOException("Invalid RuleML document.", exception);
+		} catch (RuntimeException exception) { //failure of decoding a chunk
+			throw new IOException("Unable to decode rules from RuleML document.", exception);
+		} finally {
+			if (executor != null) {
+				executor.shutdownNow();
+			}
+		}
+	}
+
+	/**
+	 * Reads consecutive {@code <assert>} blocks of current act, submitting chunks of these blocks for decoding.
+	 * The number of chunks waiting for decoding is limited, so memory usage does not grow with the size of the file.
+	 *
+	 * @param reader StAX reader positioned at the start of the act
+	 * @param actIndex index of the act
+	 * @param learningDataHash hash of learning data, read from the act (may be {@code null})
+	 * @param executor executor decoding chunks, or {@code null} if chunks should be decoded by the calling thread
+	 * @return rule set with characteristics
+	 *
+	 * @throws XMLStreamException if document has invalid format
+	 */
+	RuleSetWithCharacteristics readAct(XMLStreamReader reader, int actIndex, String learningDataHash, ExecutorService executor) throws XMLStreamException {
+		String chunkStart = "<RuleML xmlns=\"" + RULEML_NAMESPACE + "\">\n<act " + INDEX_ATTRIBUTE + "=\"" + actIndex + "\""
+				+ (learningDataHash != null ? " " + HASH_ATTRIBUTE + "=\"" + escape(learningDataHash, true) + "\"" : "") + ">\n";
+		String chunkEnd = "</act>\n</RuleML>\n";
+		int maxPendingChunks = 2 * threadsCount;
+
+		List<Future<RuleSetWithCharacteristics>> futures = new ArrayList<>();
+		List<RuleSetWithCharacteristics> chunks = new ArrayList<>();
+		StringBuilder chunk = new StringBuilder(chunkStart);
+		int assertsCount = 0;
+
+		while (reader.hasNext()) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT && ASSERT_ELEMENT.equals(reader.getLocalName())) {
+				copyElement(reader, chunk);
+				chunk.append('\n');
+				if (++assertsCount == chunkSize) {
+					futures.add(submit(executor, chunk.append(chunkEnd).toString()));
+					chunk.setLength(0);
+					chunk.append(chunkStart);
+					assertsCount = 0;
+
+					while (futures.size() - chunks.size() > maxPendingChunks) { //wait for decoding of the oldest pending chunk
+						chunks.add(CrossValidationEngine.getResult(futures.get(chunks.size())));
+					}
+				}
+			} else if (event == XMLStreamConstants.END_ELEMENT && ACT_ELEMENT.equals(reader.getLocalName())) {
+				break;
+			}
+		}
+		if (assertsCount > 0) {
+			futures.add(submit(executor, chunk.append(chunkEnd).toString()));
+		}
+		while (chunks.size() < futures.size()) {
+			chunks.add(CrossValidationEngine.getResult(futures.get(chunks.size())));
+		}
+
+		return join(chunks, learningDataHash);
+	}
+
+	/**
+	 * Submits decoding of a chunk.
+	 *
+	 * @param executor executor decoding chunks, or {@code null} if chunk should be decoded by the calling thread
+	 * @param chunkRuleML RuleML document with a single act containing a chunk of {@code <assert>} blocks
+	 * @return future decoded rule set
+	 */
+	Future<RuleSetWithCharacteristics> submit(ExecutorService executor, String chunkRuleML) {
+		if (executor == null) {
+			return CompletableFuture.completedFuture(decode(chunkRuleML));
+		}
+		return executor.submit(() -> decode(chunkRuleML));
+	}
+
+	/**
+	 * Decodes a chunk.
+	 *
+	 * @param chunkRuleML RuleML document with a single act containing a chunk of {@code <assert>} blocks
+	 * @return decoded rule set
+	 *
+	 * @throws IllegalStateException if rules cannot be decoded
+	 */
+	RuleSetWithCharacteristics decode(String chunkRuleML) {
+		Map<Integer, RuleSetWithCharacteristics> rules = (new RuleParser(attributes)).parseRulesWithCharacteristics(
+				new ByteArrayInputStream(chunkRuleML.getBytes(StandardCharsets.UTF_8)));
+		if (rules == null || rules.isEmpty()) {
+			throw new IllegalStateException("Unable to decode rules from RuleML file.");
+		}
+		return rules.values().iterator().next();
+	}
+
+	/**
+	 * Joins decoded chunks into a single rule set.
+	 *
+	 * @param chunks decoded chunks, in the order of rules
+	 * @param learningDataHash hash of learning data (may be {@code null})
+	 * @return rule set with characteristics containing rules from all chunks
+	 */
+	static RuleSetWithCharacteristics join(List<RuleSetWithCharacteristics> chunks, String learningDataHash) {
+		int rulesCount = 0;
+		for (RuleSetWithCharacteristics chunk : chunks) {
+			rulesCount += chunk.size();
+		}
+
+		Rule[] rules = new Rule[rulesCount];
+		RuleCharacteristics[] ruleCharacteristics = new RuleCharacteristics[rulesCount];
+		int ruleIndex = 0;
+		for (RuleSetWithCharacteristics chunk : chunks) {
+			for (int i = 0; i < chunk.size(); i++) {
+				rules[ruleIndex] = chunk.getRule(i);
+				ruleCharacteristics[ruleIndex] = chunk.getRuleCharacteristics(i);
+				ruleIndex++;
+			}
+		}
+
+		RuleSetWithCharacteristics ruleSet = new RuleSetWithCharacteristics(rules, ruleCharacteristics);
+		ruleSet.setLearningInformationTableHash(learningDataHash);
+		return ruleSet;
+	}
+
+	/**
+	 * Copies current element (with all its contents) as XML text. Elements are written without namespace prefix, as RuleML uses a default namespace.
+	 *
+	 * @param reader StAX reader positioned at the start of an element; after return, it is positioned at the end of this element
+	 * @param builder builder to which element is appended
+	 *
+	 * @throws XMLStreamException if document has invalid format
+	 */
+	static void copyElement(XMLStreamReader reader, StringBuilder builder) throws XMLStreamException {
+		int depth = 0;
+		do {
+			switch (reader.getEventType()) {
+			case XMLStreamConstants.START_ELEMENT:
+				builder.append('<').append(reader.getLocalName());
+				for (int i = 0; i < reader.getAttributeCount(); i++) {
+					builder.append(' ').append(reader.getAttributeLocalName(i)).append("=\"").append(escape(reader.getAttributeValue(i), true)).append('"');
+				}
+				builder.append('>');
+				depth++;
+				break;
+			case XMLStreamConstants.END_ELEMENT:
+				builder.append("</").append(reader.getLocalName()).append('>');
+				depth--;
+				break;
+			case XMLStreamConstants.CHARACTERS:
+			case XMLStreamConstants.CDATA:
+			case XMLStreamConstants.SPACE:
+				builder.append(escape(reader.getText(), false));
+				break;
+			default: //comments and processing instructions are skipped
+				break;
+			}
+			if (depth > 0) {
+				reader.next();
+			}
+		} while (depth > 0);
+	}
+
+	/**
+	 * Skips current element (with all its contents).
+	 *
+	 * @param reader StAX reader positioned at the start of an element; after return, it is positioned at the end of this element
+	 * @throws XMLStreamException if document has invalid format
+	 */
+	static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+		int depth = 1;
+		while (depth > 0) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				depth++;
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				depth--;
+			}
+		}
+	}
+
+	/**
+	 * Escapes XML special characters.
+	 *
+	 * @param text text to escape
+	 * @param attribute indicates if text is a value of an attribute
+	 * @return escaped text
+	 */
+	static String escape(String text, boolean attribute) {
+		StringBuilder builder = null;
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			String replacement = null;
+			switch (c) {
+			case '<': replacement = "&lt;"; break;
+			case '>': replacement = "&gt;"; break;
+			case '&': replacement = "&amp;"; break;
+			case '"': replacement = attribute ? "&quot;" : null; break;
+			default: break;
+			}
+			if (replacement != null) {
+				if (builder == null) {
+					builder = new StringBuilder(text.length() + 16).append(text, 0, i);
+				}
+				builder.append(replacement);
+			} else if (builder != null) {
+				builder.append(c);
+			}
+		}
+		return builder != null ? builder.toString() : text;
+	}
+
+}
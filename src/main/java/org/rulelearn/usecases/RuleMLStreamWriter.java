@@ -0,0 +1,201 @@
+/**
+ * Copyright (C) Jerzy Błaszczyński, Marcin Szeląg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rulelearn.usecases;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.zip.GZIPOutputStream;
+
+import org.rulelearn.rules.Rule;
+import org.rulelearn.rules.RuleCharacteristics;
+import org.rulelearn.rules.RuleSet;
+import org.rulelearn.rules.RuleSetWithCharacteristics;
+import org.rulelearn.rules.ruleml.RuleMLBuilder;
+
+/**
+ * Writes rules (and their characteristics, if present) in RuleML format, directly to a buffered output stream.
+ * Rules are serialized by {@link RuleMLBuilder} in small chunks, and {@code <assert>} blocks of each chunk are written as soon as they are built,
+ * so the whole document is never kept in memory. Produced document is the same as the one returned by {@link RuleMLBuilder#toRuleMLString(RuleSet, int)}.
+ * Output can be optionally compressed with gzip.
+ *
+ * @author Marcin Szeląg (<a href="mailto:marcin.szelag@cs.put.poznan.pl">marcin.szelag@cs.put.poznan.pl</a>)
+ */
+public class RuleMLStreamWriter {
+
+	/**
+	 * Default number of rules serialized at once.
+	 */
+	public static final int DEFAULT_CHUNK_SIZE = 256;
+
+	/**
+	 * Extension of file names for which output is compressed with gzip.
+	 */
+	public static final String GZIP_EXTENSION = ".gz";
+
+	static final String ASSERT_START_TAG = "<assert>";
+	static final String ASSERT_END_TAG = "</assert>";
+	static final int BUFFER_SIZE = 1 << 16;
+
+	final RuleMLBuilder ruleMLBuilder = new RuleMLBuilder();
+	final int chunkSize;
+
+	/**
+	 * Constructs this writer with default chunk size.
+	 */
+	public RuleMLStreamWriter() {
+		this(DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * Constructs this writer.
+	 *
+	 * @param chunkSize number of rules serialized at once
+	 * @throws IllegalArgumentException if chunk size is not positive
+	 */
+	public RuleMLStreamWriter(int chunkSize) {
+		if (chunkSize < 1) {
+			throw new IllegalArgumentException("Chunk size has to be positive.");
+		}
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * Writes given rules to a file. If file name ends with {@link #GZIP_EXTENSION}, written document is compressed with gzip.
+	 *
+	 * @param ruleSet set of rules (possibly along with their characteristics)
+	 * @param actIndex index of RuleML act
+	 * @param ruleMLFilePath path to disk file where rules should be written
+	 *
+	 * @throws IOException if rules cannot be written
+	 */
+	public void write(RuleSet ruleSet, int actIndex, String ruleMLFilePath) throws IOException {
+		try (OutputStream outputStream = Files.newOutputStream(Paths.get(ruleMLFilePath))) {
+			write(ruleSet, actIndex, outputStream, ruleMLFilePath.endsWith(GZIP_EXTENSION));
+		}
+	}
+
+	/**
+	 * Writes given rules to an output stream. Given stream is flushed, but not closed.
+	 *
+	 * @param ruleSet set of rules (possibly along with their characteristics)
+	 * @param actIndex index of RuleML act
+	 * @param outputStream output stream
+	 * @param gzip indicates if written document should be compressed with gzip
+	 *
+	 * @throws IOException if rules cannot be written
+	 */
+	public void write(RuleSet ruleSet, int actIndex, OutputStream outputStream, boolean gzip) throws IOException {
+		GZIPOutputStream gzipOutputStream = gzip ? new GZIPOutputStream(new UnclosedOutputStream(outputStream), BUFFER_SIZE) : null;
+		Writer writer = new BufferedWriter(new OutputStreamWriter(gzip ? gzipOutputStream : new BufferedOutputStream(new UnclosedOutputStream(outputStream), BUFFER_SIZE),
+				StandardCharsets.UTF_8), BUFFER_SIZE);
+
+		int rulesCount = ruleSet.size();
+		String suffix = null;
+
+		if (rulesCount == 0) {
+			writer.write(ruleMLBuilder.toRuleMLString(ruleSet, actIndex));
+		} else {
+			for (int fromIndex = 0; fromIndex < rulesCount; fromIndex += chunkSize) {
+				String chunkRuleML = ruleMLBuilder.toRuleMLString(getChunk(ruleSet, fromIndex, Math.min(fromIndex + chunkSize, rulesCount)), actIndex);
+				int bodyStart = chunkRuleML.indexOf(ASSERT_START_TAG);
+				int bodyEnd = chunkRuleML.lastIndexOf(ASSERT_END_TAG);
+				if (bodyStart < 0 || bodyEnd < bodyStart) {
+					throw new IOException("Unexpected RuleML document layout.");
+				}
+				bodyEnd += ASSERT_END_TAG.length();
+
+				if (suffix == null) { //first chunk
+					writer.write(chunkRuleML, 0, bodyStart);
+					suffix = chunkRuleML.substring(bodyEnd);
+				} else {
+					writer.write('\n'); //separates blocks of consecutive chunks, as RuleMLBuilder separates blocks of consecutive rules
+				}
+				writer.write(chunkRuleML, bodyStart, bodyEnd - bodyStart);
+			}
+			writer.write(suffix);
+		}
+
+		writer.close(); //closes only wrappers, finishing gzip stream; given stream is just flushed
+	}
+
+	/**
+	 * Gets subset of rules from given rule set, keeping their characteristics and hash of learning information table.
+	 *
+	 * @param ruleSet set of rules (possibly along with their characteristics)
+	 * @param fromIndex index of the first rule (inclusive)
+	 * @param toIndex index of the last rule (exclusive)
+	 * @return rule set containing rules with indices from the given range
+	 */
+	static RuleSet getChunk(RuleSet ruleSet, int fromIndex, int toIndex) {
+		Rule[] rules = new Rule[toIndex - fromIndex];
+		for (int i = fromIndex; i < toIndex; i++) {
+			rules[i - fromIndex] = ruleSet.getRule(i);
+		}
+
+		RuleSet chunk;
+		if (ruleSet instanceof RuleSetWithCharacteristics) {
+			RuleCharacteristics[] ruleCharacteristics = new RuleCharacteristics[rules.length];
+			for (int i = fromIndex; i < toIndex; i++) {
+				ruleCharacteristics[i - fromIndex] = ((RuleSetWithCharacteristics)ruleSet).getRuleCharacteristics(i);
+			}
+			chunk = new RuleSetWithCharacteristics(rules, ruleCharacteristics);
+		} else {
+			chunk = new RuleSet(rules);
+		}
+		chunk.setLearningInformationTableHash(ruleSet.getLearningInformationTableHash());
+
+		return chunk;
+	}
+
+	/**
+	 * Output stream that flushes, but does not close, wrapped stream when it is closed.
+	 */
+	static final class UnclosedOutputStream extends OutputStream {
+		final OutputStream outputStream;
+
+		UnclosedOutputStream(OutputStream outputStream) {
+			this.outputStream = outputStream;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			outputStream.write(b);
+		}
+
+		@Override
+		public void write(byte[] bytes, int offset, int length) throws IOException {
+			outputStream.write(bytes, offset, length);
+		}
+
+		@Override
+		public void flush() throws IOException {
+			outputStream.flush();
+		}
+
+		@Override
+		public void close() throws IOException {
+			outputStream.flush();
+		}
+	}
+
+}
@@ -0,0 +1,335 @@
+/**
+ * Copyright (C) Jerzy Błaszczyński, Marcin Szeląg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rulelearn.usecases;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.rulelearn.data.AttributePreferenceType;
+import org.rulelearn.data.InformationTable;
+import org.rulelearn.rules.Condition;
+import org.rulelearn.rules.ConditionAtLeast;
+import org.rulelearn.rules.ConditionAtMost;
+import org.rulelearn.rules.Rule;
+import org.rulelearn.rules.RuleSet;
+import org.rulelearn.types.EnumerationField;
+import org.rulelearn.types.EvaluationField;
+import org.rulelearn.types.Field;
+import org.rulelearn.types.IntegerField;
+import org.rulelearn.types.KnownSimpleField;
+import org.rulelearn.types.RealField;
+
+/**
+ * Compiled index of conditions of rules from a {@link RuleSet rule set}, used to find rules that may cover an object without checking each rule.
+ * <br>
+ * "At least" and "at most" conditions with known limiting evaluations are grouped by attribute and condition type. Within a group, distinct limiting evaluations
+ * are sorted from the weakest to the strongest one, so an evaluation satisfies a prefix of them, found by binary search. For each prefix length,
+ * the index stores a bitset of rules not violating any condition of the group. Candidate rules for an object are then the intersection of these bitsets over all groups.
+ * <br>
+ * Objects are read from a {@link ColumnarInformationTable columnar view} of an information table. If limiting evaluations of a group are integer (or enumeration) or real ones,
+ * and the attribute of the group has a column of the same kind, binary search compares primitive column elements with primitive limiting evaluations,
+ * in the direction following from the condition type and the preference type of the attribute. Otherwise, and for objects with missing evaluation on the attribute,
+ * the evaluation is read from the viewed table. If an object has unknown evaluation on an indexed attribute,
+ * conditions of the group are checked one by one, as unknown evaluation need not satisfy a prefix of conditions.
+ * <br>
+ * Candidates are a superset of covering rules: rules whose other conditions (e.g., equality conditions) are not indexed remain candidates,
+ * and should still be checked by {@link Rule#covers(int, InformationTable)}. {@link #getCoveringRules(int, ColumnarInformationTable)} performs this check,
+ * but only for candidate rules having a condition that is not indexed, as for other candidates all conditions have already been checked by the index.
+ * <br>
+ * The index does not depend on the data whose objects are matched, and is immutable, so it can be shared by several threads.
+ *
+ * @author Marcin Szeląg (<a href="mailto:marcin.szelag@cs.put.poznan.pl">marcin.szelag@cs.put.poznan.pl</a>)
+ */
+public class RuleSetIndex {
+
+	final RuleSet ruleSet;
+	final int rulesCount;
+	final BitSet allRules;
+	final BitSet partiallyIndexedRules; //rules having at least one condition that is not indexed
+	final ConditionGroup[] conditionGroups;
+
+	/**
+	 * Conditions of a single type concerning a single attribute.
+	 */
+	static final class ConditionGroup {
+		final int attributeIndex;
+		final Condition<? extends EvaluationField>[] thresholds; //conditions with distinct limiting evaluations, each one satisfied by limiting evaluations of all next ones
+		final BitSet[] rulesByThreshold; //rules containing condition with limiting evaluation of corresponding threshold
+		final BitSet[] satisfiedRules; //for k = 0, ..., thresholds.length, rules not violated by an evaluation satisfying exactly first k thresholds
+		final boolean atLeast; //true for "at least" conditions, false for "at most" ones
+		final double[] limits; //limiting evaluations of thresholds as numbers; null if they are not all integer (or enumeration) or all real ones, or if they are not monotone
+		final boolean integerLimits; //true if limits are integer or enumeration evaluations, false if they are real ones
+		final boolean increasingLimits; //true if limits increase from the weakest threshold (single threshold fits both directions)
+
+		ConditionGroup(int attributeIndex, Condition<? extends EvaluationField>[] thresholds, BitSet[] rulesByThreshold, BitSet allRules) {
+			this.attributeIndex = attributeIndex;
+			this.thresholds = thresholds;
+			this.rulesByThreshold = rulesByThreshold;
+			this.satisfiedRules = new BitSet[thresholds.length + 1];
+			this.atLeast = thresholds[0] instanceof ConditionAtLeast;
+
+			BitSet violatedRules = new BitSet(allRules.length());
+			satisfiedRules[thresholds.length] = allRules;
+			for (int k = thresholds.length - 1; k >= 0; k--) {
+				violatedRules.or(rulesByThreshold[k]);
+				satisfiedRules[k] = (BitSet)allRules.clone();
+				satisfiedRules[k].andNot(violatedRules);
+			}
+
+			double[] limits = new double[thresholds.length];
+			boolean integerLimits = isInteger(thresholds[0].getLimitingEvaluation());
+			for (int k = 0; k < thresholds.length && limits != null; k++) {
+				EvaluationField limitingEvaluation = thresholds[k].getLimitingEvaluation();
+				if (isInteger(limitingEvaluation) != integerLimits || !integerLimits && !(limitingEvaluation instanceof RealField)) {
+					limits = null;
+				} else {
+					limits[k] = limitingEvaluation instanceof IntegerField ? ((IntegerField)limitingEvaluation).getValue()
+							: (limitingEvaluation instanceof EnumerationField ? ((EnumerationField)limitingEvaluation).getValue() : ((RealField)limitingEvaluation).getValue());
+				}
+			}
+			boolean increasingLimits = limits == null || limits.length < 2 || limits[1] > limits[0];
+			for (int k = 1; k < thresholds.length && limits != null; k++) {
+				if (limits[k] == limits[k - 1] || (limits[k] > limits[k - 1]) != increasingLimits) {
+					limits = null; //order of thresholds is not numeric, so evaluations are always compared as fields
+				}
+			}
+			this.limits = limits;
+			this.integerLimits = integerLimits;
+			this.increasingLimits = increasingLimits;
+		}
+
+		static boolean isInteger(EvaluationField evaluation) {
+			return evaluation instanceof IntegerField || evaluation instanceof EnumerationField;
+		}
+
+		/**
+		 * Gets rules not violated by evaluation of given object on the attribute of this group. Returned bitset should not be modified.
+		 *
+		 * @param objectIndex index of an object
+		 * @param columnarInformationTable columnar view of an information table containing the object
+		 * @param allRules bitset of all rules
+		 * @return rules not violated by evaluation of given object
+		 */
+		BitSet getSatisfiedRules(int objectIndex, ColumnarInformationTable columnarInformationTable, BitSet allRules) {
+			if (limits != null && !columnarInformationTable.isMissing(objectIndex, attributeIndex)) {
+				AttributePreferenceType preferenceType = columnarInformationTable.getPreferenceType(attributeIndex);
+				boolean ascending = atLeast == (preferenceType == AttributePreferenceType.GAIN); //at least as good as threshold on a cost attribute means at most threshold
+				int[] integerColumn = integerLimits ? columnarInformationTable.getIntegerColumn(attributeIndex) : null;
+				double[] realColumn = integerLimits ? null : columnarInformationTable.getRealColumn(attributeIndex);
+
+				if ((integerColumn != null || realColumn != null) && (preferenceType == AttributePreferenceType.GAIN || preferenceType == AttributePreferenceType.COST)
+						&& (limits.length < 2 || ascending == increasingLimits)) {
+					double value = integerColumn != null ? integerColumn[objectIndex] : realColumn[objectIndex];
+					int low = 0;
+					int high = limits.length;
+					while (low < high) { //find number of satisfied thresholds
+						int middle = (low + high) >>> 1;
+						if (ascending ? value >= limits[middle] : value <= limits[middle]) {
+							low = middle + 1;
+						} else {
+							high = middle;
+						}
+					}
+					return satisfiedRules[low];
+				}
+			}
+
+			Field field = columnarInformationTable.getInformationTable().getField(objectIndex, attributeIndex);
+			return field instanceof EvaluationField ? getSatisfiedRules((EvaluationField)field, allRules) : allRules;
+		}
+
+		/**
+		 * Gets rules not violated by given evaluation. Returned bitset should not be modified.
+		 *
+		 * @param evaluation evaluation of an object on the attribute of this group
+		 * @param allRules bitset of all rules
+		 * @return rules not violated by given evaluation
+		 */
+		BitSet getSatisfiedRules(EvaluationField evaluation, BitSet allRules) {
+			if (evaluation instanceof KnownSimpleField) {
+				int low = 0;
+				int high = thresholds.length;
+				while (low < high) { //find number of satisfied thresholds
+					int middle = (low + high) >>> 1;
+					if (thresholds[middle].satisfiedBy(evaluation)) {
+						low = middle + 1;
+					} else {
+						high = middle;
+					}
+				}
+				return satisfiedRules[low];
+			} else {
+				BitSet satisfied = (BitSet)allRules.clone();
+				for (int k = 0; k < thresholds.length; k++) {
+					if (!thresholds[k].satisfiedBy(evaluation)) {
+						satisfied.andNot(rulesByThreshold[k]);
+					}
+				}
+				return satisfied;
+			}
+		}
+	}
+
+	/**
+	 * Constructs this index.
+	 *
+	 * @param ruleSet indexed rule set
+	 * @param allRules bitset of all indexed rules
+	 * @param partiallyIndexedRules bitset of rules having at least one condition that is not indexed
+	 * @param conditionGroups groups of indexed conditions
+	 */
+	RuleSetIndex(RuleSet ruleSet, BitSet allRules, BitSet partiallyIndexedRules, ConditionGroup[] conditionGroups) {
+		this.ruleSet = ruleSet;
+		this.rulesCount = ruleSet.size();
+		this.allRules = allRules;
+		this.partiallyIndexedRules = partiallyIndexedRules;
+		this.conditionGroups = conditionGroups;
+	}
+
+	/**
+	 * Compiles index of conditions of all rules from given rule set.
+	 *
+	 * @param ruleSet rule set
+	 * @return index of given rule set
+	 */
+	@SuppressWarnings("unchecked")
+	public static RuleSetIndex of(RuleSet ruleSet) {
+		int rulesCount = ruleSet.size();
+		BitSet allRules = new BitSet(rulesCount);
+		allRules.set(0, rulesCount);
+		BitSet partiallyIndexedRules = new BitSet(rulesCount);
+
+		Map<List<Object>, List<IndexedCondition>> groupedConditions = new LinkedHashMap<>(); //key is (attribute index, condition class)
+		for (int ruleIndex = 0; ruleIndex < rulesCount; ruleIndex++) {
+			for (Condition<? extends EvaluationField> condition : ruleSet.getRule(ruleIndex).getConditions()) {
+				if ((condition instanceof ConditionAtLeast || condition instanceof ConditionAtMost) && condition.getLimitingEvaluation() instanceof KnownSimpleField) {
+					groupedConditions.computeIfAbsent(Arrays.asList(condition.getAttributeWithContext().getAttributeIndex(), condition.getClass()), key -> new ArrayList<>())
+							.add(new IndexedCondition(ruleIndex, condition));
+				} else { //other conditions are not indexed, so they do not restrict candidate rules
+					partiallyIndexedRules.set(ruleIndex);
+				}
+			}
+		}
+
+		ConditionGroup[] conditionGroups = new ConditionGroup[groupedConditions.size()];
+		int groupIndex = 0;
+		for (Map.Entry<List<Object>, List<IndexedCondition>> entry : groupedConditions.entrySet()) {
+			List<IndexedCondition> conditions = entry.getValue();
+			conditions.sort(RuleSetIndex::compare); //from the weakest to the strongest condition
+
+			List<Condition<? extends EvaluationField>> thresholds = new ArrayList<>();
+			List<BitSet> rulesByThreshold = new ArrayList<>();
+			IndexedCondition previous = null;
+			for (IndexedCondition indexedCondition : conditions) {
+				if (previous == null || compare(previous, indexedCondition) != 0) {
+					thresholds.add(indexedCondition.condition);
+					rulesByThreshold.add(new BitSet(rulesCount));
+				}
+				rulesByThreshold.get(rulesByThreshold.size() - 1).set(indexedCondition.ruleIndex);
+				previous = indexedCondition;
+			}
+
+			conditionGroups[groupIndex++] = new ConditionGroup((Integer)entry.getKey().get(0), thresholds.toArray(new Condition[thresholds.size()]),
+					rulesByThreshold.toArray(new BitSet[rulesByThreshold.size()]), allRules);
+		}
+
+		return new RuleSetIndex(ruleSet, allRules, partiallyIndexedRules, conditionGroups);
+	}
+
+	/**
+	 * Condition of a rule with given index.
+	 */
+	static final class IndexedCondition {
+		final int ruleIndex;
+		final Condition<? extends EvaluationField> condition;
+
+		IndexedCondition(int ruleIndex, Condition<? extends EvaluationField> condition) {
+			this.ruleIndex = ruleIndex;
+			this.condition = condition;
+		}
+	}
+
+	/**
+	 * Compares two conditions of the same type, concerning the same attribute. Condition is weaker than the other one if it is satisfied by limiting evaluation
+	 * of the other one, but not vice versa.
+	 *
+	 * @param first first condition
+	 * @param second second condition
+	 * @return negative number if the first condition is weaker, zero if conditions have equal limiting evaluations, and positive number if the first condition is stronger
+	 */
+	static int compare(IndexedCondition first, IndexedCondition second) {
+		boolean firstSatisfied = first.condition.satisfiedBy(second.condition.getLimitingEvaluation());
+		boolean secondSatisfied = second.condition.satisfiedBy(first.condition.getLimitingEvaluation());
+		return firstSatisfied == secondSatisfied ? 0 : (firstSatisfied ? -1 : 1);
+	}
+
+	/**
+	 * Gets number of indexed rules.
+	 *
+	 * @return number of indexed rules
+	 */
+	public int getRulesCount() {
+		return rulesCount;
+	}
+
+	/**
+	 * Gets rules that may cover given object. Each rule covering the object is among returned rules.
+	 *
+	 * @param objectIndex index of an object
+	 * @param columnarInformationTable columnar view of an information table containing the object
+	 * @return new bitset of indices of candidate rules
+	 */
+	public BitSet getCandidateRules(int objectIndex, ColumnarInformationTable columnarInformationTable) {
+		BitSet candidateRules = (BitSet)allRules.clone();
+
+		for (ConditionGroup conditionGroup : conditionGroups) {
+			candidateRules.and(conditionGroup.getSatisfiedRules(objectIndex, columnarInformationTable, allRules));
+			if (candidateRules.isEmpty()) {
+				break;
+			}
+		}
+
+		return candidateRules;
+	}
+
+	/**
+	 * Gets rules covering given object. Candidate rules having a condition that is not indexed are checked by {@link Rule#covers(int, InformationTable)};
+	 * other candidate rules cover the object, as all their conditions have been checked by this index.
+	 *
+	 * @param objectIndex index of an object
+	 * @param columnarInformationTable columnar view of an information table containing the object
+	 * @return new bitset of indices of rules covering the object
+	 */
+	public BitSet getCoveringRules(int objectIndex, ColumnarInformationTable columnarInformationTable) {
+		BitSet coveringRules = getCandidateRules(objectIndex, columnarInformationTable);
+		InformationTable informationTable = columnarInformationTable.getInformationTable();
+
+		if (coveringRules.intersects(partiallyIndexedRules)) {
+			for (int ruleIndex = coveringRules.nextSetBit(0); ruleIndex >= 0; ruleIndex = coveringRules.nextSetBit(ruleIndex + 1)) {
+				if (partiallyIndexedRules.get(ruleIndex) && !ruleSet.getRule(ruleIndex).covers(objectIndex, informationTable)) {
+					coveringRules.clear(ruleIndex);
+				}
+			}
+		}
+
+		return coveringRules;
+	}
+
+}
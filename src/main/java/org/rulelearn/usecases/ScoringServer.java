@@ -0,0 +1,554 @@
+/**
+ * Copyright (C) Jerzy Błaszczyński, Marcin Szeląg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rulelearn.usecases;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.IntStream;
+
+import org.rulelearn.classification.SimpleClassificationResult;
+import org.rulelearn.data.Attribute;
+import org.rulelearn.data.EvaluationAttribute;
+import org.rulelearn.data.InformationTable;
+import org.rulelearn.data.InformationTableBuilder;
+import org.rulelearn.data.SimpleDecision;
+import org.rulelearn.data.json.AttributeParser;
+import org.rulelearn.rules.RuleSetWithCharacteristics;
+import org.rulelearn.types.EnumerationField;
+import org.rulelearn.types.EnumerationFieldFactory;
+import org.rulelearn.types.EvaluationField;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Local HTTP service scoring batches of objects by rules read from a RuleML file. Built on JDK's {@link HttpServer}, bound to the loopback address.
+ * <br>
+ * Endpoint {@code POST /score} accepts a JSON array of objects in the format of JSON data files (e.g., {@code bank-churn-4000-v8 data.json}),
+ * i.e., objects mapping attribute names to evaluations (absent attributes are treated as missing). It responds with a JSON object containing, for consecutive objects,
+ * suggested decisions and indices of covering rules (in the order of the rule set), together with p50 and p99 latency of recent requests.
+ * Endpoint {@code GET /stats} responds with latency statistics only.
+ * <br>
+ * Requests are handled by virtual threads, if available (JDK 21+), or by a cached thread pool otherwise. Each request waits for its objects to be scored
+ * by a single batching thread, which merges objects of concurrent requests into one information table (up to a maximum batch size,
+ * or until a short delay elapses), so building the table is amortized over all merged requests. Covering rules are found by a {@link RuleSetIndex}, built once for the served rules,
+ * as it does not depend on the scored table.
+ * They are found once per object, and are both reported and passed to the classifier as its only candidate rules.
+ * Classification results are identical to the ones of {@link org.rulelearn.classification.SimpleOptimizingRuleClassifier}.
+ *
+ * @author Marcin Szeląg (<a href="mailto:marcin.szelag@cs.put.poznan.pl">marcin.szelag@cs.put.poznan.pl</a>)
+ */
+public class ScoringServer implements AutoCloseable {
+
+	/**
+	 * Default port of the server.
+	 */
+	public static final int DEFAULT_PORT = 8080;
+
+	/**
+	 * Default maximum number of objects scored in a single batch.
+	 */
+	public static final int DEFAULT_MAX_BATCH_SIZE = 4096;
+
+	/**
+	 * Default maximum time the batching thread waits for further requests to be merged with the first one [ms].
+	 */
+	public static final long DEFAULT_MAX_BATCH_DELAY = 2L;
+
+	/**
+	 * Number of most recent requests whose latencies are used to calculate statistics.
+	 */
+	public static final int LATENCY_WINDOW_SIZE = 65536;
+
+	/**
+	 * Maximum time a request waits for its result [s].
+	 */
+	public static final long REQUEST_TIMEOUT = 60L;
+
+	/**
+	 * Text used for missing evaluations when building information table of a batch.
+	 */
+	static final String MISSING_VALUE = "?";
+
+	/**
+	 * Objects of a single request, together with the future result.
+	 */
+	static final class ScoringRequest {
+		final List<String[]> objects; //evaluations of objects, in the order of attributes
+		final CompletableFuture<ScoredObject[]> result = new CompletableFuture<>();
+
+		ScoringRequest(List<String[]> objects) {
+			this.objects = objects;
+		}
+	}
+
+	/**
+	 * Result of scoring of a single object.
+	 */
+	static final class ScoredObject {
+		final String decision;
+		final BitSet coveringRules;
+
+		ScoredObject(String decision, BitSet coveringRules) {
+			this.decision = decision;
+			this.coveringRules = coveringRules;
+		}
+	}
+
+	final Attribute[] attributes;
+	final RuleSetWithCharacteristics ruleSetWithCharacteristics;
+	final SimpleClassificationResult defaultClassificationResult;
+	final RuleSetIndex ruleSetIndex; //independent of scored tables, so shared by all batches
+	final ThreadLocal<IndexedRuleClassifier> threadClassifier; //classifiers keep caches of candidate rules, so they are reused between batches
+	final int maxBatchSize;
+	final long maxBatchDelay; //[ns]
+
+	final BlockingQueue<ScoringRequest> requests = new LinkedBlockingQueue<>();
+	final Thread batchingThread;
+	final ExecutorService executor;
+	final HttpServer httpServer;
+
+	final long[] latencies = new long[LATENCY_WINDOW_SIZE]; //ring buffer of latencies of recent requests [ns]
+	long requestsCount = 0L;
+	volatile boolean closed = false;
+
+	/**
+	 * Constructs and starts this server.
+	 *
+	 * @param attributes attributes of scored objects
+	 * @param ruleSetWithCharacteristics rules used to classify objects
+	 * @param defaultClassificationResult default classification result
+	 * @param port port of the server (0 means any free port)
+	 * @param maxBatchSize maximum number of objects scored in a single batch (a single larger request is scored as one batch)
+	 * @param maxBatchDelay maximum time the batching thread waits for further requests to be merged with the first one [ms]
+	 *
+	 * @throws IOException if server cannot be started
+	 */
+	public ScoringServer(Attribute[] attributes, RuleSetWithCharacteristics ruleSetWithCharacteristics, SimpleClassificationResult defaultClassificationResult,
+			int port, int maxBatchSize, long maxBatchDelay) throws IOException {
+		this.attributes = attributes;
+		this.ruleSetWithCharacteristics = ruleSetWithCharacteristics;
+		this.defaultClassificationResult = defaultClassificationResult;
+		this.ruleSetIndex = RuleSetIndex.of(ruleSetWithCharacteristics);
+		this.threadClassifier = ThreadLocal.withInitial(() ->
+				new IndexedRuleClassifier(ruleSetIndex, ruleSetWithCharacteristics, defaultClassificationResult, IndexedRuleClassifier.DEFAULT_CACHE_SIZE));
+		this.maxBatchSize = maxBatchSize;
+		this.maxBatchDelay = TimeUnit.MILLISECONDS.toNanos(maxBatchDelay);
+
+		this.batchingThread = new Thread(this::processBatches, "scoring-batches");
+		this.batchingThread.setDaemon(true);
+		this.batchingThread.start();
+
+		this.executor = createRequestExecutor();
+		this.httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		this.httpServer.createContext("/score", this::handleScore);
+		this.httpServer.createContext("/stats", this::handleStats);
+		this.httpServer.setExecutor(executor);
+		this.httpServer.start();
+	}
+
+	/**
+	 * Main entry point. Starts the server and keeps it running until the JVM is stopped.
+	 *
+	 * @param args command-line arguments: path to metadata JSON file, path to RuleML file, port, decision attribute index, and default decision
+	 *        (by default, the ones of {@link BankCustomerSatisfactionAnalysis}, and {@link #DEFAULT_PORT})
+	 */
+	public static void main(String[] args) {
+		BankCustomerSatisfactionAnalysis analysis = new BankCustomerSatisfactionAnalysis();
+		String metadataPath = args.length > 0 ? args[0] : analysis.metadataPath;
+		String ruleSetPath = args.length > 1 ? args[1] : analysis.ruleSetPath;
+		int port = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_PORT;
+		int decisionAttributeIndex = args.length > 3 ? Integer.parseInt(args[3]) : analysis.decisionAttributeIndex;
+		String defaultClassificationResultLabel = args.length > 4 ? args[4] : analysis.defaultClassificationResultLabel;
+
+		Attribute[] attributes;
+		RuleSetWithCharacteristics ruleSetWithCharacteristics;
+		try (FileReader attributeReader = new FileReader(metadataPath)) {
+			attributes = (new AttributeParser()).parseAttributes(attributeReader);
+			ruleSetWithCharacteristics = attributes != null ? (new RuleMLStreamReader(attributes)).read(ruleSetPath, 1) : null; //decodes only the first act
+		} catch (IOException exception) {
+			exception.printStackTrace();
+			return;
+		}
+		if (ruleSetWithCharacteristics == null) {
+			System.out.println("Unable to read rules from "+ruleSetPath+" using metadata "+metadataPath+".");
+			return;
+		}
+		SimpleClassificationResult defaultClassificationResult = new SimpleClassificationResult(new SimpleDecision(EnumerationFieldFactory.getInstance().create(
+				defaultClassificationResultLabel, (EvaluationAttribute)attributes[decisionAttributeIndex]), decisionAttributeIndex));
+
+		try {
+			ScoringServer scoringServer = new ScoringServer(attributes, ruleSetWithCharacteristics, defaultClassificationResult, port, DEFAULT_MAX_BATCH_SIZE, DEFAULT_MAX_BATCH_DELAY);
+			Runtime.getRuntime().addShutdownHook(new Thread(scoringServer::close));
+			System.out.println("Scoring server with "+ruleSetWithCharacteristics.size()+" rules listening on http://"+
+					scoringServer.getAddress().getHostString()+":"+scoringServer.getAddress().getPort()+"/score"); //!
+		} catch (IOException exception) {
+			exception.printStackTrace();
+		}
+	}
+
+	/**
+	 * Creates executor handling requests. Uses virtual threads, if they are supported by the JVM.
+	 *
+	 * @return executor handling requests
+	 */
+	static ExecutorService createRequestExecutor() {
+		try {
+			return (ExecutorService)Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null); //JDK 21+
+		} catch (ReflectiveOperationException exception) {
+			return Executors.newCachedThreadPool(runnable -> {
+				Thread thread = new Thread(runnable, "scoring-request");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+	}
+
+	/**
+	 * Gets address the server listens on.
+	 *
+	 * @return address of the server
+	 */
+	public InetSocketAddress getAddress() {
+		return httpServer.getAddress();
+	}
+
+	/**
+	 * Handles request to score objects.
+	 *
+	 * @param exchange HTTP exchange
+	 * @throws IOException if response cannot be sent
+	 */
+	void handleScore(HttpExchange exchange) throws IOException {
+		long startTime = System.nanoTime();
+		try {
+			if (!"POST".equals(exchange.getRequestMethod())) {
+				respond(exchange, 405, "{\"error\": \"Use POST with a JSON array of objects.\"}");
+				return;
+			}
+
+			List<String[]> objects;
+			try {
+				objects = parseObjects(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+			} catch (IllegalArgumentException | ClassCastException exception) {
+				respond(exchange, 400, "{\"error\": "+quote(String.valueOf(exception.getMessage()))+"}");
+				return;
+			}
+
+			ScoredObject[] scoredObjects;
+			try {
+				scoredObjects = score(objects);
+			} catch (IllegalArgumentException exception) {
+				respond(exchange, 400, "{\"error\": "+quote(String.valueOf(exception.getMessage()))+"}");
+				return;
+			} catch (IllegalStateException exception) {
+				respond(exchange, 503, "{\"error\": "+quote(String.valueOf(exception.getMessage()))+"}");
+				return;
+			}
+
+			recordLatency(System.nanoTime() - startTime); //response below includes latency of this request
+			StringBuilder response = new StringBuilder(64 + 32 * scoredObjects.length);
+			response.append("{\"decisions\": [");
+			for (int i = 0; i < scoredObjects.length; i++) {
+				response.append(i > 0 ? ", " : "").append(quote(scoredObjects[i].decision));
+			}
+			response.append("], \"coveringRules\": [");
+			for (int i = 0; i < scoredObjects.length; i++) {
+				response.append(i > 0 ? ", [" : "[");
+				BitSet coveringRules = scoredObjects[i].coveringRules;
+				for (int ruleIndex = coveringRules.nextSetBit(0); ruleIndex >= 0; ruleIndex = coveringRules.nextSetBit(ruleIndex + 1)) {
+					response.append(ruleIndex == coveringRules.nextSetBit(0) ? "" : ", ").append(ruleIndex);
+				}
+				response.append(']');
+			}
+			response.append("], \"latency\": ").append(getLatencyStatistics()).append('}');
+			respond(exchange, 200, response.toString());
+		} finally {
+			exchange.close();
+		}
+	}
+
+	/**
+	 * Handles request for latency statistics.
+	 *
+	 * @param exchange HTTP exchange
+	 * @throws IOException if response cannot be sent
+	 */
+	void handleStats(HttpExchange exchange) throws IOException {
+		try {
+			respond(exchange, 200, "{\"latency\": "+getLatencyStatistics()+"}");
+		} finally {
+			exchange.close();
+		}
+	}
+
+	/**
+	 * Sends JSON response.
+	 *
+	 * @param exchange HTTP exchange
+	 * @param status HTTP status code
+	 * @param json response body
+	 * @throws IOException if response cannot be sent
+	 */
+	static void respond(HttpExchange exchange, int status, String json) throws IOException {
+		byte[] body = json.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+		exchange.sendResponseHeaders(status, body.length);
+		try (OutputStream outputStream = exchange.getResponseBody()) {
+			outputStream.write(body);
+		}
+	}
+
+	/**
+	 * Parses objects in the format of JSON data files.
+	 *
+	 * @param json JSON array of objects mapping attribute names to evaluations
+	 * @return list of evaluations of consecutive objects, in the order of attributes
+	 * @throws IllegalArgumentException if given text is not a JSON array of objects
+	 */
+	@SuppressWarnings("unchecked")
+	List<String[]> parseObjects(String json) {
+		Object document = (new JSONParser(json)).parse();
+		if (!(document instanceof List)) {
+			throw new IllegalArgumentException("Request should be a JSON array of objects.");
+		}
+
+		List<String[]> objects = new ArrayList<>(((List<?>)document).size());
+		for (Object element : (List<?>)document) {
+			if (!(element instanceof Map)) { //e.g., null
+				throw new IllegalArgumentException("Request should be a JSON array of objects.");
+			}
+			Map<String, Object> object = (Map<String, Object>)element;
+			String[] values = new String[attributes.length];
+			for (int attributeIndex = 0; attributeIndex < attributes.length; attributeIndex++) {
+				Object value = object.get(attributes[attributeIndex].getName());
+				values[attributeIndex] = value == null ? MISSING_VALUE : (value instanceof BigDecimal ? ((BigDecimal)value).toPlainString() : value.toString());
+			}
+			objects.add(values);
+		}
+		return objects;
+	}
+
+	/**
+	 * Scores given objects, waiting until the batching thread processes them.
+	 *
+	 * @param objects evaluations of objects, in the order of attributes
+	 * @return scored objects
+	 *
+	 * @throws IllegalArgumentException if objects cannot be scored (e.g., because of invalid evaluations)
+	 * @throws IllegalStateException if server is closed, or scoring takes too long
+	 */
+	ScoredObject[] score(List<String[]> objects) {
+		if (objects.isEmpty()) {
+			return new ScoredObject[0];
+		}
+		if (closed) {
+			throw new IllegalStateException("Server is closed.");
+		}
+
+		ScoringRequest request = new ScoringRequest(objects);
+		requests.add(request);
+		try {
+			return request.result.get(REQUEST_TIMEOUT, TimeUnit.SECONDS);
+		} catch (InterruptedException exception) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for scoring.", exception);
+		} catch (TimeoutException exception) {
+			throw new IllegalStateException("Scoring timed out.", exception);
+		} catch (ExecutionException exception) {
+			if (exception.getCause() instanceof RuntimeException) {
+				throw (RuntimeException)exception.getCause();
+			}
+			throw new IllegalStateException(exception.getCause());
+		}
+	}
+
+	/**
+	 * Loop of the batching thread. Merges waiting requests into batches and scores them.
+	 */
+	void processBatches() {
+		List<ScoringRequest> batch = new ArrayList<>();
+		while (!closed) {
+			try {
+				ScoringRequest request = requests.poll(100, TimeUnit.MILLISECONDS);
+				if (request == null) {
+					continue;
+				}
+				batch.add(request);
+				int objectsCount = request.objects.size();
+				long deadline = System.nanoTime() + maxBatchDelay;
+
+				while (objectsCount < maxBatchSize) {
+					request = requests.peek();
+					if (request == null) {
+						long remaining = deadline - System.nanoTime();
+						if (remaining <= 0 || (request = requests.poll(remaining, TimeUnit.NANOSECONDS)) == null) {
+							break;
+						}
+					} else if (objectsCount + request.objects.size() > maxBatchSize) {
+						break; //waits for the next batch
+					} else {
+						requests.remove();
+					}
+					batch.add(request);
+					objectsCount += request.objects.size();
+				}
+
+				scoreBatch(batch);
+			} catch (InterruptedException exception) {
+				break;
+			} catch (RuntimeException | Error exception) {
+				batch.forEach(request -> request.result.completeExceptionally(exception));
+			}
+			batch.clear();
+		}
+
+		for (ScoringRequest request = requests.poll(); request != null; request = requests.poll()) {
+			request.result.completeExceptionally(new IllegalStateException("Server is closed."));
+		}
+	}
+
+	/**
+	 * Scores objects of all given requests in a single information table. If the table cannot be built, requests are scored one by one,
+	 * so only the invalid ones fail.
+	 *
+	 * @param batch merged requests
+	 */
+	void scoreBatch(List<ScoringRequest> batch) {
+		InformationTable informationTable;
+		try {
+			informationTable = buildInformationTable(batch);
+		} catch (RuntimeException exception) {
+			if (batch.size() > 1) {
+				for (ScoringRequest request : batch) {
+					scoreBatch(Arrays.asList(request));
+				}
+			} else {
+				batch.get(0).result.completeExceptionally(new IllegalArgumentException("Invalid evaluations: "+exception.getMessage(), exception));
+			}
+			return;
+		}
+
+		int objectsCount = informationTable.getNumberOfObjects();
+		ColumnarInformationTable columnarInformationTable = ColumnarInformationTable.of(informationTable); //built once per batch, shared by all scoring threads
+		ScoredObject[] scoredObjects = new ScoredObject[objectsCount];
+		IntStream objectIndices = IntStream.range(0, objectsCount);
+		if (objectsCount >= BatchClassifier.DEFAULT_SEQUENTIAL_THRESHOLD) {
+			objectIndices = objectIndices.parallel();
+		}
+		objectIndices.forEach(objectIndex -> {
+			BitSet coveringRules = ruleSetIndex.getCoveringRules(objectIndex, columnarInformationTable);
+			SimpleDecision decision = threadClassifier.get().classify(objectIndex, informationTable, coveringRules).getSuggestedDecision(); //covering rules are valid candidates
+			scoredObjects[objectIndex] = new ScoredObject(toString(decision.getEvaluation()), coveringRules);
+		});
+
+		int fromIndex = 0;
+		for (ScoringRequest request : batch) {
+			request.result.complete(Arrays.copyOfRange(scoredObjects, fromIndex, fromIndex + request.objects.size()));
+			fromIndex += request.objects.size();
+		}
+	}
+
+	/**
+	 * Builds information table containing objects of all given requests, in the order of requests.
+	 *
+	 * @param batch merged requests
+	 * @return information table with all objects
+	 */
+	InformationTable buildInformationTable(List<ScoringRequest> batch) {
+		InformationTableBuilder informationTableBuilder = new InformationTableBuilder(attributes, new String[] {MISSING_VALUE});
+		for (ScoringRequest request : batch) {
+			for (String[] values : request.objects) {
+				informationTableBuilder.addObject(values);
+			}
+		}
+		return informationTableBuilder.build();
+	}
+
+	static String toString(EvaluationField evaluation) {
+		return evaluation instanceof EnumerationField ? ((EnumerationField)evaluation).getElement() : String.valueOf(evaluation);
+	}
+
+	static String quote(String text) {
+		return "\"" + ConvertCsv2Json.escape(text) + "\"";
+	}
+
+	/**
+	 * Records latency of a request.
+	 *
+	 * @param latency latency of a request [ns]
+	 */
+	synchronized void recordLatency(long latency) {
+		latencies[(int)(requestsCount++ % LATENCY_WINDOW_SIZE)] = latency;
+	}
+
+	/**
+	 * Gets statistics of latencies of recent requests, as a JSON object.
+	 *
+	 * @return JSON object with number of requests, and p50 and p99 latency [ms] of at most {@link #LATENCY_WINDOW_SIZE} recent requests
+	 */
+	String getLatencyStatistics() {
+		long[] sortedLatencies;
+		long count;
+		synchronized (this) {
+			count = requestsCount;
+			sortedLatencies = Arrays.copyOf(latencies, (int)Math.min(requestsCount, LATENCY_WINDOW_SIZE));
+		}
+		if (sortedLatencies.length == 0) {
+			return "{\"requests\": 0}";
+		}
+		Arrays.sort(sortedLatencies);
+		return "{\"requests\": "+count+", \"windowSize\": "+sortedLatencies.length
+				+", \"p50Ms\": "+AnalysisMetrics.percentile(sortedLatencies, 0.50) / 1e6+", \"p99Ms\": "+AnalysisMetrics.percentile(sortedLatencies, 0.99) / 1e6+"}";
+	}
+
+	/**
+	 * Stops the server. Pending requests are rejected.
+	 */
+	@Override
+	public void close() {
+		if (!closed) {
+			closed = true;
+			httpServer.stop(0);
+			batchingThread.interrupt();
+			try {
+				batchingThread.join(TimeUnit.SECONDS.toMillis(5));
+			} catch (InterruptedException exception) {
+				Thread.currentThread().interrupt();
+			}
+			executor.shutdownNow();
+		}
+	}
+
+}
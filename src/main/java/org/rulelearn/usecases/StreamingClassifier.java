@@ -0,0 +1,525 @@
+/**
+ * Copyright (C) Jerzy Błaszczyński, Marcin Szeląg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rulelearn.usecases;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.GZIPInputStream;
+
+import org.rulelearn.classification.SimpleClassificationResult;
+import org.rulelearn.data.Attribute;
+import org.rulelearn.data.EvaluationAttribute;
+import org.rulelearn.data.InformationTable;
+import org.rulelearn.data.InformationTableBuilder;
+import org.rulelearn.data.SimpleDecision;
+import org.rulelearn.data.json.AttributeParser;
+import org.rulelearn.rules.RuleSetWithCharacteristics;
+import org.rulelearn.types.EnumerationFieldFactory;
+
+/**
+ * Classifies objects read from a data file (JSON or CSV) that does not have to fit in memory, and writes suggested decisions to a CSV file.
+ * Objects are read record by record, and classified in batches of bounded size. Each batch is built into a separate information table,
+ * classified by {@link BatchClassifier} (in parallel chunks, using a {@link RuleSetIndex rule set index} built once for all batches, as it does not depend on classified data),
+ * and discarded after its decisions are written.
+ * Reading of the next batch overlaps with classification of the current one, and at most {@link #QUEUED_BATCHES_COUNT} read batches wait for classification,
+ * so memory usage depends on batch size, but not on the size of classified file.
+ * <br>
+ * Data file is recognized as a CSV file (with header) if its name ends with ".csv" (or ".csv.gz"), and as a JSON array of objects in the format of JSON data files otherwise.
+ * Files with names ending with ".gz" are decompressed on the fly. Each line of output file contains number of an object (counted from 0, in the order of data file)
+ * and its suggested decision.
+ *
+ * @author Marcin Szeląg (<a href="mailto:marcin.szelag@cs.put.poznan.pl">marcin.szelag@cs.put.poznan.pl</a>)
+ */
+public class StreamingClassifier {
+
+	/**
+	 * Default number of objects classified as a single batch.
+	 */
+	public static final int DEFAULT_BATCH_SIZE = 1 << 16;
+
+	/**
+	 * Maximum number of read batches waiting for classification.
+	 */
+	static final int QUEUED_BATCHES_COUNT = 2;
+
+	/**
+	 * Number of classified objects after which progress is reported.
+	 */
+	static final long PROGRESS_REPORT_INTERVAL = 1_000_000L;
+
+	/**
+	 * Text used for missing evaluations.
+	 */
+	static final String MISSING_VALUE = ConvertCsv2Json.MISSING_VALUE_STRING;
+
+	static final String CSV_EXTENSION = ".csv";
+
+	/**
+	 * Source of consecutive objects of a data file.
+	 */
+	interface ObjectReader {
+		/**
+		 * Reads evaluations of next object.
+		 *
+		 * @param values array for evaluations, indexed by attribute index (missing ones are set to {@link #MISSING_VALUE})
+		 * @return {@code true} if an object has been read, {@code false} if end of file has been reached
+		 * @throws IOException if object cannot be read
+		 */
+		boolean read(String[] values) throws IOException;
+	}
+
+	/**
+	 * Batch of read objects. Empty batch marks end of data (or reading error).
+	 */
+	static final class Batch {
+		final String[][] objects;
+		final int size;
+
+		Batch(String[][] objects, int size) {
+			this.objects = objects;
+			this.size = size;
+		}
+	}
+
+	final Attribute[] attributes;
+	final BatchClassifier batchClassifier;
+	final int batchSize;
+
+	/**
+	 * Constructs this classifier.
+	 *
+	 * @param attributes attributes of classified objects
+	 * @param ruleSetWithCharacteristics rules used to classify objects
+	 * @param defaultClassificationResult default classification result
+	 * @param batchSize number of objects classified as a single batch
+	 *
+	 * @throws IllegalArgumentException if batch size is not positive
+	 */
+	public StreamingClassifier(Attribute[] attributes, RuleSetWithCharacteristics ruleSetWithCharacteristics, SimpleClassificationResult defaultClassificationResult, int batchSize) {
+		if (batchSize < 1) {
+			throw new IllegalArgumentException("Batch size has to be positive.");
+		}
+		this.attributes = attributes;
+		this.batchClassifier = new BatchClassifier(RuleSetIndex.of(ruleSetWithCharacteristics), ruleSetWithCharacteristics, defaultClassificationResult);
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Main entry point.
+	 *
+	 * @param args command-line arguments: path to data file, path to output CSV file, and optionally: path to metadata JSON file, path to RuleML file,
+	 *        decision attribute index, default decision, and batch size (by default, the ones of {@link BankCustomerSatisfactionAnalysis}, and {@link #DEFAULT_BATCH_SIZE})
+	 */
+	public static void main(String[] args) {
+		if (args.length < 2) {
+			System.out.println("Usage: StreamingClassifier <data JSON/CSV file> <output CSV file> [<metadata JSON file> <RuleML file> [<decision attribute index> <default decision> [<batch size>]]]");
+			return;
+		}
+
+		BankCustomerSatisfactionAnalysis analysis = new BankCustomerSatisfactionAnalysis();
+		String metadataPath = args.length > 3 ? args[2] : analysis.metadataPath;
+		String ruleSetPath = args.length > 3 ? args[3] : analysis.ruleSetPath;
+		int decisionAttributeIndex = args.length > 5 ? Integer.parseInt(args[4]) : analysis.decisionAttributeIndex;
+		String defaultClassificationResultLabel = args.length > 5 ? args[5] : analysis.defaultClassificationResultLabel;
+		int batchSize = args.length > 6 ? Integer.parseInt(args[6]) : DEFAULT_BATCH_SIZE;
+
+		try {
+			Attribute[] attributes;
+			RuleSetWithCharacteristics ruleSetWithCharacteristics;
+			try (FileReader attributeReader = new FileReader(metadataPath)) {
+				attributes = (new AttributeParser()).parseAttributes(attributeReader);
+				ruleSetWithCharacteristics = attributes != null ? (new RuleMLStreamReader(attributes)).read(ruleSetPath, 1) : null; //decodes only the first act
+			}
+			if (ruleSetWithCharacteristics == null) {
+				System.out.println("Unable to read rules from "+ruleSetPath+" using metadata "+metadataPath+".");
+				return;
+			}
+			SimpleClassificationResult defaultClassificationResult = new SimpleClassificationResult(new SimpleDecision(EnumerationFieldFactory.getInstance().create(
+					defaultClassificationResultLabel, (EvaluationAttribute)attributes[decisionAttributeIndex]), decisionAttributeIndex));
+
+			(new StreamingClassifier(attributes, ruleSetWithCharacteristics, defaultClassificationResult, batchSize)).classify(args[0], args[1]);
+		} catch (IOException exception) {
+			exception.printStackTrace();
+		}
+	}
+
+	/**
+	 * Classifies all objects from given data file, and writes their suggested decisions to given output file.
+	 *
+	 * @param dataFilePath path to JSON or CSV data file (possibly compressed with gzip, if its name ends with ".gz")
+	 * @param outputFilePath path to output CSV file
+	 * @return number of classified objects
+	 *
+	 * @throws IOException if any of the files cannot be read or written
+	 * @throws IllegalArgumentException if data file does not match metadata
+	 */
+	public long classify(String dataFilePath, String outputFilePath) throws IOException {
+		InputStream inputStream = Files.newInputStream(Paths.get(dataFilePath));
+		String fileName = dataFilePath;
+		if (fileName.endsWith(RuleMLStreamWriter.GZIP_EXTENSION)) {
+			inputStream = new GZIPInputStream(inputStream, ConvertCsv2Json.BUFFER_SIZE);
+			fileName = fileName.substring(0, fileName.length() - RuleMLStreamWriter.GZIP_EXTENSION.length());
+		}
+
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8), ConvertCsv2Json.BUFFER_SIZE);
+				BufferedWriter writer = new BufferedWriter(Files.newBufferedWriter(Paths.get(outputFilePath), StandardCharsets.UTF_8), ConvertCsv2Json.BUFFER_SIZE)) {
+			ObjectReader objectReader = fileName.toLowerCase().endsWith(CSV_EXTENSION) ? csvObjectReader(reader) : new JSONObjectReader(reader, attributes);
+			return classify(objectReader, writer);
+		}
+	}
+
+	/**
+	 * Classifies all objects read by given reader, and writes their suggested decisions to given writer.
+	 * Objects are read by a separate thread, at most {@link #QUEUED_BATCHES_COUNT} batches ahead of classification.
+	 *
+	 * @param objectReader reader of objects
+	 * @param writer writer of suggested decisions (CSV)
+	 * @return number of classified objects
+	 *
+	 * @throws IOException if objects cannot be read or decisions cannot be written
+	 */
+	long classify(ObjectReader objectReader, BufferedWriter writer) throws IOException {
+		BlockingQueue<Batch> batches = new ArrayBlockingQueue<>(QUEUED_BATCHES_COUNT);
+		IOException[] readException = new IOException[1];
+		RuntimeException[] readRuntimeException = new RuntimeException[1];
+
+		Thread readingThread = new Thread(() -> {
+			try {
+				Batch batch;
+				do {
+					batch = readBatch(objectReader);
+					batches.put(batch);
+				} while (batch.size > 0);
+				return;
+			} catch (InterruptedException exception) {
+				return; //classification stopped
+			} catch (IOException exception) {
+				readException[0] = exception;
+			} catch (RuntimeException exception) {
+				readRuntimeException[0] = exception;
+			}
+			try {
+				batches.put(new Batch(new String[0][], 0)); //marks end of data after reading error
+			} catch (InterruptedException exception) {
+				//classification stopped
+			}
+		}, "streaming-reader");
+		readingThread.setDaemon(true);
+		readingThread.start();
+
+		writer.write("object,decision");
+		writer.newLine();
+
+		long objectsCount = 0L;
+		long nextReportCount = PROGRESS_REPORT_INTERVAL;
+		long startTime = System.nanoTime();
+		try {
+			Batch batch;
+			while ((batch = batches.take()).size > 0) {
+				SimpleDecision[] decisions = batchClassifier.classify(buildInformationTable(batch));
+				for (int i = 0; i < batch.size; i++) {
+					writer.write(Long.toString(objectsCount + i));
+					writer.write(',');
+					writer.write(ScoringServer.toString(decisions[i].getEvaluation()));
+					writer.newLine();
+				}
+				objectsCount += batch.size;
+
+				if (objectsCount >= nextReportCount) {
+					reportProgress(objectsCount, System.nanoTime() - startTime, false);
+					nextReportCount += PROGRESS_REPORT_INTERVAL;
+				}
+			}
+		} catch (InterruptedException exception) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for objects.", exception);
+		} finally {
+			readingThread.interrupt();
+		}
+
+		if (readException[0] != null) {
+			throw readException[0];
+		}
+		if (readRuntimeException[0] != null) {
+			throw readRuntimeException[0];
+		}
+		reportProgress(objectsCount, System.nanoTime() - startTime, true);
+
+		return objectsCount;
+	}
+
+	/**
+	 * Reads next batch of objects.
+	 *
+	 * @param objectReader reader of objects
+	 * @return batch of at most {@link #batchSize} objects (empty if end of file has been reached)
+	 * @throws IOException if objects cannot be read
+	 */
+	Batch readBatch(ObjectReader objectReader) throws IOException {
+		String[][] objects = new String[batchSize][];
+		int size = 0;
+		String[] values = new String[attributes.length];
+		while (size < batchSize && objectReader.read(values)) {
+			objects[size++] = values;
+			values = new String[attributes.length];
+		}
+		return new Batch(objects, size);
+	}
+
+	/**
+	 * Builds information table containing objects of given batch.
+	 *
+	 * @param batch batch of objects
+	 * @return information table with objects of the batch
+	 */
+	InformationTable buildInformationTable(Batch batch) {
+		InformationTableBuilder informationTableBuilder = new InformationTableBuilder(attributes, new String[] {MISSING_VALUE});
+		for (int i = 0; i < batch.size; i++) {
+			informationTableBuilder.addObject(batch.objects[i]);
+			batch.objects[i] = null; //evaluations can be garbage collected as soon as table is built
+		}
+		return informationTableBuilder.build();
+	}
+
+	/**
+	 * Creates reader of objects from CSV file with header, matching columns with attributes by name.
+	 * Attributes absent from the header (e.g., the decision attribute) get missing values, as in JSON data files.
+	 *
+	 * @param reader reader of CSV file
+	 * @return reader of objects
+	 *
+	 * @throws IOException if header cannot be read
+	 * @throws IllegalArgumentException if CSV file is empty
+	 */
+	ObjectReader csvObjectReader(BufferedReader reader) throws IOException {
+		ConvertCsv2Json.CsvRowReader rowReader = new ConvertCsv2Json.CsvRowReader(reader, ConvertCsv2Json.DEFAULT_SEPARATOR);
+		if (rowReader.readRow(null) < 0) {
+			throw new IllegalArgumentException("CSV file is empty.");
+		}
+		String[] attributeNames = Arrays.stream(attributes).map(Attribute::getName).toArray(String[]::new);
+		int[] columnToAttributeIndex = ConvertCsv2Json.mapColumns(rowReader.getHeader(), attributeNames, false);
+
+		return values -> {
+			if (rowReader.readRow(values) < 0) {
+				return false;
+			}
+			rowReader.remap(values, columnToAttributeIndex);
+			for (int i = 0; i < values.length; i++) {
+				if (values[i].isEmpty()) {
+					values[i] = MISSING_VALUE;
+				}
+			}
+			return true;
+		};
+	}
+
+	/**
+	 * Prints to system output classification progress.
+	 *
+	 * @param objectsCount number of classified objects
+	 * @param durationNanos time of classification [ns]
+	 * @param finished indicates if classification is finished
+	 */
+	static void reportProgress(long objectsCount, long durationNanos, boolean finished) {
+		double seconds = durationNanos / 1e9;
+		System.out.println((finished ? "Classified " : "  ... ")+objectsCount+" objects in "+String.format("%.1f", seconds)+" s ("
+				+String.format("%.0f", seconds > 0 ? objectsCount / seconds : 0.0)+" records/s)."); //!
+	}
+
+	/**
+	 * Reads consecutive objects from a JSON array of flat objects (in the format of JSON data files), one object at a time.
+	 * Values of attributes not present in metadata are skipped. Absent attributes, and {@code null} values, are treated as missing evaluations.
+	 */
+	static final class JSONObjectReader implements ObjectReader {
+		final Reader reader;
+		final Map<String, Integer> attributeIndices = new HashMap<>();
+		final StringBuilder token = new StringBuilder(64);
+		int current = -2; //next character; -2 means not read yet
+		boolean started = false;
+		boolean finished = false;
+
+		JSONObjectReader(Reader reader, Attribute[] attributes) {
+			this.reader = reader;
+			for (int i = 0; i < attributes.length; i++) {
+				attributeIndices.put(attributes[i].getName(), i);
+			}
+		}
+
+		@Override
+		public boolean read(String[] values) throws IOException {
+			if (finished) {
+				return false;
+			}
+			if (!started) {
+				expect('[');
+				started = true;
+				if (skipWhitespace() == ']') {
+					finished = true;
+					return false;
+				}
+			} else {
+				int c = skipWhitespace();
+				next();
+				if (c == ']') {
+					finished = true;
+					return false;
+				} else if (c != ',') {
+					throw error("',' or ']'", c);
+				}
+			}
+
+			Arrays.fill(values, MISSING_VALUE);
+			expect('{');
+			if (skipWhitespace() == '}') {
+				next();
+				return true;
+			}
+			while (true) {
+				expect('"');
+				Integer attributeIndex = attributeIndices.get(readString());
+				expect(':');
+				String value = readValue();
+				if (attributeIndex != null && value != null) {
+					values[attributeIndex] = value;
+				}
+
+				int c = skipWhitespace();
+				next();
+				if (c == '}') {
+					return true;
+				} else if (c != ',') {
+					throw error("',' or '}'", c);
+				}
+				skipWhitespace();
+			}
+		}
+
+		/**
+		 * Reads a flat value: a string, a number, or a literal.
+		 *
+		 * @return read value, or {@code null} for JSON null
+		 * @throws IOException if value cannot be read
+		 */
+		String readValue() throws IOException {
+			int c = skipWhitespace();
+			if (c == '"') {
+				next();
+				return readString();
+			}
+			if (c == '{' || c == '[') {
+				throw new IllegalArgumentException("Nested JSON values are not supported in data files.");
+			}
+
+			token.setLength(0);
+			while (c >= 0 && c != ',' && c != '}' && c != ']' && !Character.isWhitespace(c)) {
+				token.append((char)c);
+				next();
+				c = peek();
+			}
+			if (token.length() == 0) {
+				throw error("a value", c);
+			}
+			String value = token.toString();
+			return "null".equals(value) ? null : value;
+		}
+
+		/**
+		 * Reads remaining part of a string whose opening quote has been consumed.
+		 *
+		 * @return read string, unescaped
+		 * @throws IOException if string cannot be read
+		 */
+		String readString() throws IOException {
+			token.setLength(0);
+			int c;
+			while ((c = next()) != '"') {
+				if (c < 0) {
+					throw new IllegalArgumentException("Unterminated JSON string.");
+				}
+				if (c == '\\') {
+					c = next();
+					switch (c) {
+					case 'n': token.append('\n'); break;
+					case 'r': token.append('\r'); break;
+					case 't': token.append('\t'); break;
+					case 'b': token.append('\b'); break;
+					case 'f': token.append('\f'); break;
+					case 'u':
+						char[] hex = new char[4];
+						for (int i = 0; i < 4; i++) {
+							hex[i] = (char)next();
+						}
+						token.append((char)Integer.parseInt(new String(hex), 16));
+						break;
+					default:
+						token.append((char)c);
+					}
+				} else {
+					token.append((char)c);
+				}
+			}
+			return token.toString();
+		}
+
+		void expect(char expected) throws IOException {
+			int c = skipWhitespace();
+			if (c != expected) {
+				throw error("'"+expected+"'", c);
+			}
+			next();
+		}
+
+		int skipWhitespace() throws IOException {
+			int c = peek();
+			while (c >= 0 && Character.isWhitespace(c)) {
+				next();
+				c = peek();
+			}
+			return c;
+		}
+
+		int peek() throws IOException {
+			if (current == -2) {
+				current = reader.read();
+			}
+			return current;
+		}
+
+		int next() throws IOException {
+			int c = peek();
+			current = -2;
+			return c;
+		}
+
+		IllegalArgumentException error(String expected, int found) {
+			return new IllegalArgumentException("Expected "+expected+" in JSON data file, but found "+(found < 0 ? "end of file" : "'"+(char)found+"'")+".");
+		}
+	}
+
+}
@@ -0,0 +1,406 @@
+/**
+ * Copyright (C) Jerzy Błaszczyński, Marcin Szeląg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rulelearn.usecases;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.UUID;
+
+import org.rulelearn.data.Attribute;
+import org.rulelearn.data.AttributeType;
+import org.rulelearn.data.EvaluationAttribute;
+import org.rulelearn.data.IdentificationAttribute;
+import org.rulelearn.types.IntegerField;
+import org.rulelearn.types.RealField;
+import org.rulelearn.types.UUIDIdentificationField;
+
+/**
+ * Generates synthetic data sets of any size, statistically similar to a (small) seed data set described by given metadata,
+ * so scalability of analyses can be tested without real data. Each synthetic object is generated as follows:
+ * <ol>
+ * <li>class of the object is drawn according to class balance of the seed data set,</li>
+ * <li>a seed object of that class is drawn (with replacement),</li>
+ * <li>each numeric evaluation of the seed object is replaced by the evaluation whose rank, among all seed evaluations on the same attribute, differs from the rank
+ *     of the original one by at most {@code jitter} &times; (number of seed objects); real evaluations are additionally interpolated between neighbouring ranks
+ *     (and rounded to the precision of seed evaluations); other evaluations, including missing ones, are copied,</li>
+ * <li>with probability depending on the class, decision of the object is changed to another class, drawn uniformly.</li>
+ * </ol>
+ * Steps 1-3 preserve (in expectation) per-attribute marginal distributions and class balance, as well as dependencies between attributes,
+ * while step 3 makes synthetic evaluations differ from the seed ones. Probabilities of step 4 are chosen so that the class balance remains unchanged,
+ * and the expected fraction of objects with changed decision is equal to {@code inconsistencyRate}. Objects with changed decision introduce
+ * inconsistencies with respect to the dominance principle, in addition to the inconsistencies already present in the seed data set (kept for {@code inconsistencyRate = 0}).
+ * <br>
+ * Objects are written as they are generated, so memory usage does not depend on the number of generated objects. Output file is written in the format of JSON data files,
+ * or as a binary {@link InformationTableSnapshot snapshot}, if its name ends with {@link InformationTableSnapshot#SNAPSHOT_FILE_EXTENSION}
+ * (such file can be read by {@link InformationTableSnapshot#readSnapshot(String, String)}).
+ *
+ * @author Marcin Szeląg (<a href="mailto:marcin.szelag@cs.put.poznan.pl">marcin.szelag@cs.put.poznan.pl</a>)
+ */
+public class SyntheticDataGenerator {
+
+	/**
+	 * Default maximum shift of rank of a numeric evaluation, as a fraction of the number of seed objects.
+	 */
+	public static final double DEFAULT_JITTER = 0.02;
+
+	/**
+	 * Number of generated objects after which progress is reported.
+	 */
+	static final long PROGRESS_REPORT_INTERVAL = 1_000_000L;
+
+	static final String MISSING_VALUE = ConvertCsv2Json.MISSING_VALUE_STRING;
+
+	/**
+	 * Receiver of generated objects.
+	 */
+	interface ObjectWriter {
+		/**
+		 * Writes evaluations of a single object.
+		 *
+		 * @param values evaluations of the object, in the order of attributes
+		 * @throws IOException if object cannot be written
+		 */
+		void write(String[] values) throws IOException;
+	}
+
+	final Attribute[] attributes;
+	final int decisionAttributeIndex;
+	final String[] classes; //decisions present in seed data, in the order of their first occurrence
+	final String[][][] seedObjectsByClass; //indexed by class index
+	final double[] classProbabilities;
+	final double[] changeProbabilities; //probabilities of changing decision of an object of given class
+	final double[][] sortedValues; //indexed by attribute index; null for non-numeric attributes
+	final boolean[] isInteger; //indicates numeric attributes with integer evaluations
+	final int[] scales; //numbers of decimal places of real evaluations
+	final int rankJitter;
+
+	/**
+	 * Constructs this generator.
+	 *
+	 * @param attributes attributes of seed and generated objects
+	 * @param seedObjects evaluations of seed objects, in the order of attributes (missing ones as {@link ConvertCsv2Json#MISSING_VALUE_STRING})
+	 * @param inconsistencyRate expected fraction of objects whose decision is changed to another class
+	 * @param jitter maximum shift of rank of a numeric evaluation, as a fraction of the number of seed objects
+	 *
+	 * @throws IllegalArgumentException if there is no decision attribute or seed objects, or if given inconsistency rate cannot be obtained without changing class balance
+	 */
+	public SyntheticDataGenerator(Attribute[] attributes, List<String[]> seedObjects, double inconsistencyRate, double jitter) {
+		this.attributes = attributes;
+		this.decisionAttributeIndex = findDecisionAttributeIndex(attributes);
+		if (decisionAttributeIndex < 0) {
+			throw new IllegalArgumentException("Metadata do not define an active decision attribute.");
+		}
+
+		Map<String, List<String[]>> objectsByClass = new LinkedHashMap<>();
+		for (String[] seedObject : seedObjects) {
+			if (!MISSING_VALUE.equals(seedObject[decisionAttributeIndex])) {
+				objectsByClass.computeIfAbsent(seedObject[decisionAttributeIndex], decision -> new ArrayList<>()).add(seedObject);
+			}
+		}
+		if (objectsByClass.isEmpty()) {
+			throw new IllegalArgumentException("Seed data do not contain objects with known decision.");
+		}
+
+		int classesCount = objectsByClass.size();
+		int classifiedCount = objectsByClass.values().stream().mapToInt(List::size).sum();
+		this.classes = objectsByClass.keySet().toArray(new String[classesCount]);
+		this.seedObjectsByClass = new String[classesCount][][];
+		this.classProbabilities = new double[classesCount];
+		this.changeProbabilities = new double[classesCount];
+		for (int classIndex = 0; classIndex < classesCount; classIndex++) {
+			seedObjectsByClass[classIndex] = objectsByClass.get(classes[classIndex]).toArray(new String[0][]);
+			classProbabilities[classIndex] = (double)seedObjectsByClass[classIndex].length / classifiedCount;
+			//each class loses and gains inconsistencyRate / classesCount of all objects, so class balance is preserved
+			changeProbabilities[classIndex] = classesCount > 1 ? inconsistencyRate / (classesCount * classProbabilities[classIndex]) : 0.0;
+		}
+		if (classesCount == 1 && inconsistencyRate > 0.0) {
+			throw new IllegalArgumentException("Seed data contain a single class, so decisions cannot be changed.");
+		}
+		if (Arrays.stream(changeProbabilities).max().getAsDouble() > 1.0) {
+			throw new IllegalArgumentException("Inconsistency rate "+inconsistencyRate+" cannot be obtained without changing class balance (maximum is "
+					+classesCount * Arrays.stream(classProbabilities).min().getAsDouble()+").");
+		}
+
+		this.sortedValues = new double[attributes.length][];
+		this.isInteger = new boolean[attributes.length];
+		this.scales = new int[attributes.length];
+		for (int attributeIndex = 0; attributeIndex < attributes.length; attributeIndex++) {
+			if (attributeIndex != decisionAttributeIndex && attributes[attributeIndex] instanceof EvaluationAttribute) {
+				Object valueType = ((EvaluationAttribute)attributes[attributeIndex]).getValueType();
+				if (valueType instanceof IntegerField || valueType instanceof RealField) {
+					isInteger[attributeIndex] = valueType instanceof IntegerField;
+					sortedValues[attributeIndex] = collectSortedValues(seedObjects, attributeIndex);
+				}
+			}
+		}
+
+		this.rankJitter = (int)Math.round(jitter * seedObjects.size());
+	}
+
+	/**
+	 * Finds index of the first active decision attribute.
+	 *
+	 * @param attributes attributes
+	 * @return index of decision attribute, or -1 if there is no such attribute
+	 */
+	static int findDecisionAttributeIndex(Attribute[] attributes) {
+		for (int attributeIndex = 0; attributeIndex < attributes.length; attributeIndex++) {
+			if (attributes[attributeIndex] instanceof EvaluationAttribute && attributes[attributeIndex].isActive()
+					&& ((EvaluationAttribute)attributes[attributeIndex]).getType() == AttributeType.DECISION) {
+				return attributeIndex;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Collects known numeric evaluations of seed objects on given attribute, and determines precision of real evaluations.
+	 *
+	 * @param seedObjects evaluations of seed objects
+	 * @param attributeIndex index of a numeric attribute
+	 * @return sorted evaluations
+	 */
+	double[] collectSortedValues(List<String[]> seedObjects, int attributeIndex) {
+		double[] values = new double[seedObjects.size()];
+		int count = 0;
+		for (String[] seedObject : seedObjects) {
+			String value = seedObject[attributeIndex];
+			if (!MISSING_VALUE.equals(value)) {
+				BigDecimal decimal = new BigDecimal(value.trim());
+				values[count++] = decimal.doubleValue();
+				scales[attributeIndex] = Math.max(scales[attributeIndex], decimal.scale());
+			}
+		}
+		values = Arrays.copyOf(values, count);
+		Arrays.sort(values);
+		return values;
+	}
+
+	/**
+	 * Main entry point.
+	 *
+	 * @param args command-line arguments: path to output file (JSON, or snapshot if its name ends with ".snapshot"), number of generated objects,
+	 *        and optionally: inconsistency rate (default 0), jitter (default {@link #DEFAULT_JITTER}), random seed (default 0),
+	 *        path to metadata JSON file and path to seed data JSON file (by default, the ones of {@link BankCustomerSatisfactionAnalysis})
+	 */
+	public static void main(String[] args) {
+		if (args.length < 2) {
+			System.out.println("Usage: SyntheticDataGenerator <output JSON/snapshot file> <number of objects> [<inconsistency rate> [<jitter> [<random seed> [<metadata JSON file> <seed data JSON file>]]]]");
+			return;
+		}
+
+		BankCustomerSatisfactionAnalysis analysis = new BankCustomerSatisfactionAnalysis();
+		long objectsCount = Long.parseLong(args[1]);
+		double inconsistencyRate = args.length > 2 ? Double.parseDouble(args[2]) : 0.0;
+		double jitter = args.length > 3 ? Double.parseDouble(args[3]) : DEFAULT_JITTER;
+		long randomSeed = args.length > 4 ? Long.parseLong(args[4]) : 0L;
+		String metadataPath = args.length > 6 ? args[5] : analysis.metadataPath;
+		String seedDataPath = args.length > 6 ? args[6] : analysis.dataPath;
+
+		try {
+			Attribute[] attributes = InformationTableSnapshot.readAttributes(metadataPath);
+			SyntheticDataGenerator generator = new SyntheticDataGenerator(attributes, readObjects(attributes, seedDataPath), inconsistencyRate, jitter);
+			generator.generate(args[0], objectsCount, randomSeed);
+		} catch (IOException exception) {
+			exception.printStackTrace();
+		}
+	}
+
+	/**
+	 * Reads all objects from given JSON data file.
+	 *
+	 * @param attributes attributes of objects
+	 * @param dataPath path to JSON data file
+	 * @return evaluations of consecutive objects, in the order of attributes
+	 *
+	 * @throws IOException if file cannot be read
+	 */
+	static List<String[]> readObjects(Attribute[] attributes, String dataPath) throws IOException {
+		List<String[]> objects = new ArrayList<>();
+		try (BufferedReader reader = Files.newBufferedReader(Paths.get(dataPath), StandardCharsets.UTF_8)) {
+			StreamingClassifier.JSONObjectReader objectReader = new StreamingClassifier.JSONObjectReader(reader, attributes);
+			String[] values = new String[attributes.length];
+			while (objectReader.read(values)) {
+				objects.add(values);
+				values = new String[attributes.length];
+			}
+		}
+		return objects;
+	}
+
+	/**
+	 * Generates given number of objects, and writes them to given file.
+	 *
+	 * @param outputPath path to output file; snapshot is written if its name ends with {@link InformationTableSnapshot#SNAPSHOT_FILE_EXTENSION}, and JSON file otherwise
+	 * @param objectsCount number of generated objects
+	 * @param randomSeed seed of random number generator; the same seed yields the same objects
+	 *
+	 * @throws IOException if output file cannot be written
+	 */
+	public void generate(String outputPath, long objectsCount, long randomSeed) throws IOException {
+		if (outputPath.endsWith(InformationTableSnapshot.SNAPSHOT_FILE_EXTENSION)) {
+			if (objectsCount > Integer.MAX_VALUE) {
+				throw new IllegalArgumentException("Snapshot can store at most "+Integer.MAX_VALUE+" objects.");
+			}
+			try (InformationTableSnapshot.ObjectStreamWriter snapshotWriter = new InformationTableSnapshot.ObjectStreamWriter(attributes, Paths.get(outputPath),
+					"SYNTHETIC-" + objectsCount + "-" + randomSeed)) {
+				generate(snapshotWriter::addObject, objectsCount, randomSeed);
+			}
+		} else {
+			String[] escapedAttributeNames = Arrays.stream(attributes).map(attribute -> ConvertCsv2Json.escape(attribute.getName())).toArray(String[]::new);
+			try (BufferedWriter writer = new BufferedWriter(Files.newBufferedWriter(Paths.get(outputPath), StandardCharsets.UTF_8), ConvertCsv2Json.BUFFER_SIZE)) {
+				long[] writtenCount = new long[1];
+				writer.write('[');
+				generate(values -> {
+					writer.write(writtenCount[0]++ == 0 ? "\n" : ",\n");
+					ConvertCsv2Json.writeObject(writer, escapedAttributeNames, values);
+				}, objectsCount, randomSeed);
+				writer.write(objectsCount == 0 ? "]" : "\n]");
+			}
+		}
+	}
+
+	/**
+	 * Generates given number of objects, passing them to given writer.
+	 *
+	 * @param objectWriter receiver of generated objects
+	 * @param objectsCount number of generated objects
+	 * @param randomSeed seed of random number generator
+	 *
+	 * @throws IOException if object cannot be written
+	 */
+	void generate(ObjectWriter objectWriter, long objectsCount, long randomSeed) throws IOException {
+		SplittableRandom random = new SplittableRandom(randomSeed);
+		String[] values = new String[attributes.length];
+		long[] classCounts = new long[classes.length];
+		long changedCount = 0L;
+		long startTime = System.nanoTime();
+
+		for (long objectIndex = 0; objectIndex < objectsCount; objectIndex++) {
+			int classIndex = drawClass(random);
+			String[] seedObject = seedObjectsByClass[classIndex][random.nextInt(seedObjectsByClass[classIndex].length)];
+
+			for (int attributeIndex = 0; attributeIndex < attributes.length; attributeIndex++) {
+				String value = seedObject[attributeIndex];
+				if (sortedValues[attributeIndex] != null && !MISSING_VALUE.equals(value)) {
+					value = shift(attributeIndex, Double.parseDouble(value), random);
+				} else if (attributes[attributeIndex] instanceof IdentificationAttribute) {
+					value = ((IdentificationAttribute)attributes[attributeIndex]).getValueType() instanceof UUIDIdentificationField
+							? new UUID(random.nextLong(), random.nextLong()).toString() : "synthetic-" + objectIndex;
+				}
+				values[attributeIndex] = value;
+			}
+
+			if (random.nextDouble() < changeProbabilities[classIndex]) {
+				int otherClassIndex = random.nextInt(classes.length - 1);
+				classIndex = otherClassIndex >= classIndex ? otherClassIndex + 1 : otherClassIndex;
+				values[decisionAttributeIndex] = classes[classIndex];
+				changedCount++;
+			}
+			classCounts[classIndex]++;
+
+			objectWriter.write(values);
+
+			if ((objectIndex + 1) % PROGRESS_REPORT_INTERVAL == 0) {
+				ConvertCsv2Json.reportProgress(objectIndex + 1, System.nanoTime() - startTime, false);
+			}
+		}
+
+		double seconds = (System.nanoTime() - startTime) / 1e9;
+		System.out.println("Generated "+objectsCount+" objects in "+String.format("%.1f", seconds)+" s, "+changedCount+" with changed decision."); //!
+		for (int classIndex = 0; classIndex < classes.length; classIndex++) {
+			System.out.println("  Class "+classes[classIndex]+": "+String.format("%.4f", objectsCount > 0 ? (double)classCounts[classIndex] / objectsCount : 0.0)
+					+" (seed: "+String.format("%.4f", classProbabilities[classIndex])+")."); //!
+		}
+	}
+
+	int drawClass(SplittableRandom random) {
+		double u = random.nextDouble();
+		for (int classIndex = 0; classIndex < classProbabilities.length - 1; classIndex++) {
+			u -= classProbabilities[classIndex];
+			if (u < 0.0) {
+				return classIndex;
+			}
+		}
+		return classProbabilities.length - 1;
+	}
+
+	/**
+	 * Replaces given numeric evaluation by an evaluation with a close rank among seed evaluations.
+	 *
+	 * @param attributeIndex index of a numeric attribute
+	 * @param value seed evaluation
+	 * @param random random number generator
+	 * @return text of synthetic evaluation
+	 */
+	String shift(int attributeIndex, double value, SplittableRandom random) {
+		double[] values = sortedValues[attributeIndex];
+		int lastIndex = values.length - 1;
+
+		//ties are broken at random, so each of equal evaluations can be shifted
+		int firstRank = lowerBound(values, value);
+		int lastRank = lowerBound(values, Math.nextUp(value)) - 1;
+		int rank = lastRank > firstRank ? firstRank + random.nextInt(lastRank - firstRank + 1) : firstRank;
+		if (rankJitter > 0) {
+			rank += random.nextInt(2 * rankJitter + 1) - rankJitter;
+			rank = rank < 0 ? -rank : (rank > lastIndex ? 2 * lastIndex - rank : rank); //reflected, so ranks stay uniform
+			rank = Math.max(0, Math.min(lastIndex, rank));
+		}
+
+		if (isInteger[attributeIndex]) {
+			return Long.toString((long)values[rank]);
+		}
+		double shiftedValue = values[rank];
+		if (rankJitter > 0 && rank < lastIndex) {
+			shiftedValue += random.nextDouble() * (values[rank + 1] - values[rank]);
+		}
+		return BigDecimal.valueOf(shiftedValue).setScale(scales[attributeIndex], RoundingMode.HALF_UP).toPlainString();
+	}
+
+	/**
+	 * Finds index of the first element not smaller than given value.
+	 *
+	 * @param values sorted values
+	 * @param value searched value
+	 * @return index of the first element not smaller than given value ({@code values.length} if there is no such element)
+	 */
+	static int lowerBound(double[] values, double value) {
+		int low = 0;
+		int high = values.length;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (values[middle] < value) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+}
@@ -0,0 +1,91 @@
+/**
+ * Copyright (C) Jerzy Błaszczyński, Marcin Szeląg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rulelearn.usecases;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+
+import org.junit.jupiter.api.Test;
+import org.rulelearn.classification.SimpleOptimizingRuleClassifier;
+import org.rulelearn.data.InformationTable;
+import org.rulelearn.data.SimpleDecision;
+
+/**
+ * Tests for {@link IndexedRuleClassifier} and {@link BatchClassifier}, using rules matched by {@link RuleSetIndex}.
+ * Classification results have to be identical to the ones of {@link SimpleOptimizingRuleClassifier} using all rules.
+ *
+ * @author Marcin Szeląg (<a href="mailto:marcin.szelag@cs.put.poznan.pl">marcin.szelag@cs.put.poznan.pl</a>)
+ */
+class IndexedRuleClassifierTest {
+
+	static final int SMALL_CACHE_SIZE = 2; //cached classifiers are evicted for most objects
+
+	@Test
+	void testMonuments() throws IOException {
+		check(TestDataSets.monuments(), false);
+	}
+
+	@Test
+	void testMonumentsWithMissingValues() throws IOException {
+		check(TestDataSets.monuments(), true);
+	}
+
+	@Test
+	void testBank() throws IOException {
+		check(TestDataSets.bank(), false);
+	}
+
+	@Test
+	void testBankWithMissingValues() throws IOException {
+		check(TestDataSets.bank(), true);
+	}
+
+	/**
+	 * Checks that each object of given data set is assigned the same decision by {@link SimpleOptimizingRuleClassifier},
+	 * by {@link IndexedRuleClassifier} (also with a cache too small to keep classifiers of all sets of covering rules), and by {@link BatchClassifier} (both sequential and parallel).
+	 */
+	private void check(TestDataSets.DataSet dataSet, boolean withMissingValues) {
+		assertTrue(dataSet.hasCostConditionAttribute());
+		InformationTable informationTable = dataSet.getInformationTable(withMissingValues);
+		RuleSetIndex ruleSetIndex = RuleSetIndex.of(dataSet.ruleSetWithCharacteristics);
+
+		SimpleOptimizingRuleClassifier genericClassifier = new SimpleOptimizingRuleClassifier(dataSet.ruleSetWithCharacteristics, dataSet.defaultClassificationResult);
+		IndexedRuleClassifier indexedClassifier = new IndexedRuleClassifier(ruleSetIndex, dataSet.ruleSetWithCharacteristics, dataSet.defaultClassificationResult,
+				IndexedRuleClassifier.DEFAULT_CACHE_SIZE);
+		IndexedRuleClassifier evictingClassifier = new IndexedRuleClassifier(ruleSetIndex, dataSet.ruleSetWithCharacteristics, dataSet.defaultClassificationResult,
+				SMALL_CACHE_SIZE);
+
+		int objectsCount = informationTable.getNumberOfObjects();
+		SimpleDecision[] expectedDecisions = new SimpleDecision[objectsCount];
+		for (int objectIndex = 0; objectIndex < objectsCount; objectIndex++) {
+			expectedDecisions[objectIndex] = genericClassifier.classify(objectIndex, informationTable).getSuggestedDecision();
+			assertEquals(expectedDecisions[objectIndex], indexedClassifier.classify(objectIndex, informationTable).getSuggestedDecision(), "Object "+objectIndex+".");
+			assertEquals(expectedDecisions[objectIndex], evictingClassifier.classify(objectIndex, informationTable).getSuggestedDecision(), "Object "+objectIndex+".");
+		}
+
+		BatchClassifier sequentialClassifier = new BatchClassifier(() -> new IndexedRuleClassifier(ruleSetIndex, dataSet.ruleSetWithCharacteristics,
+				dataSet.defaultClassificationResult, IndexedRuleClassifier.DEFAULT_CACHE_SIZE), objectsCount, Integer.MAX_VALUE);
+		assertArrayEquals(expectedDecisions, sequentialClassifier.classify(informationTable));
+
+		BatchClassifier parallelClassifier = new BatchClassifier(() -> new IndexedRuleClassifier(ruleSetIndex, dataSet.ruleSetWithCharacteristics,
+				dataSet.defaultClassificationResult, IndexedRuleClassifier.DEFAULT_CACHE_SIZE), 64, 0);
+		assertArrayEquals(expectedDecisions, parallelClassifier.classify(informationTable));
+	}
+
+}
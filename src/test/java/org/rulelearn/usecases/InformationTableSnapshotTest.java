@@ -0,0 +1,102 @@
+/**
+ * Copyright (C) Jerzy Błaszczyński, Marcin Szeląg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rulelearn.usecases;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.rulelearn.data.InformationTable;
+
+/**
+ * Tests for {@link InformationTableSnapshot}. Information table read from a snapshot (written from a table, or object by object by {@link InformationTableSnapshot.ObjectStreamWriter})
+ * has to contain exactly the same fields as the original table.
+ *
+ * @author Marcin Szeląg (<a href="mailto:marcin.szelag@cs.put.poznan.pl">marcin.szelag@cs.put.poznan.pl</a>)
+ */
+class InformationTableSnapshotTest {
+
+	static final String KEY = "test";
+
+	@TempDir
+	Path temporaryDirectory;
+
+	@Test
+	void testRoundTripMonuments() throws IOException {
+		checkRoundTrip(TestDataSets.monuments(), false);
+	}
+
+	@Test
+	void testRoundTripMonumentsWithMissingValues() throws IOException {
+		checkRoundTrip(TestDataSets.monuments(), true);
+	}
+
+	@Test
+	void testRoundTripBank() throws IOException {
+		checkRoundTrip(TestDataSets.bank(), false);
+	}
+
+	@Test
+	void testRoundTripBankWithMissingValues() throws IOException {
+		checkRoundTrip(TestDataSets.bank(), true);
+	}
+
+	@Test
+	void testObjectStreamWriterBankWithMissingValues() throws IOException {
+		TestDataSets.DataSet dataSet = TestDataSets.bank();
+		Path snapshotPath = temporaryDirectory.resolve("bank-stream.snapshot");
+		try (InformationTableSnapshot.ObjectStreamWriter writer = new InformationTableSnapshot.ObjectStreamWriter(dataSet.attributes, snapshotPath, KEY)) {
+			for (String[] values : TestDataSets.withMissingValues(dataSet.attributes, dataSet.objects)) {
+				writer.addObject(values);
+			}
+		}
+		assertSameFields(dataSet.informationTableWithMissingValues, InformationTableSnapshot.readSnapshot(dataSet.metadataPath, snapshotPath.toString()));
+	}
+
+	@Test
+	void testReadWithDifferentKey() throws IOException {
+		TestDataSets.DataSet dataSet = TestDataSets.monuments();
+		Path snapshotPath = temporaryDirectory.resolve("monuments.snapshot");
+		assertTrue(InformationTableSnapshot.write(dataSet.informationTable, snapshotPath, KEY));
+		assertNull(InformationTableSnapshot.read(dataSet.attributes, snapshotPath, KEY + "-changed"));
+	}
+
+	private void checkRoundTrip(TestDataSets.DataSet dataSet, boolean withMissingValues) throws IOException {
+		InformationTable informationTable = dataSet.getInformationTable(withMissingValues);
+		Path snapshotPath = temporaryDirectory.resolve("table.snapshot");
+		assertTrue(InformationTableSnapshot.write(informationTable, snapshotPath, KEY));
+		assertSameFields(informationTable, InformationTableSnapshot.read(dataSet.attributes, snapshotPath, KEY));
+	}
+
+	private void assertSameFields(InformationTable expected, InformationTable actual) {
+		assertNotNull(actual);
+		assertEquals(expected.getNumberOfObjects(), actual.getNumberOfObjects());
+		assertEquals(expected.getNumberOfAttributes(), actual.getNumberOfAttributes());
+		for (int objectIndex = 0; objectIndex < expected.getNumberOfObjects(); objectIndex++) {
+			for (int attributeIndex = 0; attributeIndex < expected.getNumberOfAttributes(); attributeIndex++) {
+				assertEquals(expected.getField(objectIndex, attributeIndex), actual.getField(objectIndex, attributeIndex),
+						"Object "+objectIndex+", attribute "+attributeIndex+".");
+			}
+		}
+	}
+
+}
@@ -0,0 +1,114 @@
+/**
+ * Copyright (C) Jerzy Błaszczyński, Marcin Szeląg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rulelearn.usecases;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.io.IOException;
+
+import org.junit.jupiter.api.Test;
+import org.rulelearn.approximations.ClassicalDominanceBasedRoughSetCalculator;
+import org.rulelearn.approximations.Union.UnionType;
+import org.rulelearn.approximations.UnionsWithSingleLimitingDecision;
+import org.rulelearn.approximations.VCDominanceBasedRoughSetCalculator;
+import org.rulelearn.data.InformationTableWithDecisionDistributions;
+import org.rulelearn.data.SimpleDecision;
+import org.rulelearn.measures.dominance.EpsilonConsistencyMeasure;
+import org.rulelearn.rules.Rule;
+import org.rulelearn.rules.RuleCharacteristics;
+import org.rulelearn.rules.RuleCoverageInformation;
+import org.rulelearn.rules.RuleSemantics;
+import org.rulelearn.rules.RuleSet;
+import org.rulelearn.rules.RuleSetWithComputableCharacteristics;
+
+/**
+ * Tests for {@link RuleCharacteristicsCalculator}, using rules of the monuments data set read from bundled RuleML file.
+ * Characteristics calculated in parallel have to be identical to the ones calculated sequentially, rule by rule, as by {@link MonumentProtectionAnalysis#transformRuleSet}
+ * before it used {@link RuleCharacteristicsCalculator}.
+ *
+ * @author Marcin Szeląg (<a href="mailto:marcin.szelag@cs.put.poznan.pl">marcin.szelag@cs.put.poznan.pl</a>)
+ */
+class RuleCharacteristicsCalculatorTest {
+
+	@Test
+	void testMonuments() throws IOException {
+		check(TestDataSets.monuments(), 0.0); //consistency threshold of MonumentProtectionAnalysis
+	}
+
+	@Test
+	void testMonumentsVariableConsistency() throws IOException {
+		check(TestDataSets.monuments(), 0.01);
+	}
+
+	/**
+	 * Checks that characteristics of all rules of given data set, calculated by {@link RuleCharacteristicsCalculator} (both immediately and lazily),
+	 * are equal to the ones calculated sequentially, and that learning information table hash is copied.
+	 */
+	private void check(TestDataSets.DataSet dataSet, double consistencyThreshold) {
+		InformationTableWithDecisionDistributions informationTable = new InformationTableWithDecisionDistributions(dataSet.getInformationTable(false), true);
+		RuleSet ruleSet = dataSet.ruleSetWithCharacteristics;
+
+		RuleSetWithComputableCharacteristics expected = calculateSequentially(informationTable, ruleSet, consistencyThreshold);
+		RuleSetWithComputableCharacteristics calculated = RuleCharacteristicsCalculator.calculate(informationTable, ruleSet, consistencyThreshold, true);
+		RuleSetWithComputableCharacteristics lazilyCalculated = RuleCharacteristicsCalculator.calculate(informationTable, ruleSet, consistencyThreshold, false);
+
+		assertEquals(ruleSet.size(), calculated.size());
+		assertEquals(ruleSet.size(), lazilyCalculated.size());
+		for (int ruleIndex = 0; ruleIndex < ruleSet.size(); ruleIndex++) {
+			assertSame(ruleSet.getRule(ruleIndex), calculated.getRule(ruleIndex));
+			assertArrayEquals(getCharacteristics(expected.getRuleCharacteristics(ruleIndex)), getCharacteristics(calculated.getRuleCharacteristics(ruleIndex)), "Rule "+ruleIndex+".");
+			assertArrayEquals(getCharacteristics(expected.getRuleCharacteristics(ruleIndex)), getCharacteristics(lazilyCalculated.getRuleCharacteristics(ruleIndex)), "Rule "+ruleIndex+".");
+		}
+		assertEquals(ruleSet.getLearningInformationTableHash(), calculated.getLearningInformationTableHash());
+		assertEquals(ruleSet.getLearningInformationTableHash(), lazilyCalculated.getLearningInformationTableHash());
+	}
+
+	/**
+	 * Calculates characteristics of given rules sequentially, looking up the union of each rule separately.
+	 */
+	private RuleSetWithComputableCharacteristics calculateSequentially(InformationTableWithDecisionDistributions informationTable, RuleSet ruleSet, double consistencyThreshold) {
+		UnionsWithSingleLimitingDecision unions = new UnionsWithSingleLimitingDecision(informationTable,
+				consistencyThreshold == 0.0 ?
+						new ClassicalDominanceBasedRoughSetCalculator() :
+						new VCDominanceBasedRoughSetCalculator(EpsilonConsistencyMeasure.getInstance(), consistencyThreshold));
+
+		int rulesCount = ruleSet.size();
+		Rule[] rules = new Rule[rulesCount];
+		RuleCoverageInformation[] ruleCoverageInformationArray = new RuleCoverageInformation[rulesCount];
+		UnionType unionType;
+
+		for (int i = 0; i < rulesCount; i++) {
+			rules[i] = ruleSet.getRule(i);
+			unionType = (rules[i].getSemantics() == RuleSemantics.AT_LEAST ? UnionType.AT_LEAST : UnionType.AT_MOST);
+			ruleCoverageInformationArray[i] = new RuleCoverageInformation(rules[i], informationTable,
+					unions.getUnion(unionType, new SimpleDecision(rules[i].getDecision().getLimitingEvaluation(), rules[i].getDecision().getAttributeWithContext().getAttributeIndex())));
+		}
+
+		RuleSetWithComputableCharacteristics ruleSetWithComputableCharacteristics = new RuleSetWithComputableCharacteristics(rules, ruleCoverageInformationArray);
+		ruleSetWithComputableCharacteristics.calculateAllCharacteristics();
+		return ruleSetWithComputableCharacteristics;
+	}
+
+	private double[] getCharacteristics(RuleCharacteristics ruleCharacteristics) {
+		return new double[] {ruleCharacteristics.getSupport(), ruleCharacteristics.getStrength(), ruleCharacteristics.getConfidence(), ruleCharacteristics.getCoverageFactor(),
+				ruleCharacteristics.getCoverage(), ruleCharacteristics.getNegativeCoverage(), ruleCharacteristics.getEpsilon(), ruleCharacteristics.getEpsilonPrime(),
+				ruleCharacteristics.getFConfirmation(), ruleCharacteristics.getAConfirmation(), ruleCharacteristics.getZConfirmation(),
+				ruleCharacteristics.getLConfirmation(), ruleCharacteristics.getC1Confirmation(), ruleCharacteristics.getSConfirmation()};
+	}
+
+}
@@ -0,0 +1,77 @@
+/**
+ * Copyright (C) Jerzy Błaszczyński, Marcin Szeląg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rulelearn.usecases;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.BitSet;
+
+import org.junit.jupiter.api.Test;
+import org.rulelearn.data.InformationTable;
+import org.rulelearn.rules.RuleSet;
+
+/**
+ * Tests for {@link RuleSetIndex}. Candidate rules found by the index have to include all rules covering an object according to
+ * {@link org.rulelearn.rules.Rule#covers(int, InformationTable)}, and covering rules found by the index have to be exactly these rules.
+ *
+ * @author Marcin Szeląg (<a href="mailto:marcin.szelag@cs.put.poznan.pl">marcin.szelag@cs.put.poznan.pl</a>)
+ */
+class RuleSetIndexTest {
+
+	@Test
+	void testCandidatesMonuments() throws IOException {
+		check(TestDataSets.monuments(), false);
+	}
+
+	@Test
+	void testCandidatesMonumentsWithMissingValues() throws IOException {
+		check(TestDataSets.monuments(), true);
+	}
+
+	@Test
+	void testCandidatesBank() throws IOException {
+		check(TestDataSets.bank(), false);
+	}
+
+	@Test
+	void testCandidatesBankWithMissingValues() throws IOException {
+		check(TestDataSets.bank(), true);
+	}
+
+	private void check(TestDataSets.DataSet dataSet, boolean withMissingValues) {
+		InformationTable informationTable = dataSet.getInformationTable(withMissingValues);
+		RuleSet ruleSet = dataSet.ruleSetWithCharacteristics;
+		RuleSetIndex ruleSetIndex = RuleSetIndex.of(ruleSet);
+		ColumnarInformationTable columnarInformationTable = ColumnarInformationTable.of(informationTable);
+
+		for (int objectIndex = 0; objectIndex < informationTable.getNumberOfObjects(); objectIndex++) {
+			BitSet coveringRules = new BitSet(ruleSet.size());
+			for (int ruleIndex = 0; ruleIndex < ruleSet.size(); ruleIndex++) {
+				if (ruleSet.getRule(ruleIndex).covers(objectIndex, informationTable)) {
+					coveringRules.set(ruleIndex);
+				}
+			}
+			assertEquals(coveringRules, ruleSetIndex.getCoveringRules(objectIndex, columnarInformationTable), "Object "+objectIndex+".");
+
+			BitSet notCandidates = (BitSet)coveringRules.clone();
+			notCandidates.andNot(ruleSetIndex.getCandidateRules(objectIndex, columnarInformationTable));
+			assertTrue(notCandidates.isEmpty(), "Object "+objectIndex+".");
+		}
+	}
+
+}
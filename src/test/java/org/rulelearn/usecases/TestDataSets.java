@@ -0,0 +1,204 @@
+/**
+ * Copyright (C) Jerzy Błaszczyński, Marcin Szeląg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.rulelearn.usecases;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.rulelearn.classification.SimpleClassificationResult;
+import org.rulelearn.data.Attribute;
+import org.rulelearn.data.AttributePreferenceType;
+import org.rulelearn.data.AttributeType;
+import org.rulelearn.data.EvaluationAttribute;
+import org.rulelearn.data.InformationTable;
+import org.rulelearn.data.InformationTableBuilder;
+import org.rulelearn.data.SimpleDecision;
+import org.rulelearn.rules.RuleSetWithCharacteristics;
+import org.rulelearn.types.EnumerationFieldFactory;
+import org.rulelearn.wrappers.VCDomLEMWrapper;
+
+/**
+ * Bundled data sets (monuments and bank churn) used by tests, together with rules classifying their objects.
+ * Each data set is also provided with missing values injected into condition attributes, so matching of rules against missing evaluations is checked as well.
+ * Both data sets contain gain and cost condition attributes.
+ *
+ * @author Marcin Szeląg (<a href="mailto:marcin.szelag@cs.put.poznan.pl">marcin.szelag@cs.put.poznan.pl</a>)
+ */
+final class TestDataSets {
+
+	/**
+	 * Single bundled data set.
+	 */
+	static final class DataSet {
+		final String metadataPath;
+		final Attribute[] attributes;
+		final List<String[]> objects; //evaluations of objects, in the order of attributes
+		final InformationTable informationTable;
+		final InformationTable informationTableWithMissingValues;
+		final RuleSetWithCharacteristics ruleSetWithCharacteristics;
+		final SimpleClassificationResult defaultClassificationResult;
+
+		DataSet(String metadataPath, Attribute[] attributes, List<String[]> objects, RuleSetWithCharacteristics ruleSetWithCharacteristics,
+				SimpleClassificationResult defaultClassificationResult) {
+			this.metadataPath = metadataPath;
+			this.attributes = attributes;
+			this.objects = objects;
+			this.informationTable = build(attributes, objects);
+			this.informationTableWithMissingValues = build(attributes, withMissingValues(attributes, objects));
+			this.ruleSetWithCharacteristics = ruleSetWithCharacteristics;
+			this.defaultClassificationResult = defaultClassificationResult;
+		}
+
+		InformationTable getInformationTable(boolean withMissingValues) {
+			return withMissingValues ? informationTableWithMissingValues : informationTable;
+		}
+
+		/**
+		 * Tells if this data set has at least one active condition attribute of cost type.
+		 *
+		 * @return {@code true} if there is a cost condition attribute
+		 */
+		boolean hasCostConditionAttribute() {
+			for (Attribute attribute : attributes) {
+				if (attribute.isActive() && attribute instanceof EvaluationAttribute && ((EvaluationAttribute)attribute).getType() == AttributeType.CONDITION
+						&& ((EvaluationAttribute)attribute).getPreferenceType() == AttributePreferenceType.COST) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
+	static final String MONUMENTS_METADATA_PATH = "src/main/resources/data/json-metadata/zabytki-metadata-Y1-K-numeric-ordinal.json";
+	static final String MONUMENTS_DATA_PATH = "src/main/resources/data/json-objects/zabytki-data-noMV.json";
+	static final String MONUMENTS_RULES_PATH = "src/main/resources/data/ruleml/zabytki-Y1-K-numeric-ordinal-noMV-max6conds-min8relStrength.xml";
+	static final int MONUMENTS_DECISION_ATTRIBUTE_INDEX = 16;
+	static final String MONUMENTS_DEFAULT_DECISION = "yes";
+
+	static final String BANK_METADATA_PATH = "src/main/resources/data/json-metadata/bank-churn-4000-v8 metadata.json";
+	static final String BANK_DATA_PATH = "src/main/resources/data/json-objects/bank-churn-4000-v8 data.json";
+	static final double BANK_CONSISTENCY_THRESHOLD = 0.01;
+	static final int BANK_DECISION_ATTRIBUTE_INDEX = 11;
+	static final String BANK_DEFAULT_DECISION = "0";
+
+	static final int MISSING_VALUE_PERIOD = 7; //every 7th evaluation (over objects and condition attributes) is missing
+
+	private static DataSet monuments = null;
+	private static DataSet bank = null;
+
+	private TestDataSets() {
+	}
+
+	/**
+	 * Gets monuments data set, with rules read from bundled RuleML file.
+	 *
+	 * @return monuments data set
+	 * @throws IOException if data set or rules cannot be read
+	 */
+	static synchronized DataSet monuments() throws IOException {
+		if (monuments == null) {
+			Attribute[] attributes = InformationTableSnapshot.readAttributes(MONUMENTS_METADATA_PATH);
+			RuleSetWithCharacteristics ruleSetWithCharacteristics = (new RuleMLStreamReader(attributes)).read(MONUMENTS_RULES_PATH, 1);
+			monuments = new DataSet(MONUMENTS_METADATA_PATH, attributes, readObjects(attributes, MONUMENTS_DATA_PATH), ruleSetWithCharacteristics,
+					defaultClassificationResult(attributes, MONUMENTS_DECISION_ATTRIBUTE_INDEX, MONUMENTS_DEFAULT_DECISION));
+		}
+		return monuments;
+	}
+
+	/**
+	 * Gets bank churn data set, with rules induced by VCDomLEM from the whole data.
+	 *
+	 * @return bank churn data set
+	 * @throws IOException if data set cannot be read
+	 */
+	static synchronized DataSet bank() throws IOException {
+		if (bank == null) {
+			Attribute[] attributes = InformationTableSnapshot.readAttributes(BANK_METADATA_PATH);
+			List<String[]> objects = readObjects(attributes, BANK_DATA_PATH);
+			RuleSetWithCharacteristics ruleSetWithCharacteristics = (new VCDomLEMWrapper()).induceRulesWithCharacteristics(build(attributes, objects), BANK_CONSISTENCY_THRESHOLD);
+			bank = new DataSet(BANK_METADATA_PATH, attributes, objects, ruleSetWithCharacteristics,
+					defaultClassificationResult(attributes, BANK_DECISION_ATTRIBUTE_INDEX, BANK_DEFAULT_DECISION));
+		}
+		return bank;
+	}
+
+	/**
+	 * Reads evaluations of objects from JSON data file.
+	 *
+	 * @param attributes attributes of objects
+	 * @param dataPath path to JSON data file
+	 * @return evaluations of consecutive objects, in the order of attributes (absent ones as missing values)
+	 * @throws IOException if data file cannot be read
+	 */
+	@SuppressWarnings("unchecked")
+	static List<String[]> readObjects(Attribute[] attributes, String dataPath) throws IOException {
+		List<?> document = (List<?>)(new JSONParser(new String(Files.readAllBytes(Paths.get(dataPath)), StandardCharsets.UTF_8))).parse();
+		List<String[]> objects = new ArrayList<>(document.size());
+		for (Object element : document) {
+			Map<String, Object> object = (Map<String, Object>)element;
+			String[] values = new String[attributes.length];
+			for (int attributeIndex = 0; attributeIndex < attributes.length; attributeIndex++) {
+				Object value = object.get(attributes[attributeIndex].getName());
+				values[attributeIndex] = value == null ? ConvertCsv2Json.MISSING_VALUE_STRING : (value instanceof BigDecimal ? ((BigDecimal)value).toPlainString() : value.toString());
+			}
+			objects.add(values);
+		}
+		return objects;
+	}
+
+	/**
+	 * Copies given evaluations, replacing every {@link #MISSING_VALUE_PERIOD}-th evaluation on a condition attribute with a missing value.
+	 *
+	 * @param attributes attributes of objects
+	 * @param objects evaluations of objects
+	 * @return evaluations with missing values
+	 */
+	static List<String[]> withMissingValues(Attribute[] attributes, List<String[]> objects) {
+		List<String[]> objectsWithMissingValues = new ArrayList<>(objects.size());
+		int counter = 0;
+		for (String[] values : objects) {
+			String[] copy = values.clone();
+			for (int attributeIndex = 0; attributeIndex < attributes.length; attributeIndex++) {
+				if (attributes[attributeIndex] instanceof EvaluationAttribute && ((EvaluationAttribute)attributes[attributeIndex]).getType() == AttributeType.CONDITION
+						&& ++counter % MISSING_VALUE_PERIOD == 0) {
+					copy[attributeIndex] = ConvertCsv2Json.MISSING_VALUE_STRING;
+				}
+			}
+			objectsWithMissingValues.add(copy);
+		}
+		return objectsWithMissingValues;
+	}
+
+	static InformationTable build(Attribute[] attributes, List<String[]> objects) {
+		InformationTableBuilder informationTableBuilder = new InformationTableBuilder(attributes, new String[] {ConvertCsv2Json.MISSING_VALUE_STRING});
+		for (String[] values : objects) {
+			informationTableBuilder.addObject(values);
+		}
+		return informationTableBuilder.build();
+	}
+
+	static SimpleClassificationResult defaultClassificationResult(Attribute[] attributes, int decisionAttributeIndex, String defaultDecision) {
+		return new SimpleClassificationResult(new SimpleDecision(EnumerationFieldFactory.getInstance().create(
+				defaultDecision, (EvaluationAttribute)attributes[decisionAttributeIndex]), decisionAttributeIndex));
+	}
+
+}